@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.github.tommyettinger.textra.utils.CaseInsensitiveIntMap;
+import com.github.tommyettinger.textra.utils.Palette;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ColorLookup} that remembers what another ColorLookup returned for recently-used keys, so a description
+ * such as "dark olive sage" only needs to be split up and mixed by {@link ColorLookup#DESCRIPTIVE} once, rather than
+ * every time it appears in markup or in an effect's parameters. The cache has a fixed number of slots and uses open
+ * addressing with a short probe sequence; when every slot a key could use is taken, one of them is replaced, so this
+ * never grows. Slots are placed by {@link CaseInsensitiveIntMap#hashCodeIgnoreCase(CharSequence)}, but keys are still
+ * compared case-sensitively, because "RED" (from libGDX's Colors) and "red" (from {@link Palette}) can differ.
+ * <br>
+ * This forgets everything it has cached when {@link Palette#addColor(String, int)} or
+ * {@link Palette#appendToKnownColors()} change the known colors, or when the number of colors in {@link Palette#NAMED}
+ * changes. If the wrapped ColorLookup can change what it returns in any other way, such as when a color in libGDX's
+ * Colors or in {@link Palette#NAMED} is replaced, call {@link #clear()} after it does. Because of that, this isn't
+ * used unless you opt in, such as by setting {@link Font#colorLookup} to {@link ColorLookup#DESCRIPTIVE_CACHED}.
+ */
+public class CachingColorLookup implements ColorLookup {
+    /**
+     * How many slots, starting at a key's hashed slot, can hold that key.
+     */
+    private static final int PROBES = 4;
+
+    /**
+     * The ColorLookup that actually looks up keys this hasn't cached.
+     */
+    public final ColorLookup wrapped;
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final int[] values;
+    private final int mask;
+    private int paletteSize = -1;
+    private int paletteModifications = -1;
+    private int victim;
+
+    /**
+     * Caches up to 256 keys looked up with {@code wrapped}.
+     *
+     * @param wrapped the ColorLookup to cache results from; must not be null
+     */
+    public CachingColorLookup(ColorLookup wrapped) {
+        this(wrapped, 256);
+    }
+
+    /**
+     * Caches up to {@code capacity} keys (rounded up to a power of two, and at least 8) looked up with
+     * {@code wrapped}.
+     *
+     * @param wrapped  the ColorLookup to cache results from; must not be null
+     * @param capacity how many keys this can remember at once
+     */
+    public CachingColorLookup(ColorLookup wrapped, int capacity) {
+        this.wrapped = wrapped;
+        final int size = MathUtils.nextPowerOfTwo(Math.max(capacity, 8));
+        keys = new String[size];
+        hashes = new int[size];
+        values = new int[size];
+        mask = size - 1;
+    }
+
+    @Override
+    public int getRgba(String key) {
+        if (Palette.NAMED.size != paletteSize || Palette.getModificationCount() != paletteModifications) {
+            clear();
+            paletteSize = Palette.NAMED.size;
+            paletteModifications = Palette.getModificationCount();
+        }
+        final int hash = CaseInsensitiveIntMap.hashCodeIgnoreCase(key);
+        final int home = hash & mask;
+        int empty = -1;
+        for (int p = 0; p < PROBES; p++) {
+            final int i = home + p & mask;
+            final String k = keys[i];
+            if (k == null) {
+                empty = i;
+                break;
+            }
+            if (hashes[i] == hash && k.equals(key)) return values[i];
+        }
+        final int rgba = wrapped.getRgba(key);
+        final int i = empty >= 0 ? empty : home + (victim++ & PROBES - 1) & mask;
+        keys[i] = key;
+        hashes[i] = hash;
+        values[i] = rgba;
+        return rgba;
+    }
+
+    /**
+     * Forgets every cached key, so each will be looked up again with {@link #wrapped} the next time it is used.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+    }
+}
@@ -26,7 +26,8 @@ import com.github.tommyettinger.textra.utils.ColorUtils;
  * treated as a functional interface in Java 8 and higher.
  * <br>
  * The default here is {@link #DESCRIPTIVE}, which allows using multiple color names, plus adjectives. There
- * is also {@link #INSTANCE}, which is older and only looks up one color name at a time from {@link Colors} in libGDX.
+ * is also {@link #INSTANCE}, which is older and only looks up one color name at a time from {@link Colors} in libGDX,
+ * and {@link #DESCRIPTIVE_CACHED}, which is a faster form of DESCRIPTIVE when the same colors are used often.
  */
 public interface ColorLookup {
     /**
@@ -38,8 +39,8 @@ public interface ColorLookup {
     ColorLookup INSTANCE = ColorUtils::lookupInColors;
 
     /**
-     * The default ColorLookup, this parses a description such as "peach red" or "DARK DULLEST GREEN" using
-     * {@link ColorUtils#describe(String)} (See its docs for more information). The colors available are in
+     * The default ColorLookup, this parses a description such as
+     * "peach red" or "DARK DULLEST GREEN" using {@link ColorUtils#describe(String)} (See its docs for more information). The colors available are in
      * {@link com.github.tommyettinger.textra.utils.Palette}; there are adjectives that modify lightness and saturation
      * (see {@link ColorUtils#describe(String)}), and you can specify multiple colors to mix them, with or without
      * weights per-color. Case is effectively ignored for adjectives, but it matters for color names --
@@ -47,6 +48,14 @@ public interface ColorLookup {
      */
     ColorLookup DESCRIPTIVE = ColorUtils::describe;
 
+    /**
+     * The same as {@link #DESCRIPTIVE}, but remembers the colors it built for the most recently used descriptions (up to
+     * 256 of them), so repeated descriptions don't need to be parsed and mixed again. If a color in libGDX's
+     * {@link Colors} or in Palette is replaced directly, call {@link CachingColorLookup#clear()} on this after; see
+     * {@link CachingColorLookup}. Set {@link Font#colorLookup} to this to use it.
+     */
+    ColorLookup DESCRIPTIVE_CACHED = new CachingColorLookup(DESCRIPTIVE);
+
     /**
      * Looks up {@code key} to get an RGBA8888 color, and returns that color as an int if one was found, or returns
      * 256 if none was found. 256 is used because it is different from the more commonly-used 0 for fully-transparent,
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Reorders the quads of a {@link Layout} so that all quads that need the same Texture and the same distance field
+ * shader state are drawn together. Normally, a distance field Font that has inline images (such as emoji from
+ * {@link KnownFonts#addEmoji(Font)}) has to flush the Batch and change its shader's smoothing twice for every image:
+ * once to pause the distance field for the image, and once to resume it for the text after. Drawing with a
+ * DrawGrouper gathers every quad first, then draws each group at once, so a paragraph with many emoji only switches
+ * a few times. Quads only move past quads they don't overlap, so anything that overlaps is still drawn in the same
+ * order, and looks the same.
+ * <br>
+ * After each draw, {@link #flushes} and {@link #ungroupedFlushes} report how many separate runs of quads the Batch was
+ * given, and how many it would have been given without grouping; each run ends with a flush. A DrawGrouper can be
+ * reused for any number of draws, and reuses its buffers each time.
+ * <br>
+ * As with {@link Font#drawGlyphs(Batch, Layout, float, float, int, float, float, float)}, the Font's shader should
+ * already be enabled with {@link Font#enableShader(Batch)} if it uses a distance field.
+ */
+public class DrawGrouper {
+    /**
+     * How many quads the last draw gathered.
+     */
+    public int quads;
+    /**
+     * How many separate runs of quads the last draw sent to the Batch after grouping; each run ends with a flush.
+     */
+    public int flushes;
+    /**
+     * How many separate runs of quads the last draw would have sent to the Batch if it had drawn its quads in order.
+     */
+    public int ungroupedFlushes;
+
+    private float[] vertices = new float[20 * 64], sorted = new float[20 * 64];
+    private final Array<Texture> textures = new Array<>(true, 64, Texture.class);
+    private final Array<Font> fonts = new Array<>(true, 64, Font.class);
+    private final IntArray states = new IntArray(64);
+    /**
+     * The bounding box of each quad, as minimum x, minimum y, maximum x, maximum y.
+     */
+    private final FloatArray bounds = new FloatArray(256);
+    /**
+     * For each quad, the next quad in its group, or -1 if it is the last.
+     */
+    private final IntArray next = new IntArray(64);
+    private final IntArray groupHeads = new IntArray(8), groupTails = new IntArray(8);
+    private final FloatArray groupBounds = new FloatArray(32);
+
+    private Font font, lastFont;
+    private Texture lastTexture;
+    private int state;
+
+    /**
+     * Draws {@code glyphs} as {@link Font#drawGlyphs(Batch, Layout, float, float, int, float, float, float)} would,
+     * but grouping its quads so the Batch is flushed as few times as possible.
+     *
+     * @param batch    typically a SpriteBatch
+     * @param font     the Font to draw with
+     * @param glyphs   typically returned by {@link Font#markup(String, Layout)}
+     * @param x        the x position in world space to start drawing the glyph at (where this is depends on align)
+     * @param y        the y position in world space to start drawing the glyph at (where this is depends on align)
+     * @param align    an {@link com.badlogic.gdx.utils.Align} constant
+     * @param rotation measured in degrees counterclockwise, typically 0-360, and applied to the whole Layout
+     * @param originX  the x position in world space of the point to rotate around
+     * @param originY  the y position in world space of the point to rotate around
+     * @return the total distance in world units all drawn Lines use up from lines along the given rotation
+     */
+    public float drawGlyphs(Batch batch, Font font, Layout glyphs, float x, float y, int align, float rotation,
+                            float originX, float originY) {
+        begin();
+        try {
+            return font.drawGlyphs(batch, glyphs, x, y, align, rotation, originX, originY);
+        } finally {
+            end(batch);
+        }
+    }
+
+    /**
+     * Starts gathering every quad any Font draws, instead of drawing them. Until {@link #end(Batch)} is called, nothing
+     * should change the Batch's shader or its uniforms, and only one DrawGrouper can be gathering at a time.
+     */
+    public void begin() {
+        if (Font.grouping != null) throw new IllegalStateException("A DrawGrouper is already gathering quads.");
+        textures.clear();
+        fonts.clear();
+        states.clear();
+        bounds.clear();
+        next.clear();
+        groupHeads.clear();
+        groupTails.clear();
+        groupBounds.clear();
+        quads = 0;
+        lastFont = null;
+        lastTexture = null;
+        font = null;
+        state = Font.SHADER_LEAVE;
+        Font.grouping = this;
+    }
+
+    /**
+     * Stops gathering quads, and draws every quad gathered since {@link #begin()}, one group at a time. This updates
+     * {@link #flushes} and {@link #ungroupedFlushes}.
+     *
+     * @param batch the Batch to draw with; it should be the one that the gathered quads were drawn with
+     */
+    public void end(Batch batch) {
+        Font.grouping = null;
+        Font.forgetLatestTexture();
+        ungroupedFlushes = 0;
+        for (int q = 0; q < quads; q++) {
+            if (q == 0 || !sameKey(q, q - 1)) ungroupedFlushes++;
+        }
+        if (sorted.length < vertices.length) sorted = new float[vertices.length];
+        flushes = 0;
+        Font shading = null;
+        int shaded = Font.SHADER_LEAVE;
+        for (int g = 0, n = groupHeads.size; g < n; g++) {
+            int size = 0;
+            for (int q = groupHeads.items[g]; q >= 0; q = next.items[q]) {
+                System.arraycopy(vertices, q * 20, sorted, size, 20);
+                size += 20;
+            }
+            final int head = groupHeads.items[g];
+            final Font f = fonts.items[head];
+            final int s = states.items[head];
+            if (s == Font.SHADER_RESUME && (shaded != Font.SHADER_RESUME || shading != f))
+                f.resumeDistanceFieldShader(batch);
+            else if (s == Font.SHADER_PAUSE)
+                f.pauseDistanceFieldShader(batch);
+            if (s != Font.SHADER_LEAVE) {
+                shading = f;
+                shaded = s;
+            }
+            batch.draw(textures.items[head], sorted, 0, size);
+            flushes++;
+        }
+    }
+
+    /**
+     * Called by Font for each glyph it draws while gathering, with the Font that glyph belongs to and the Texture it
+     * comes from; every quad added after this (such as for underline) shares that glyph's shader state.
+     */
+    void shade(Font font, Texture texture) {
+        if (font == lastFont && texture == lastTexture) return;
+        lastFont = font;
+        lastTexture = texture;
+        state = Font.shaderState(font, texture);
+        this.font = state == Font.SHADER_LEAVE ? null : font;
+    }
+
+    /**
+     * Gathers one quad (20 floats), putting it in the latest group it can join without being drawn before a quad it
+     * overlaps that came before it.
+     */
+    void add(Texture texture, float[] quad) {
+        final int q = quads++;
+        final int v = q * 20;
+        if (v + 20 > vertices.length) {
+            float[] nv = new float[vertices.length << 1];
+            System.arraycopy(vertices, 0, nv, 0, v);
+            vertices = nv;
+        }
+        System.arraycopy(quad, 0, vertices, v, 20);
+        textures.add(texture);
+        fonts.add(font);
+        states.add(state);
+        next.add(-1);
+        final float minX = Math.min(Math.min(quad[0], quad[5]), Math.min(quad[10], quad[15]));
+        final float minY = Math.min(Math.min(quad[1], quad[6]), Math.min(quad[11], quad[16]));
+        final float maxX = Math.max(Math.max(quad[0], quad[5]), Math.max(quad[10], quad[15]));
+        final float maxY = Math.max(Math.max(quad[1], quad[6]), Math.max(quad[11], quad[16]));
+        bounds.add(minX, minY, maxX, maxY);
+
+        // Join the newest group with the same key, unless that would move this quad past a quad it overlaps. Only the
+        // groups it would move past are tested, so ordinary text, which joins the newest group, is never tested.
+        int target = -1;
+        for (int g = groupHeads.size - 1; g >= 0; g--) {
+            if (sameKey(groupHeads.items[g], q)) {
+                target = g;
+                break;
+            }
+            if (overlaps(g, minX, minY, maxX, maxY)) break;
+        }
+        if (target < 0) {
+            groupHeads.add(q);
+            groupTails.add(q);
+            groupBounds.add(minX, minY, maxX, maxY);
+        } else {
+            next.items[groupTails.items[target]] = q;
+            groupTails.items[target] = q;
+            final float[] gb = groupBounds.items;
+            final int b = target << 2;
+            gb[b] = Math.min(gb[b], minX);
+            gb[b + 1] = Math.min(gb[b + 1], minY);
+            gb[b + 2] = Math.max(gb[b + 2], maxX);
+            gb[b + 3] = Math.max(gb[b + 3], maxY);
+        }
+    }
+
+    private boolean sameKey(int a, int b) {
+        return textures.items[a] == textures.items[b] && states.items[a] == states.items[b]
+                && fonts.items[a] == fonts.items[b];
+    }
+
+    /**
+     * Returns true if any quad in group {@code g} overlaps the given bounding box; quads that only touch at an edge
+     * don't overlap.
+     */
+    private boolean overlaps(int g, float minX, float minY, float maxX, float maxY) {
+        final float[] gb = groupBounds.items;
+        final int b = g << 2;
+        if (gb[b] >= maxX || gb[b + 2] <= minX || gb[b + 1] >= maxY || gb[b + 3] <= minY) return false;
+        final float[] qb = bounds.items;
+        for (int q = groupHeads.items[g]; q >= 0; q = next.items[q]) {
+            final int i = q << 2;
+            if (qb[i] < maxX && qb[i + 2] > minX && qb[i + 1] < maxY && qb[i + 3] > minY) return true;
+        }
+        return false;
+    }
+}
@@ -24,6 +24,33 @@ import com.badlogic.gdx.math.MathUtils;
  */
 public abstract class Effect {
     private static final float FADEOUT_SPLIT = 0.25f;
+    /**
+     * Returned by {@link #describeGpu(int, int, float[])} when an effect can only be applied on the CPU.
+     */
+    public static final int GPU_NONE = 0;
+    /**
+     * A movement effect that moves glyphs up and down along a sine wave, like {@code WaveEffect}. Its values are the
+     * height to move in world units, how much progress is made per second, and the progress at time 0. Progress
+     * goes from 0 to 1 and back to 0 every 2 units.
+     */
+    public static final int GPU_WAVE = 1;
+    /**
+     * A movement effect that moves glyphs randomly by whole units, like {@code ShakeEffect}. Its values are the
+     * farthest distance to move in world units, how much each new random offset is blended with the previous one
+     * (from 0 to 1), and a seed that should be different for each glyph.
+     */
+    public static final int GPU_SHAKE = 2;
+    /**
+     * A movement effect that makes glyphs jump up and bounce back down, like {@code JumpEffect}. Its values are the
+     * height to jump in world units, how much progress is made per second, and the progress at time 0. Progress
+     * wraps around from 1 to 0.
+     */
+    public static final int GPU_JUMP = 3;
+    /**
+     * A color effect that cycles through hues, like {@code RainbowEffect}. Its values are how much the hue changes
+     * per second, the hue at time 0, the saturation, and the lightness; hue wraps around from 1 to 0.
+     */
+    public static final int GPU_RAINBOW = 4;
     protected final TypingLabel label;
     public int indexStart = -1;
     public int indexEnd = -1;
@@ -62,6 +89,22 @@ public abstract class Effect {
      */
     protected abstract void onApply(long glyph, int localIndex, int globalIndex, float delta);
 
+    /**
+     * Describes what this effect does to the glyph at {@code globalIndex}, so it can be animated on the GPU when
+     * {@link TypingLabel#setGpuEffects(boolean)} is enabled. An effect that only moves glyphs or only cycles their
+     * hue in one of the ways the GPU path knows should fill {@code out} with the values its GPU_ constant lists, and
+     * return that constant; it should only depend on {@link #totalTime} and the indices, since it is called once when
+     * the label's quads are uploaded. The default returns {@link #GPU_NONE}, which keeps the label on the CPU path.
+     *
+     * @param localIndex  the index of the glyph relative to where this effect starts
+     * @param globalIndex the index of the glyph in the label
+     * @param out         a float array with at least 4 items that this can fill
+     * @return one of the GPU_ constants in this class
+     */
+    protected int describeGpu(int localIndex, int globalIndex, float[] out) {
+        return GPU_NONE;
+    }
+
     /**
      * Returns whether this effect is finished and should be removed. Note that effects are infinite by default.
      */
@@ -147,4 +190,15 @@ public abstract class Effect {
     public interface EffectBuilder {
         Effect produce(TypingLabel label, String[] params);
     }
+
+    /**
+     * Like {@link EffectBuilder}, but reads parameters from a reusable {@link EffectParams} view instead of a new
+     * String array, so producing an Effect doesn't need to allocate any Strings. This is meant to be used with
+     * {@link TypingConfig#registerParamsEffect(String, EffectParamsBuilder)} and a method reference to a constructor
+     * that takes a TypingLabel and an EffectParams, such as {@code WaveEffect::new}. The EffectParams is reused for
+     * the next token, so read everything you need from it before returning.
+     */
+    public interface EffectParamsBuilder {
+        Effect produce(TypingLabel label, EffectParams params);
+    }
 }
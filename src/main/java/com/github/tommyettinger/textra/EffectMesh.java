@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Holds the quads of a {@link TypingLabel} in a static Mesh, along with what each glyph's effects need to animate it,
+ * so a vertex shader can animate {@link Effect#GPU_WAVE}, {@link Effect#GPU_SHAKE}, {@link Effect#GPU_JUMP}, and
+ * {@link Effect#GPU_RAINBOW} effects from a time uniform. The quads are uploaded once, by {@link #build}, and each
+ * draw only sets a few uniforms. Each vertex has the usual position, packed color, and texture coordinates, plus two
+ * more attributes: {@code a_motion} holds a movement effect's id and 3 values, and {@code a_hue} holds a color
+ * effect's 4 values. This is internal to TypingLabel; see {@link TypingLabel#setGpuEffects(boolean)}.
+ */
+class EffectMesh implements Disposable {
+    /**
+     * Floats per vertex: x, y, color, u, v, then 4 for a_motion and 4 for a_hue.
+     */
+    static final int FLOATS = 13;
+    /**
+     * The most quads one Mesh can hold while still using short indices.
+     */
+    static final int MAX_QUADS = 16383;
+
+    static final String vertexShader = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+            + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "attribute vec4 a_motion;\n"
+            + "attribute vec4 a_hue;\n"
+            + "uniform mat4 u_projTrans;\n"
+            + "uniform vec2 u_offset;\n"
+            + "uniform float u_time;\n"
+            + "varying vec4 v_color;\n"
+            + "varying vec2 v_texCoords;\n"
+            + "\n"
+            + "float bounceOut(float a) {\n"
+            + "	if (a >= 1.0) return 1.0;\n"
+            + "	a += 0.34;\n"
+            + "	float w = 0.68;\n"
+            + "	float h = 1.0;\n"
+            + "	if (a > 0.68) {\n"
+            + "		a -= 0.68; w = 0.34; h = 0.26;\n"
+            + "		if (a > 0.34) {\n"
+            + "			a -= 0.34; w = 0.2; h = 0.11;\n"
+            + "			if (a > 0.2) {\n"
+            + "				a -= 0.2; w = 0.15; h = 0.03;\n"
+            + "			}\n"
+            + "		}\n"
+            + "	}\n"
+            + "	a /= w;\n"
+            + "	float z = 4.0 / w * h * a;\n"
+            + "	return 1.0 - (z - z * a) * w;\n"
+            + "}\n"
+            + "\n"
+            + "float random(float seed, float step) {\n"
+            + "	return fract(sin(seed * 12.9898 + mod(step, 1024.0) * 78.233) * 43758.5453) * 2.0 - 1.0;\n"
+            + "}\n"
+            + "\n"
+            + "void main() {\n"
+            + "	v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+            + "	v_color.a = v_color.a * (255.0/254.0);\n"
+            + "	v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "	vec2 move = u_offset;\n"
+            + "	float id = floor(a_motion.x + 0.5);\n"
+            + "	if (id == 1.0) {\n"
+            + "		float p = mod(u_time * a_motion.z + a_motion.w, 2.0);\n"
+            + "		if (p > 1.0) p = 2.0 - p;\n"
+            + "		move.y -= a_motion.y * cos(p * 3.14159265);\n"
+            + "	} else if (id == 2.0) {\n"
+            + "		float step = floor(u_time * 60.0);\n"
+            + "		move.x += floor(a_motion.y * mix(random(a_motion.w, step - 1.0), random(a_motion.w, step), a_motion.z) + 0.5);\n"
+            + "		move.y += floor(a_motion.y * mix(random(a_motion.w + 0.5, step - 1.0), random(a_motion.w + 0.5, step), a_motion.z) + 0.5);\n"
+            + "	} else if (id == 3.0) {\n"
+            + "		float p = fract(u_time * a_motion.z + a_motion.w);\n"
+            + "		float jump = p < 0.2 ? 1.0 - (1.0 - p / 0.2) * (1.0 - p / 0.2) : 1.0 - bounceOut((p - 0.2) / 0.8);\n"
+            + "		move.y += a_motion.y * jump;\n"
+            + "	}\n"
+            + "	if (a_hue.x > 0.0) {\n"
+            + "		float hue = fract(u_time * a_hue.x + a_hue.y);\n"
+            + "		vec3 rgb = clamp(abs(fract(vec3(hue, hue + 2.0 / 3.0, hue + 1.0 / 3.0)) * 6.0 - 3.0) - 1.0, 0.0, 1.0);\n"
+            + "		float v = a_hue.w + a_hue.z * min(a_hue.w, 1.0 - a_hue.w);\n"
+            + "		float d = 2.0 * (1.0 - a_hue.w / (v + 1e-10));\n"
+            + "		v_color.rgb *= v * mix(vec3(1.0), rgb, d);\n"
+            + "	}\n"
+            + "	gl_Position = u_projTrans * vec4(" + ShaderProgram.POSITION_ATTRIBUTE + ".xy + move, 0.0, 1.0);\n"
+            + "}\n";
+
+    static final String fragmentShader =
+            "#ifdef GL_ES\n"
+                    + "	precision mediump float;\n"
+                    + "#endif\n"
+                    + "uniform sampler2D u_texture;\n"
+                    + "varying vec4 v_color;\n"
+                    + "varying vec2 v_texCoords;\n"
+                    + "void main() {\n"
+                    + "	gl_FragColor = v_color * texture2D(u_texture, v_texCoords);\n"
+                    + "}\n";
+
+    private Mesh mesh;
+    private ShaderProgram shader;
+    private float[] vertices = new float[0];
+    private int quads;
+    private final Array<Texture> textures = new Array<>(true, 4, Texture.class);
+    /**
+     * The quad index just after each run of quads that share a Texture ends.
+     */
+    private final IntArray runEnds = new IntArray(4);
+    private final Matrix4 combined = new Matrix4();
+
+    /**
+     * Copies the quads recorded in {@code cache} into the Mesh. Each quad's tag is a glyph index {@code g}, and the
+     * quad gets the 4 items from {@code motion} and {@code hue} starting at {@code g * 4}. A color effect (with a
+     * positive {@code hue[g * 4]}) only applies to quads that have the glyph's own color, {@code body[g]}, and those
+     * quads are given {@code baseColor} to be tinted, so outlines and shadows keep their color.
+     *
+     * @return false if the quads can't be drawn this way (there are none, too many, or no shader), or true if they can
+     */
+    boolean build(VertexCache cache, float[] motion, float[] hue, float[] body, float baseColor) {
+        quads = 0;
+        textures.clear();
+        runEnds.clear();
+        final int count = cache.size / 20;
+        if (count == 0 || count > MAX_QUADS || !ensureShader()) return false;
+        ensureCapacity(count);
+        final float[] src = cache.vertices;
+        int d = 0;
+        for (int q = 0; q < count; q++) {
+            final int g = cache.tags.items[q], m = g << 2;
+            final boolean tinted = hue[m] > 0f && src[q * 20 + 2] == body[g];
+            for (int c = 0, s = q * 20; c < 4; c++, s += 5) {
+                vertices[d++] = src[s];
+                vertices[d++] = src[s + 1];
+                vertices[d++] = tinted ? baseColor : src[s + 2];
+                vertices[d++] = src[s + 3];
+                vertices[d++] = src[s + 4];
+                vertices[d++] = motion[m];
+                vertices[d++] = motion[m + 1];
+                vertices[d++] = motion[m + 2];
+                vertices[d++] = motion[m + 3];
+                vertices[d++] = tinted ? hue[m] : 0f;
+                vertices[d++] = hue[m + 1];
+                vertices[d++] = hue[m + 2];
+                vertices[d++] = hue[m + 3];
+            }
+        }
+        mesh.setVertices(vertices, 0, d);
+        quads = count;
+        textures.addAll(cache.textures);
+        for (int r = 0; r < cache.runEnds.size; r++) {
+            runEnds.add(cache.runEnds.items[r] / 20);
+        }
+        return true;
+    }
+
+    /**
+     * Draws the quads from the last successful {@link #build}, moved by {@code offsetX, offsetY} and animated to
+     * {@code time} seconds after they were built. This flushes {@code batch}, draws with its projection and transform
+     * matrices and blending, and leaves the Batch's shader bound again afterwards.
+     */
+    void draw(Batch batch, float offsetX, float offsetY, float time) {
+        if (quads == 0) return;
+        batch.flush();
+        combined.set(batch.getProjectionMatrix()).mul(batch.getTransformMatrix());
+        if (batch.isBlendingEnabled()) {
+            Gdx.gl.glEnable(GL20.GL_BLEND);
+            Gdx.gl.glBlendFuncSeparate(batch.getBlendSrcFunc(), batch.getBlendDstFunc(),
+                    batch.getBlendSrcFuncAlpha(), batch.getBlendDstFuncAlpha());
+        } else {
+            Gdx.gl.glDisable(GL20.GL_BLEND);
+        }
+        shader.bind();
+        shader.setUniformMatrix("u_projTrans", combined);
+        shader.setUniformf("u_offset", offsetX, offsetY);
+        shader.setUniformf("u_time", time);
+        shader.setUniformi("u_texture", 0);
+        int start = 0;
+        for (int r = 0; r < textures.size; r++) {
+            final int end = runEnds.items[r];
+            textures.items[r].bind(0);
+            mesh.render(shader, GL20.GL_TRIANGLES, start * 6, (end - start) * 6);
+            start = end;
+        }
+        if (batch.getShader() != null) batch.getShader().bind();
+    }
+
+    private boolean ensureShader() {
+        if (shader != null) return shader.isCompiled();
+        if (Gdx.gl20 == null) return false;
+        shader = new ShaderProgram(vertexShader, fragmentShader);
+        if (!shader.isCompiled())
+            Gdx.app.error("textratypist", "GPU effect shader failed to compile: " + shader.getLog());
+        return shader.isCompiled();
+    }
+
+    private void ensureCapacity(int count) {
+        if (mesh != null && mesh.getMaxVertices() >= count * 4) return;
+        if (mesh != null) mesh.dispose();
+        final int capacity = Math.min(MathUtils.nextPowerOfTwo(Math.max(count, 64)), MAX_QUADS);
+        mesh = new Mesh(true, capacity * 4, capacity * 6,
+                new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+                new VertexAttribute(VertexAttributes.Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+                new VertexAttribute(VertexAttributes.Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"),
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "a_motion"),
+                new VertexAttribute(VertexAttributes.Usage.Generic, 4, "a_hue"));
+        final short[] indices = new short[capacity * 6];
+        for (int i = 0, v = 0; i < indices.length; i += 6, v += 4) {
+            indices[i] = (short) v;
+            indices[i + 1] = (short) (v + 1);
+            indices[i + 2] = (short) (v + 2);
+            indices[i + 3] = (short) (v + 2);
+            indices[i + 4] = (short) (v + 3);
+            indices[i + 5] = (short) v;
+        }
+        mesh.setIndices(indices);
+        vertices = new float[capacity * 4 * FLOATS];
+    }
+
+    @Override
+    public void dispose() {
+        if (mesh != null) mesh.dispose();
+        if (shader != null) shader.dispose();
+        mesh = null;
+        shader = null;
+        quads = 0;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.github.tommyettinger.textra.utils.StringUtils;
+
+/**
+ * A reusable, typed view of the semicolon-separated parameters of one effect token, such as the {@code 1;0.5;2} in
+ * <code>{WAVE=1;0.5;2}</code>. The parameter text is copied into a buffer this owns, and each parameter is just a
+ * start and end offset into that buffer, so reading a parameter as a float, int, boolean, or hex color doesn't create
+ * any Strings. Only {@link #getString(int)}, {@link #toArray()}, and looking up a color by name need to allocate.
+ * <br>
+ * {@link Parser} keeps one of these and {@link #set(char[], int, int) sets} it again for every effect token, so an
+ * {@link Effect.EffectParamsBuilder} must read what it needs while it runs and must not keep a reference to this.
+ * The parameters are counted the same way {@code String.split(";")} would count them, so {@link #size()} here is the
+ * same as the length of the String array an {@link Effect.EffectBuilder} would get.
+ */
+public final class EffectParams implements CharSequence {
+    private char[] chars = new char[32];
+    private int length;
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int size;
+
+    public EffectParams() {
+    }
+
+    /**
+     * Sets this to view the parameters in {@code text} from {@code start} (inclusive) to {@code end} (exclusive),
+     * split on semicolons. Trailing empty parameters are dropped, like {@code String.split(";")} does.
+     *
+     * @return this, for chaining
+     */
+    public EffectParams set(char[] text, int start, int end) {
+        length = 0;
+        size = 0;
+        if (text == null) return this;
+        if (end <= start) return split();
+        ensureChars(end - start);
+        System.arraycopy(text, start, chars, 0, end - start);
+        length = end - start;
+        return split();
+    }
+
+    /**
+     * Sets this to view the parameters in {@code text} from {@code start} (inclusive) to {@code end} (exclusive),
+     * split on semicolons. Trailing empty parameters are dropped, like {@code String.split(";")} does.
+     *
+     * @return this, for chaining
+     */
+    public EffectParams set(CharSequence text, int start, int end) {
+        length = 0;
+        size = 0;
+        if (text == null) return this;
+        if (end <= start) return split();
+        ensureChars(end - start);
+        for (int i = start; i < end; i++) {
+            chars[length++] = text.charAt(i);
+        }
+        return split();
+    }
+
+    /**
+     * Sets this to view each item of {@code params} as one parameter, keeping empty items wherever they are. This is
+     * how an {@link Effect.EffectParamsBuilder} gets called by code that only has a String array.
+     *
+     * @return this, for chaining
+     */
+    public EffectParams set(String[] params) {
+        length = 0;
+        size = 0;
+        if (params == null) return this;
+        for (int p = 0; p < params.length; p++) {
+            final String param = params[p] == null ? "" : params[p];
+            if (p > 0) {
+                ensureChars(length + 1);
+                chars[length++] = ';';
+            }
+            ensureChars(length + param.length());
+            param.getChars(0, param.length(), chars, length);
+            addParam(length, length + param.length());
+            length += param.length();
+        }
+        return this;
+    }
+
+    /**
+     * Removes all parameters, as for a token that has no {@code =} at all.
+     *
+     * @return this, for chaining
+     */
+    public EffectParams clear() {
+        length = 0;
+        size = 0;
+        return this;
+    }
+
+    private EffectParams split() {
+        int paramStart = 0;
+        boolean separated = false;
+        for (int i = 0; i < length; i++) {
+            if (chars[i] == ';') {
+                addParam(paramStart, i);
+                paramStart = i + 1;
+                separated = true;
+            }
+        }
+        addParam(paramStart, length);
+        if (separated) {
+            while (size > 0 && starts[size - 1] == ends[size - 1]) size--;
+        }
+        return this;
+    }
+
+    private void addParam(int start, int end) {
+        if (size == starts.length) {
+            int[] s = new int[size << 1], e = new int[size << 1];
+            System.arraycopy(starts, 0, s, 0, size);
+            System.arraycopy(ends, 0, e, 0, size);
+            starts = s;
+            ends = e;
+        }
+        starts[size] = start;
+        ends[size++] = end;
+    }
+
+    private void ensureChars(int capacity) {
+        if (capacity > chars.length) {
+            char[] c = new char[Math.max(capacity, chars.length << 1)];
+            System.arraycopy(chars, 0, c, 0, length);
+            chars = c;
+        }
+    }
+
+    /**
+     * @return how many parameters there are; this is 0 after {@link #clear()}, but 1 for empty parameter text
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if {@code index} is a valid parameter index and that parameter has at least one char
+     */
+    public boolean has(int index) {
+        return index >= 0 && index < size && ends[index] > starts[index];
+    }
+
+    /**
+     * @return the index in this CharSequence where the parameter at {@code index} starts
+     */
+    public int start(int index) {
+        return starts[index];
+    }
+
+    /**
+     * @return the index in this CharSequence just after the parameter at {@code index} ends
+     */
+    public int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Reads the parameter at {@code index} as a decimal float, ignoring any chars before the first digit, sign, or
+     * decimal point, much like {@link Parser#stringToFloat(String, float)}. Reading stops at the first char that can't
+     * be part of the number. Scientific notation is not supported.
+     *
+     * @return the float value, or {@code defaultValue} if there is no such parameter or it has no digits
+     */
+    public float getFloat(int index, float defaultValue) {
+        if (index < 0 || index >= size) return defaultValue;
+        final int end = ends[index];
+        int start = starts[index];
+        while (start < end && !isNumberChar(chars[start])) start++;
+        if (start == end) return defaultValue;
+        boolean negative = false, digits = false, point = false;
+        if (chars[start] == '-' || chars[start] == '+') negative = chars[start++] == '-';
+        long data = 0L;
+        int exponent = 0;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (c == '.' && !point) {
+                point = true;
+            } else if (c >= '0' && c <= '9') {
+                digits = true;
+                if (data < 100000000000000000L) {
+                    data = data * 10L + (c - '0');
+                    if (point) exponent--;
+                } else if (!point) {
+                    exponent++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (!digits) return defaultValue;
+        final float value = exponent == 0 ? data : (float) (data * Math.pow(10.0, exponent));
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads the parameter at {@code index} as a decimal int, ignoring any chars before the first digit or sign.
+     *
+     * @return the int value, or {@code defaultValue} if there is no such parameter or it has no digits
+     */
+    public int getInt(int index, int defaultValue) {
+        if (index < 0 || index >= size) return defaultValue;
+        final int end = ends[index];
+        int start = starts[index];
+        while (start < end && !isNumberChar(chars[start])) start++;
+        for (int i = start; i < end; i++) {
+            if (chars[i] >= '0' && chars[i] <= '9')
+                return StringUtils.intFromDec(this, start, end);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Reads the parameter at {@code index} as a boolean the same way {@link Parser#stringToBoolean(String)} does, so
+     * "true", "yes", "t", "y", "on", and "1" are true, ignoring case, and anything else is false.
+     *
+     * @return true if the parameter exists and is one of the case-insensitive true values
+     */
+    public boolean getBoolean(int index) {
+        if (index < 0 || index >= size) return false;
+        final int start = starts[index];
+        switch (ends[index] - start) {
+            case 1:
+                return matches(start, "t") || matches(start, "y") || chars[start] == '1';
+            case 2:
+                return matches(start, "on");
+            case 3:
+                return matches(start, "yes");
+            case 4:
+                return matches(start, "true");
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads the parameter at {@code index} as an RGBA8888 color, the same way
+     * {@link Parser#stringToColor(TypingLabel, String)} does, except that a parameter starting with {@code #} is
+     * always read as hex without asking the ColorLookup. Hex colors don't allocate; color names need a String to pass
+     * to the label's Font's {@link ColorLookup}.
+     *
+     * @return an RGBA8888 color, or 256 if the parameter doesn't exist or couldn't be read as a color
+     */
+    public int getColor(TypingLabel label, int index) {
+        if (!has(index)) return 256;
+        final int start = starts[index], len = ends[index] - start;
+        if (chars[start] == '#') {
+            if (len >= 9) return StringUtils.intFromHex(this, start + 1, start + 9);
+            if (len >= 7) return StringUtils.intFromHex(this, start + 1, start + 7) << 8 | 0xFF;
+            if (len >= 4) return expandShortHex(StringUtils.intFromHex(this, start + 1, start + 4));
+            return 256;
+        }
+        return Parser.stringToColor(label, getString(index));
+    }
+
+    /**
+     * @return the parameter at {@code index} as a new String, or null if there is no such parameter
+     */
+    public String getString(int index) {
+        if (index < 0 || index >= size) return null;
+        return new String(chars, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * @return a new String array holding each parameter, the same as splitting the parameter text on semicolons
+     */
+    public String[] toArray() {
+        String[] params = new String[size];
+        for (int i = 0; i < size; i++) {
+            params[i] = new String(chars, starts[i], ends[i] - starts[i]);
+        }
+        return params;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * @return all the parameter text, including the semicolons between parameters
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private boolean matches(int start, String lower) {
+        for (int i = 0; i < lower.length(); i++) {
+            if ((chars[start + i] | 0x20) != lower.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+';
+    }
+
+    static int expandShortHex(int rgb) {
+        return
+                (rgb << 20 & 0xF0000000) | (rgb << 16 & 0x0F000000) |
+                (rgb << 16 & 0x00F00000) | (rgb << 12 & 0x000F0000) |
+                (rgb << 12 & 0x0000F000) | (rgb <<  8 & 0x00000F00) |
+                0xFF;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+
+import java.util.Arrays;
+
+/**
+ * An alternative, flat representation of the glyphs in a {@link Layout}. Where a Layout stores a separate
+ * {@link Line} with its own {@link LongArray} for each line of text, a FlatLayout stores every glyph in one contiguous
+ * {@code long[]}, {@link #glyphs}, and stores each line as a record of its start index, end index, width, and height in
+ * parallel arrays. This makes it cheap to hold onto and reuse; {@link Font#regenerateLayout(Layout)} keeps one per Font
+ * and reuses it every time it re-wraps text, and you can keep one around to snapshot a Layout with
+ * {@link #pack(Layout)} and restore it later with {@link #unpack(Layout)}, without allocating once the arrays here are
+ * large enough. This is not a Poolable class, and isn't meant to be pooled; create one with a constructor, and reuse it
+ * after calling {@link #clear()} or {@link #reset()}.
+ */
+public class FlatLayout {
+    /**
+     * Every glyph in this FlatLayout, in order, as {@code long} values produced by {@link Font}. Only the first
+     * {@link #size} items are meaningful.
+     */
+    public long[] glyphs;
+    /**
+     * How many items in {@link #glyphs} are in use.
+     */
+    public int size;
+    /**
+     * The index in {@link #glyphs} of the first glyph in each line. Only the first {@link #lineCount} items are
+     * meaningful.
+     */
+    public int[] starts;
+    /**
+     * The index in {@link #glyphs} just after the last glyph in each line (exclusive). Only the first
+     * {@link #lineCount} items are meaningful.
+     */
+    public int[] ends;
+    /**
+     * The width of each line, as it would be stored in {@link Line#width}.
+     */
+    public float[] widths;
+    /**
+     * The height of each line, as it would be stored in {@link Line#height}.
+     */
+    public float[] heights;
+    /**
+     * How many line records are in use.
+     */
+    public int lineCount;
+
+    public FlatLayout() {
+        this(128, 8);
+    }
+
+    public FlatLayout(int glyphCapacity, int lineCapacity) {
+        glyphs = new long[Math.max(1, glyphCapacity)];
+        lineCapacity = Math.max(1, lineCapacity);
+        starts = new int[lineCapacity];
+        ends = new int[lineCapacity];
+        widths = new float[lineCapacity];
+        heights = new float[lineCapacity];
+    }
+
+    /**
+     * Creates a FlatLayout holding a copy of the glyphs and line sizes in {@code layout}.
+     * @param layout a Layout to copy; will not be modified
+     */
+    public FlatLayout(Layout layout) {
+        this(Math.max(16, layout.countGlyphs()), layout.lines());
+        pack(layout);
+    }
+
+    /**
+     * Ensures {@link #glyphs} can hold at least {@code capacity} items without resizing, keeping existing contents.
+     * @param capacity the minimum number of glyphs this should be able to hold
+     * @return {@link #glyphs}, which may be a new array
+     */
+    public long[] ensureGlyphCapacity(int capacity) {
+        if (capacity > glyphs.length)
+            glyphs = Arrays.copyOf(glyphs, Math.max(capacity, glyphs.length + (glyphs.length >>> 1)));
+        return glyphs;
+    }
+
+    /**
+     * Ensures the line record arrays can hold at least {@code capacity} lines without resizing, keeping existing
+     * contents.
+     * @param capacity the minimum number of line records this should be able to hold
+     */
+    public void ensureLineCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int cap = Math.max(capacity, starts.length + (starts.length >>> 1));
+            starts = Arrays.copyOf(starts, cap);
+            ends = Arrays.copyOf(ends, cap);
+            widths = Arrays.copyOf(widths, cap);
+            heights = Arrays.copyOf(heights, cap);
+        }
+    }
+
+    /**
+     * Appends one line record to this. The glyphs from {@code start} (inclusive) to {@code end} (exclusive) must
+     * already be present in {@link #glyphs}.
+     * @param start the index of the first glyph in the line
+     * @param end the index after the last glyph in the line
+     * @param width the width of the line, as in {@link Line#width}
+     * @param height the height of the line, as in {@link Line#height}
+     * @return this, for chaining
+     */
+    public FlatLayout addLine(int start, int end, float width, float height) {
+        ensureLineCapacity(lineCount + 1);
+        starts[lineCount] = start;
+        ends[lineCount] = end;
+        widths[lineCount] = width;
+        heights[lineCount] = height;
+        lineCount++;
+        return this;
+    }
+
+    /**
+     * Replaces the contents of this FlatLayout with a copy of every glyph and the size of every Line in
+     * {@code layout}. This only allocates if the arrays here are too small to hold the contents of layout.
+     * @param layout a Layout to copy; will not be modified
+     * @return this, for chaining
+     */
+    public FlatLayout pack(Layout layout) {
+        final Array<Line> lines = layout.lines;
+        final int n = lines.size;
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            total += lines.get(i).glyphs.size;
+        }
+        ensureGlyphCapacity(total);
+        ensureLineCapacity(n);
+        size = 0;
+        lineCount = 0;
+        for (int i = 0; i < n; i++) {
+            Line line = lines.get(i);
+            LongArray g = line.glyphs;
+            System.arraycopy(g.items, 0, glyphs, size, g.size);
+            addLine(size, size + g.size, line.width, line.height);
+            size += g.size;
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the Lines in {@code layout} with the lines recorded here. This reuses the Line objects already in
+     * layout, clearing and refilling their glyphs, only obtains new Lines from {@link Line#POOL} if this has more lines
+     * than layout, and frees any extra Lines in layout back to that Pool.
+     * Only the Lines and their glyphs, widths, and heights are changed; the font, target width, and other settings of
+     * layout are left as they are. If this has no line records at all, layout will be left with one empty Line.
+     * @param layout a Layout that will have its Lines replaced
+     * @return layout, for chaining
+     */
+    public Layout unpack(Layout layout) {
+        final Array<Line> lines = layout.lines;
+        final int count = Math.max(lineCount, 1);
+        for (int i = 0; i < count; i++) {
+            Line line;
+            if (i < lines.size) {
+                line = lines.get(i);
+                line.glyphs.clear();
+            } else {
+                line = Line.POOL.obtain();
+                lines.add(line);
+            }
+            line.invalidate();
+            if (i < lineCount) {
+                int start = starts[i], len = ends[i] - start;
+                System.arraycopy(glyphs, start, line.glyphs.setSize(len), 0, len);
+                line.width = widths[i];
+                line.height = heights[i];
+            } else {
+                line.width = 0f;
+                line.height = 0f;
+            }
+        }
+        layout.truncateLines(count);
+        return layout;
+    }
+
+    /**
+     * Gets how many line records this holds.
+     * @return the number of line records in use
+     */
+    public int lines() {
+        return lineCount;
+    }
+
+    /**
+     * Gets a glyph by its index in {@link #glyphs}, which is the same as its global index in a Layout made by
+     * {@link #unpack(Layout)}.
+     * @param index the index of a glyph
+     * @return the glyph at that index, or {@code 0xFFFFFFL} if index is out of bounds
+     */
+    public long getGlyph(int index) {
+        if (index < 0 || index >= size) return 0xFFFFFFL;
+        return glyphs[index];
+    }
+
+    /**
+     * Removes every line record but keeps the glyphs, so the same glyphs can be split into lines differently.
+     * @return this, for chaining
+     */
+    public FlatLayout clearLines() {
+        lineCount = 0;
+        return this;
+    }
+
+    /**
+     * Removes all glyphs and line records, without shrinking any arrays.
+     * @return this, for chaining
+     */
+    public FlatLayout clear() {
+        size = 0;
+        lineCount = 0;
+        return this;
+    }
+
+    /**
+     * Resets the object for reuse. This is the same as {@link #clear()}; the arrays are kept so they can be reused.
+     */
+    public void reset() {
+        clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size + lineCount * 20);
+        for (int ln = 0; ln < lineCount; ln++) {
+            sb.append("(\"");
+            for (int i = starts[ln], n = ends[ln]; i < n; i++) {
+                sb.append((char) glyphs[i]);
+            }
+            sb.append("\" w=").append(widths[ln]).append(" h=").append(heights[ln]).append(')');
+        }
+        return sb.toString();
+    }
+}
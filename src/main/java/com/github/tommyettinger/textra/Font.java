@@ -34,7 +34,6 @@ import com.badlogic.gdx.utils.*;
 import com.github.tommyettinger.textra.utils.*;
 import regexodus.Category;
 
-import java.util.Arrays;
 import java.util.IdentityHashMap;
 
 /**
@@ -467,6 +466,17 @@ public class Font implements Disposable {
      */
     public Array<TextureRegion> parents;
     protected DistanceFieldType distanceField = DistanceFieldType.STANDARD;
+    /**
+     * If true, {@link #shader} is {@link #effectFragmentShader} and glyphs with {@link #BLACK_OUTLINE},
+     * {@link #WHITE_OUTLINE}, {@link #DROP_SHADOW}, or {@link #SHINY} are drawn with one quad each; see
+     * {@link #setShaderEffects(boolean)}.
+     */
+    protected boolean shaderEffects = false;
+    /**
+     * How many texels each quad drawn with {@link #shaderEffects} is grown by on each side, so outlines and shadows
+     * that extend past a glyph's region have room.
+     */
+    private static final int EFFECT_MARGIN = 1;
 
     /**
      * Effectively used to attach a Float value to each Batch that might be used to draw a Font, where the Float is the
@@ -496,8 +506,85 @@ public class Font implements Disposable {
      * combination of two chars as a key (the earlier char is in the upper 16 bits, and the later char is in the lower
      * 16 bits). Each such combination that has a special kerning value (not the default 0) has a float associated with
      * it, which applies to the x-position of the later char.
+     * <br>
+     * When measuring or drawing, this Font looks up pairs in {@link #getKerningTable()} instead, which is faster. That
+     * is rebuilt automatically if this is assigned a different map or its size changes, but if you change the amount
+     * for a pair that is already present, call {@link #updateKerningTable()}.
      */
     public IntFloatMap kerning;
+    /**
+     * A faster copy of {@link #kerning}; use {@link #getKerningTable()} to get it.
+     */
+    protected transient KerningTable kerningTable;
+    /**
+     * Used by {@link #getMetricsVersion()}; the values here are what this Font had when that last changed.
+     */
+    private transient int metricsVersion;
+    private transient float seenScaleX = Float.NaN, seenCellWidth, seenCellHeight;
+    private transient boolean seenMono, seenOmitCurlyBraces;
+    private transient IntFloatMap seenKerning;
+    private transient FontFamily seenFamily;
+    /**
+     * While this is not null, {@link #drawVertices(Batch, Texture, float[])} adds each quad to it instead of drawing
+     * that quad. This is set only while a {@link TextraLabel} in retained mode is baking its quads.
+     */
+    transient VertexCache recording;
+    /**
+     * Quads that {@link #drawVertices(Batch, Texture, float[])} has gathered while a draw method is running, but has not
+     * yet sent to {@link #bulkBatch}. These are shared by all Fonts, so glyphs from other Fonts in a {@link FontFamily}
+     * stay in the order they were drawn. Quads are only gathered while {@link #bulkDepth} is greater than 0.
+     */
+    private static final float[] bulkVertices = new float[20 * 256];
+    private static int bulkSize, bulkDepth;
+    private static Texture bulkTexture;
+    private static Batch bulkBatch;
+    /**
+     * While this is not null, {@link #drawVertices(Batch, Texture, float[])} gives each quad to it instead of drawing
+     * that quad, and glyphs don't pause or resume distance field shaders themselves. This is set only between
+     * {@link DrawGrouper#begin()} and {@link DrawGrouper#end(Batch)}.
+     */
+    static DrawGrouper grouping;
+    /**
+     * Changed whenever stored states or the ColorLookup change; used to tell when the markup cache is out-of-date.
+     */
+    private transient int markupStateVersion;
+    /**
+     * Remembers the results of {@link #markup(String, Layout)}; null unless {@link #useMarkupCache(int)} was called.
+     */
+    private transient MarkupCache markupCache;
+    /**
+     * How many chars, starting at char 0, have their metrics copied into the dense arrays here, such as
+     * {@link #denseAdvances}. This is 0 by default, meaning the dense arrays aren't used; call
+     * {@link #useDenseMetrics(int)} to change it. Every char at or above this limit is looked up in {@link #mapping}.
+     */
+    public transient int denseLimit;
+    /**
+     * If {@link #denseLimit} is greater than 0, this holds the {@link GlyphRegion#xAdvance} of each char below that
+     * limit, or NaN for any char that isn't in {@link #mapping}. Measuring text checks this array instead of looking up
+     * each char in {@link #mapping}. This should only be changed using {@link #useDenseMetrics(int)} or
+     * {@link #updateDenseMetrics()}.
+     */
+    public transient float[] denseAdvances;
+    /**
+     * If {@link #denseLimit} is greater than 0, this holds the {@link GlyphRegion#offsetX} of each char below that
+     * limit, or 0 for any char that isn't in {@link #mapping}. This should not be changed directly.
+     */
+    public transient float[] denseOffsetsX;
+    /**
+     * If {@link #denseLimit} is greater than 0, this holds the {@link GlyphRegion#offsetY} of each char below that
+     * limit, or 0 for any char that isn't in {@link #mapping}. This should not be changed directly.
+     */
+    public transient float[] denseOffsetsY;
+    /**
+     * If {@link #denseLimit} is greater than 0, this holds the region width of each char below that limit, or 0 for any
+     * char that isn't in {@link #mapping}. This should not be changed directly.
+     */
+    public transient float[] denseWidths;
+    /**
+     * If {@link #denseLimit} is greater than 0, this holds the region height of each char below that limit, or 0 for
+     * any char that isn't in {@link #mapping}. This should not be changed directly.
+     */
+    public transient float[] denseHeights;
     /**
      * When {@link #distanceField} is {@link DistanceFieldType#SDF}, {@link DistanceFieldType#MSDF}, or
      * {@link DistanceFieldType#SDF_OUTLINE}, this determines how much the edges of the glyphs should be aliased sharply
@@ -566,7 +653,8 @@ public class Font implements Disposable {
     public FontFamily family;
 
     /**
-     * Determines how colors are looked up by name; defaults to using {@link ColorUtils#describe(String)}.
+     * Determines how colors are looked up by name; defaults to using {@link ColorUtils#describe(String)}. Setting this
+     * to {@link ColorLookup#DESCRIPTIVE_CACHED} avoids parsing the same descriptions repeatedly.
      */
     public ColorLookup colorLookup = ColorLookup.DESCRIPTIVE;
 
@@ -954,57 +1042,10 @@ public class Font implements Disposable {
     private final transient Layout tempLayout = new Layout();
     private final transient LongArray glyphBuffer = new LongArray(128);
     private final transient LongArray historyBuffer = new LongArray(64);
+    private final transient FlatLayout flatBuffer = new FlatLayout();
     private final transient ObjectLongMap<String> labeledStates = new ObjectLongMap<>(16);
+    private final transient Color effectColor = new Color();
     private final ObjectLongMap<String> storedStates = new ObjectLongMap<>(16);
-    /**
-     * Must be in lexicographic order because we use {@link Arrays#binarySearch(char[], int, int, char)} to
-     * verify if a char is present.
-     */
-    private final CharArray breakChars = CharArray.with(
-            '\t',    // horizontal tab
-            '\r',    // carriage return (used like a space)
-            ' ',     // space
-            '-',     // ASCII hyphen-minus
-            '\u00AD',// soft hyphen
-            '\u2000',// Unicode space
-            '\u2001',// Unicode space
-            '\u2002',// Unicode space
-            '\u2003',// Unicode space
-            '\u2004',// Unicode space
-            '\u2005',// Unicode space
-            '\u2006',// Unicode space
-            '\u2008',// Unicode space
-            '\u2009',// Unicode space
-            '\u200A',// Unicode space (hair-width)
-            '\u200B',// Unicode space (zero-width)
-            '\u2010',// hyphen (not minus)
-            '\u2012',// figure dash
-            '\u2013',// en dash
-            '\u2014',// em dash
-            '\u2027' // hyphenation point
-    );
-
-    /**
-     * Must be in lexicographic order because we use {@link Arrays#binarySearch(char[], int, int, char)} to
-     * verify if a char is present.
-     */
-    private final CharArray spaceChars = CharArray.with(
-            '\t',    // horizontal tab
-            '\r',    // carriage return (used like a space)
-            ' ',     // space
-            '\u2000',// Unicode space
-            '\u2001',// Unicode space
-            '\u2002',// Unicode space
-            '\u2003',// Unicode space
-            '\u2004',// Unicode space
-            '\u2005',// Unicode space
-            '\u2006',// Unicode space
-            '\u2008',// Unicode space
-            '\u2009',// Unicode space
-            '\u200A',// Unicode space (hair-width)
-            '\u200B' // Unicode space (zero-width)
-    );
-
     /**
      * The standard libGDX vertex shader source, which is also used by the SDF and MSDF shaders.
      */
@@ -1082,6 +1123,89 @@ public class Font implements Disposable {
                     "}";
 
 
+    /**
+     * Vertex shader source used with {@link #effectFragmentShader}. Besides what {@link #vertexShader} does, this
+     * reads an effect mode from the texture coordinates, where {@link #drawGlyph(Batch, long, float, float)} adds 4
+     * times the mode to u, and passes the mode on as {@code v_mode}.
+     */
+    public static final String effectVertexShader = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+            + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+            + "uniform mat4 u_projTrans;\n"
+            + "varying vec4 v_color;\n"
+            + "varying vec2 v_texCoords;\n"
+            + "varying float v_mode;\n"
+            + "\n"
+            + "void main() {\n"
+            + "	v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+            + "	v_color.a = v_color.a * (255.0/254.0);\n"
+            + "	float mode = floor((" + ShaderProgram.TEXCOORD_ATTRIBUTE + "0.x + 1.0) * 0.25);\n"
+            + "	v_mode = mode;\n"
+            + "	v_texCoords = vec2(" + ShaderProgram.TEXCOORD_ATTRIBUTE + "0.x - mode * 4.0, " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0.y);\n"
+            + "	gl_Position =  u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+            + "}\n";
+    /**
+     * Fragment shader source meant for {@link DistanceFieldType#STANDARD} fonts that draw {@link #BLACK_OUTLINE},
+     * {@link #WHITE_OUTLINE}, {@link #DROP_SHADOW}, and {@link #SHINY} glyphs with one quad each, instead of drawing
+     * up to 14 extra quads per glyph. The outline, shadow, or shine is found by sampling the glyph's alpha at nearby
+     * texels, and is blended under the glyph. Mode 0 draws exactly like the default SpriteBatch shader, so everything
+     * else (including inline images, underlines, and glyphs from other Fonts) can be drawn with this shader active.
+     * This is used when {@link #setShaderEffects(boolean)} was given true; its vertex shader is
+     * {@link #effectVertexShader}. The colors come from {@link #PACKED_BLACK}, {@link #PACKED_WHITE}, and
+     * {@link #PACKED_SHADOW_COLOR}, set as uniforms by {@link #enableShader(Batch)}.
+     */
+    public static final String effectFragmentShader =
+            "#ifdef GL_ES\n" +
+                    "#ifdef GL_FRAGMENT_PRECISION_HIGH\n" +
+                    "precision highp float;\n" +
+                    "#else\n" +
+                    "precision mediump float;\n" +
+                    "#endif\n" +
+                    "#endif\n" +
+                    "uniform sampler2D u_texture;\n" +
+                    "uniform vec2 u_texel;\n" +
+                    "uniform vec4 u_black;\n" +
+                    "uniform vec4 u_white;\n" +
+                    "uniform vec4 u_shadow;\n" +
+                    "varying vec4 v_color;\n" +
+                    "varying vec2 v_texCoords;\n" +
+                    "varying float v_mode;\n" +
+                    "void main() {\n" +
+                    "  vec4 base = v_color * texture2D(u_texture, v_texCoords);\n" +
+                    "  float mode = floor(v_mode + 0.5);\n" +
+                    "  if (mode < 0.5) {\n" +
+                    "    gl_FragColor = base;\n" +
+                    "    return;\n" +
+                    "  }\n" +
+                    "  float bold = step(4.5, mode);\n" +
+                    "  float kind = mode - bold * 4.0;\n" +
+                    "  vec4 under;\n" +
+                    "  float a = 0.0;\n" +
+                    "  if (kind < 2.5) {\n" +
+                    "    for (int x = -2; x <= 2; x++) {\n" +
+                    "      if (bold < 0.5 && (x == -2 || x == 2)) continue;\n" +
+                    "      for (int y = -1; y <= 1; y++) {\n" +
+                    "        a = max(a, texture2D(u_texture, v_texCoords + vec2(float(x), float(y)) * u_texel).a);\n" +
+                    "      }\n" +
+                    "    }\n" +
+                    "    under = kind < 1.5 ? u_black : u_white;\n" +
+                    "  } else if (kind < 3.5) {\n" +
+                    "    a = texture2D(u_texture, v_texCoords + vec2(-1.0, -2.0) * u_texel).a;\n" +
+                    "    under = u_shadow;\n" +
+                    "  } else {\n" +
+                    "    a = texture2D(u_texture, v_texCoords + vec2(0.0, 1.5) * u_texel).a;\n" +
+                    "    if (bold > 0.5) {\n" +
+                    "      a = max(a, texture2D(u_texture, v_texCoords + vec2(-1.0, 1.5) * u_texel).a);\n" +
+                    "      a = max(a, texture2D(u_texture, v_texCoords + vec2(1.0, 1.5) * u_texel).a);\n" +
+                    "    }\n" +
+                    "    under = u_white;\n" +
+                    "  }\n" +
+                    "  under.a *= a * v_color.a;\n" +
+                    "  float alpha = base.a + under.a * (1.0 - base.a);\n" +
+                    "  if (alpha <= 0.0) discard;\n" +
+                    "  gl_FragColor = vec4((base.rgb * base.a + under.rgb * under.a * (1.0 - base.a)) / alpha, alpha);\n" +
+                    "}";
+
     /**
      * Fragment shader source meant for MSDF fonts. This is automatically used when {@link #enableShader(Batch)} is
      * called and the {@link #distanceField} is {@link DistanceFieldType#MSDF}. This shader will almost always fail to
@@ -1165,8 +1289,10 @@ public class Font implements Disposable {
      * @return this, for chaining
      */
     public Font setColorLookup(ColorLookup lookup) {
-        if (lookup != null)
+        if (lookup != null) {
             colorLookup = lookup;
+            markupStateVersion++;
+        }
         return this;
     }
 
@@ -1279,6 +1405,9 @@ public class Font implements Disposable {
             namesByCharCode = new IntMap<>(toCopy.namesByCharCode);
         defaultValue = toCopy.defaultValue;
         kerning = toCopy.kerning == null ? null : new IntFloatMap(toCopy.kerning);
+        useDenseMetrics(toCopy.denseLimit);
+        if (toCopy.markupCache != null)
+            useMarkupCache(toCopy.markupCache.capacity);
         solidBlock = toCopy.solidBlock;
         name = toCopy.name;
         integerPosition = toCopy.integerPosition;
@@ -1313,6 +1442,7 @@ public class Font implements Disposable {
         // of a ShaderProgram, stateless ColorLookup, or always-identical Texture. They are referenced directly.
         if (toCopy.shader != null)
             shader = toCopy.shader;
+        shaderEffects = toCopy.shaderEffects;
         if (toCopy.colorLookup != null)
             colorLookup = toCopy.colorLookup;
         whiteBlock = toCopy.whiteBlock;
@@ -2545,9 +2675,69 @@ public class Font implements Disposable {
             if (!shader.isCompiled())
                 Gdx.app.error("textratypist", "SDF_OUTLINE shader failed to compile: " + shader.getLog());
         } else shader = null;
+        shaderEffects = false;
         return this;
     }
 
+    /**
+     * Returns true if this draws outlines, drop shadows, and shine with a shader; see {@link #setShaderEffects(boolean)}.
+     *
+     * @return true if {@link #effectFragmentShader} is this Font's {@link #shader}
+     */
+    public boolean isShaderEffects() {
+        return shaderEffects;
+    }
+
+    /**
+     * For a {@link DistanceFieldType#STANDARD} Font, this can make {@link #BLACK_OUTLINE}, {@link #WHITE_OUTLINE},
+     * {@link #DROP_SHADOW}, and {@link #SHINY} glyphs draw one quad each, with the outline, shadow, or shine found in
+     * {@link #effectFragmentShader}, instead of drawing 8 to 14 extra quads for an outline, or 1 to 3 for shadow and
+     * shine. This sets {@link #shader} to that shader, which {@link TextraLabel} and {@link TypingLabel} enable while
+     * they draw; if you draw with {@link #drawGlyphs(Batch, Layout, float, float)} yourself, call
+     * {@link #enableShader(Batch)} first. Whenever the shader isn't the Batch's current shader, glyphs are drawn with
+     * extra quads as before, so this is always safe to enable.
+     * <br>
+     * Outline, shadow, and shine offsets are measured in texels of this Font's texture, rather than in screen pixels
+     * like the quads use, so they get thicker as the Font is scaled up. Each quad is grown by one texel on each side,
+     * and nearby texels are sampled up to two texels (three with bold) past that, so the texture should have some
+     * padding or spacing between glyphs, as most do. The shader measures texels using the size of this Font's first
+     * texture, so glyphs from any texture with a different size, such as emoji from {@link KnownFonts#addEmoji(Font)}
+     * or glyphs from another Font in its {@link #family}, are drawn with extra quads instead.
+     * <br>
+     * If the shader can't be compiled, or there is no OpenGL context, this logs an error (if it can) and stays with
+     * the quad-based effects. This has no effect if this is a distance field font, since those have their own shader.
+     *
+     * @param shaderEffects true to use {@link #effectFragmentShader}; false to go back to drawing extra quads
+     * @return this, for chaining
+     */
+    public Font setShaderEffects(boolean shaderEffects) {
+        if (distanceField != DistanceFieldType.STANDARD || this.shaderEffects == shaderEffects) return this;
+        if (!shaderEffects) {
+            shader = null;
+            this.shaderEffects = false;
+            return this;
+        }
+        if (Gdx.gl20 == null) return this;
+        ShaderProgram program = new ShaderProgram(effectVertexShader, effectFragmentShader);
+        if (!program.isCompiled()) {
+            Gdx.app.error("textratypist", "Effect shader failed to compile: " + program.getLog());
+            program.dispose();
+            return this;
+        }
+        shader = program;
+        this.shaderEffects = true;
+        return this;
+    }
+
+    /**
+     * Returns true if {@code texture} has the same size as the first texture of this Font, which is what the texel size
+     * {@link #effectFragmentShader} samples with is measured from; glyphs from other textures can't use that shader.
+     */
+    private boolean hasEffectTexelSize(Texture texture) {
+        final Texture first = parents.first().getTexture();
+        return texture == first || (texture.getWidth() == first.getWidth() && texture.getHeight() == first.getHeight());
+    }
+
     /**
      * Assembles two chars into a kerning pair that can be looked up as a key in {@link #kerning}. This is unlikely to
      * be used by most user code, but can be useful for anything that's digging deeply into the internals here.
@@ -2562,6 +2752,184 @@ public class Font implements Disposable {
         return first << 16 | (second & 0xFFFF);
     }
 
+    /**
+     * Gets a {@link KerningTable} with the same pairs as {@link #kerning}, or null if kerning is null. The table is
+     * built the first time this is called, and is rebuilt if kerning has been replaced or has changed size since then.
+     * Looking pairs up in the table gives the same results as looking them up in kerning, but is faster, especially
+     * for the common case where the first char doesn't start any kerning pair.
+     *
+     * @return a KerningTable with the same pairs as {@link #kerning}, or null if this Font has no kerning
+     */
+    public KerningTable getKerningTable() {
+        if (kerning == null) return null;
+        if (kerningTable == null || !kerningTable.isBuiltFrom(kerning))
+            kerningTable = new KerningTable(kerning);
+        return kerningTable;
+    }
+
+    /**
+     * Rebuilds the {@link KerningTable} this uses from {@link #kerning}. This only needs to be called if you change
+     * the amount for a pair already in kerning; other changes are noticed by {@link #getKerningTable()}.
+     *
+     * @return this Font, for chaining
+     */
+    public Font updateKerningTable() {
+        kerningTable = null;
+        metricsVersion++;
+        return this;
+    }
+
+    /**
+     * Gets a number that changes whenever this Font, or any Font in its {@link #family}, changes in a way that can
+     * affect how wide or tall text is. {@link Line} and {@link Layout} remember this when they are measured by
+     * {@link #calculateSize(Layout)} and similar methods, so they are only measured again if it changes (or if their
+     * glyphs change). Changes to {@link #scaleX}, {@link #cellWidth}, {@link #cellHeight}, {@link #isMono},
+     * {@link #omitCurlyBraces}, or which map {@link #kerning} or FontFamily this uses are noticed automatically.
+     * Changes to {@link #mapping} are noticed when they go through methods like {@link #addAtlas(TextureAtlas)}, or
+     * when you call {@link #updateDenseMetrics()}; changes to the amounts in kerning are noticed when you call
+     * {@link #updateKerningTable()}.
+     *
+     * @return a number that changes whenever the size of text measured with this Font could change
+     */
+    public int getMetricsVersion() {
+        int v = ownMetricsVersion();
+        if (family != null) {
+            for (Font f : family.connected) {
+                if (f != null && f != this) v += f.ownMetricsVersion();
+            }
+        }
+        return v;
+    }
+
+    private int ownMetricsVersion() {
+        if (scaleX != seenScaleX || cellWidth != seenCellWidth || cellHeight != seenCellHeight || isMono != seenMono
+                || omitCurlyBraces != seenOmitCurlyBraces || kerning != seenKerning || family != seenFamily) {
+            seenScaleX = scaleX;
+            seenCellWidth = cellWidth;
+            seenCellHeight = cellHeight;
+            seenMono = isMono;
+            seenOmitCurlyBraces = omitCurlyBraces;
+            seenKerning = kerning;
+            seenFamily = family;
+            metricsVersion++;
+        }
+        return metricsVersion;
+    }
+
+    /**
+     * Copies the metrics of every glyph with a char below {@code limit} out of {@link #mapping} and into dense arrays,
+     * such as {@link #denseAdvances}, so measuring text (which happens whenever text is wrapped or sized) can read
+     * those arrays instead of looking up each char in {@link #mapping}. Chars at or above limit are still looked up in
+     * mapping. Using 256 covers ASCII and Latin-1 and needs 5KB; using 65536 covers every char and needs about 1.3MB.
+     * Passing 0 stops using dense arrays. This Font already keeps the arrays up-to-date when its own methods change
+     * mapping, such as {@link #addAtlas(TextureAtlas)} or {@link #fitCell(float, float, boolean)}, but if you change
+     * mapping or any GlyphRegion in it yourself, call {@link #updateDenseMetrics()} afterward.
+     *
+     * @param limit how many chars, starting at char 0, to store in the dense arrays; will be clamped between 0 and 65536
+     * @return this Font, for chaining
+     */
+    public Font useDenseMetrics(int limit) {
+        limit = Math.max(0, Math.min(limit, 0x10000));
+        if (limit == 0) {
+            denseLimit = 0;
+            denseAdvances = denseOffsetsX = denseOffsetsY = denseWidths = denseHeights = null;
+            return this;
+        }
+        if (denseAdvances == null || denseAdvances.length != limit) {
+            denseAdvances = new float[limit];
+            denseOffsetsX = new float[limit];
+            denseOffsetsY = new float[limit];
+            denseWidths = new float[limit];
+            denseHeights = new float[limit];
+        }
+        denseLimit = limit;
+        return updateDenseMetrics();
+    }
+
+    /**
+     * Copies the current metrics from {@link #mapping} into the dense arrays, if {@link #useDenseMetrics(int)} has
+     * been used to enable them, and changes {@link #getMetricsVersion()} so any remembered measurements of text are
+     * discarded. This only needs to be called if you change mapping or a GlyphRegion in it yourself.
+     *
+     * @return this Font, for chaining
+     */
+    public Font updateDenseMetrics() {
+        metricsVersion++;
+        for (int c = 0; c < denseLimit; c++) {
+            updateDenseMetric(c);
+        }
+        return this;
+    }
+
+    /**
+     * Copies the metrics of the glyph for {@code c} from {@link #mapping} into the dense arrays, if c is below
+     * {@link #denseLimit}.
+     * @param c the char to update
+     */
+    protected void updateDenseMetric(int c) {
+        metricsVersion++;
+        if (c < 0 || c >= denseLimit) return;
+        GlyphRegion gr = mapping.get(c);
+        if (gr == null) {
+            denseAdvances[c] = Float.NaN;
+            denseOffsetsX[c] = denseOffsetsY[c] = denseWidths[c] = denseHeights[c] = 0f;
+        } else {
+            denseAdvances[c] = gr.xAdvance;
+            denseOffsetsX[c] = gr.offsetX;
+            denseOffsetsY[c] = gr.offsetY;
+            denseWidths[c] = gr.getRegionWidth();
+            denseHeights[c] = gr.getRegionHeight();
+        }
+    }
+
+    /**
+     * Makes {@link #markup(String, Layout)} remember what it produced for up to {@code capacity} different markup
+     * Strings, so marking up the same String again (such as when a label is given the same text many times) only
+     * copies the remembered glyphs into the Layout. The least-recently-used results are forgotten first. Results are
+     * only reused when the Layout being marked up into is empty (as it is after {@link Layout#clear()}) and has the
+     * same target width, base color, max lines, and ellipsis, and when nothing about this Font that affects markup has
+     * changed since. Passing 0 stops caching and forgets all results. Use {@link #getMarkupCacheHits()} and
+     * {@link #getMarkupCacheMisses()} to check how well a given capacity works.
+     *
+     * @param capacity how many markup results to remember; 0 or less disables the cache
+     * @return this Font, for chaining
+     */
+    public Font useMarkupCache(int capacity) {
+        markupCache = capacity <= 0 ? null : new MarkupCache(capacity);
+        return this;
+    }
+
+    /**
+     * Gets how many times {@link #markup(String, Layout)} was able to reuse a remembered result since the markup
+     * cache was enabled or cleared. This is always 0 unless {@link #useMarkupCache(int)} has been called.
+     *
+     * @return how many markup calls were cache hits
+     */
+    public int getMarkupCacheHits() {
+        return markupCache == null ? 0 : markupCache.hits;
+    }
+
+    /**
+     * Gets how many times {@link #markup(String, Layout)} looked in the markup cache and had to parse the markup
+     * anyway, since the markup cache was enabled or cleared. Calls that can't use the cache at all, because the Layout
+     * wasn't empty, aren't counted. This is always 0 unless {@link #useMarkupCache(int)} has been called.
+     *
+     * @return how many markup calls were cache misses
+     */
+    public int getMarkupCacheMisses() {
+        return markupCache == null ? 0 : markupCache.misses;
+    }
+
+    /**
+     * Forgets every result in the markup cache, if it is enabled, and resets its hit and miss counts to 0.
+     *
+     * @return this Font, for chaining
+     */
+    public Font clearMarkupCache() {
+        if (markupCache != null) markupCache.clear();
+        return this;
+    }
+
     /**
      * Scales the font by the given horizontal and vertical multipliers.
      *
@@ -2673,7 +3041,7 @@ public class Font implements Disposable {
         }
         isMono = true;
         kerning = null;
-        return this;
+        return updateDenseMetrics();
     }
 
     public float getUnderlineX() {
@@ -3003,8 +3371,11 @@ public class Font implements Disposable {
      * @return this Font, for chaining
      */
     public Font addImage(String character, TextureRegion region, float offsetX, float offsetY, float xAdvance) {
-        if(character != null && !character.isEmpty())
-            mapping.put(character.charAt(character.length() - 1), new GlyphRegion(region, offsetX, offsetY, xAdvance));
+        if(character != null && !character.isEmpty()) {
+            char c = character.charAt(character.length() - 1);
+            mapping.put(c, new GlyphRegion(region, offsetX, offsetY, xAdvance));
+            updateDenseMetric(c);
+        }
         return this;
     }
 
@@ -3147,7 +3518,7 @@ public class Font implements Disposable {
                 namesByCharCode.put(i, name);
             }
         }
-        return this;
+        return updateDenseMetrics();
     }
 
     /**
@@ -3183,6 +3554,7 @@ public class Font implements Disposable {
      */
     public void enableShader(Batch batch) {
         if (batch.getShader() != shader) {
+            flushBulk();
             if (distanceField == DistanceFieldType.MSDF) {
                 batch.setShader(shader);
                 float smoothing = 8f * actualCrispness * Math.max(cellHeight / originalCellHeight, cellWidth / originalCellWidth);
@@ -3196,6 +3568,15 @@ public class Font implements Disposable {
                 batch.flush();
                 shader.setUniformf("u_smoothing", smoothing);
                 smoothingValues.put(batch, smoothing);
+            } else if (shaderEffects) {
+                batch.setShader(shader);
+                batch.flush();
+                final Texture texture = parents.first().getTexture();
+                shader.setUniformf("u_texel", 1f / texture.getWidth(), 1f / texture.getHeight());
+                shader.setUniformf("u_black", Color.abgr8888ToColor(effectColor, PACKED_BLACK));
+                shader.setUniformf("u_white", Color.abgr8888ToColor(effectColor, PACKED_WHITE));
+                shader.setUniformf("u_shadow", Color.abgr8888ToColor(effectColor, PACKED_SHADOW_COLOR));
+                smoothingValues.put(batch, 0f);
             } else {
                 batch.setShader(null);
                 smoothingValues.put(batch, 0f);
@@ -3225,6 +3606,7 @@ public class Font implements Disposable {
      */
     public void resumeDistanceFieldShader(Batch batch) {
         if (batch.getShader() == shader) {
+            flushBulk();
             if (distanceField == DistanceFieldType.MSDF) {
                 float smoothing = 8f * actualCrispness * Math.max(cellHeight / originalCellHeight, cellWidth / originalCellWidth);
                 batch.flush();
@@ -3259,6 +3641,7 @@ public class Font implements Disposable {
         if(batch.getShader() == shader && distanceField != DistanceFieldType.STANDARD) {
             Float smoothing = smoothingValues.get(batch);
             if(smoothing == null || smoothing == 0f) return;
+            flushBulk();
             batch.flush();
             shader.setUniformf("u_smoothing", 0f);
             smoothingValues.put(batch, 0f);
@@ -3348,6 +3731,15 @@ public class Font implements Disposable {
     public void drawBlocks(Batch batch, char blockChar, int[][] colors, float x, float y) {
         final TextureRegion block = mapping.get(blockChar);
         if (block == null) return;
+        beginBulk();
+        try {
+            drawBlockGrid(batch, block, colors, x, y);
+        } finally {
+            endBulk();
+        }
+    }
+
+    private void drawBlockGrid(Batch batch, TextureRegion block, int[][] colors, float x, float y) {
         final Texture parent = block.getTexture();
         final float ipw = 1.0f / parent.getWidth();
         final float iph = 1.0f / parent.getHeight();
@@ -3699,7 +4091,7 @@ public class Font implements Disposable {
                 long glyph;
                 for (int i = 0; i < n; i++) {
                     kern = kern << 16 | (int) ((glyph = line.glyphs.get(i)) & 0xFFFF);
-                    amt = kerning.get(kern, 0);
+                    amt = getKerningTable().get(kern, 0);
                     x += drawGlyph(batch, glyph, x + amt, y) + amt;
                 }
             } else {
@@ -3754,6 +4146,10 @@ public class Font implements Disposable {
      * Draws the specified Layout of glyphs with a Batch at a given x, y position, rotated using dedegrees around the
      * given origin point, using {@code align} to determine how to position the text. Typically, align is
      * {@link Align#left}, {@link Align#center}, or {@link Align#right}, but it can have a vertical component as well.
+     * <br>
+     * A distance field Font with inline images, such as emoji, has to pause and resume its shader around each image.
+     * {@link DrawGrouper#drawGlyphs(Batch, Font, Layout, float, float, int, float, float, float)} draws the same Layout
+     * while grouping quads that use the same Texture and shader state, so the Batch is flushed far fewer times.
      *
      * @param batch    typically a SpriteBatch
      * @param glyphs   typically returned by {@link #markup(String, Layout)}
@@ -3837,6 +4233,15 @@ public class Font implements Disposable {
      */
     public float drawGlyphs(Batch batch, Line glyphs, float x, float y, int align, float rotation, float originX, float originY) {
         if (glyphs == null || glyphs.glyphs.size == 0) return 0;
+        beginBulk();
+        try {
+            return drawLine(batch, glyphs, x, y, align, rotation, originX, originY);
+        } finally {
+            endBulk();
+        }
+    }
+
+    private float drawLine(Batch batch, Line glyphs, float x, float y, int align, float rotation, float originX, float originY) {
         float drawn = 0f, cs = MathUtils.cosDeg(rotation), sn = MathUtils.sinDeg(rotation);
 
         final float worldOriginX = x + originX;
@@ -3889,7 +4294,7 @@ public class Font implements Disposable {
 
             if (font.kerning != null) {
                 kern = kern << 16 | (int) (glyph & 0xFFFF);
-                float amt = font.kerning.get(kern, 0)
+                float amt = font.getKerningTable().get(kern, 0)
                         * font.scaleX * ((glyph & ALTERNATE) != 0L ? 4f : (glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
                 xChange += cs * amt;
                 yChange += sn * amt;
@@ -3946,10 +4351,17 @@ public class Font implements Disposable {
     public static float xAdvance(Font font, float scale, long glyph) {
         if (glyph >>> 32 == 0L) return 0;
         char ch = (char) glyph;
-        if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = Category.caseUp(ch);
-        GlyphRegion tr = font.mapping.get(ch);
-        if (tr == null) return 0f;
-        float changedW = tr.xAdvance * scale;
+        if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = CharClasses.caseUp(ch);
+        float changedW;
+        if (ch < font.denseLimit) {
+            // NaN marks a char with no glyph.
+            if ((changedW = font.denseAdvances[ch]) != changedW) return 0f;
+            changedW *= scale;
+        } else {
+            GlyphRegion tr = font.mapping.get(ch);
+            if (tr == null) return 0f;
+            changedW = tr.xAdvance * scale;
+        }
         if (!font.isMono) {
             if ((glyph & SUPERSCRIPT) != 0L) {
                 changedW *= 0.5f;
@@ -3971,18 +4383,27 @@ public class Font implements Disposable {
     public float xAdvance(long glyph) {
         if (glyph >>> 32 == 0L) return 0;
         char ch = (char) glyph;
-        if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = Category.caseUp(ch);
-        GlyphRegion tr = mapping.get(ch);
-        if (tr == null) return 0f;
+        if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = CharClasses.caseUp(ch);
+        final float advance, offsetX;
+        if (ch < denseLimit) {
+            // NaN marks a char with no glyph.
+            if ((advance = denseAdvances[ch]) != advance) return 0f;
+            offsetX = denseOffsetsX[ch];
+        } else {
+            GlyphRegion tr = mapping.get(ch);
+            if (tr == null) return 0f;
+            advance = tr.xAdvance;
+            offsetX = tr.offsetX;
+        }
         float scale;
         if(ch >= 0xE000 && ch < 0xF800)
-            scale = ((glyph & ALTERNATE) != 0L ? 4f : (glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f * cellHeight / (tr.xAdvance);
-//            scale = ((glyph & ALTERNATE) != 0L ? 4f : (glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f * cellHeight / (tr.xAdvance*1.25f);
+            scale = ((glyph & ALTERNATE) != 0L ? 4f : (glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f * cellHeight / (advance);
+//            scale = ((glyph & ALTERNATE) != 0L ? 4f : (glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f * cellHeight / (advance*1.25f);
         else
             scale = scaleX * ((glyph & ALTERNATE) != 0L ? 4f : (glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
-        float changedW = tr.xAdvance * scale;
+        float changedW = advance * scale;
         if (!isMono) {
-            changedW += tr.offsetX * scale;
+            changedW += offsetX * scale;
             if ((glyph & SUPERSCRIPT) != 0L) {
                 changedW *= 0.5f;
             }
@@ -3991,12 +4412,15 @@ public class Font implements Disposable {
     }
 
     /**
-     * Measures the actual width that the given Line will use when drawn.
+     * Measures the actual width that the given Line will use when drawn. If the Line hasn't changed since this last
+     * measured it, and {@link #getMetricsVersion()} hasn't changed either, this returns the remembered width.
      *
      * @param line a Line, as from inside a Layout
      * @return the width in world units
      */
     public float measureWidth(Line line) {
+        final int version = getMetricsVersion();
+        if (line.isMeasured(this, 0, version, 0f)) return line.measuredWidth;
         float drawn = 0f;
         float scaleX;
         float scale;
@@ -4007,7 +4431,7 @@ public class Font implements Disposable {
         for (int i = 0, n = glyphs.size; i < n; i++) {
             long glyph = glyphs.get(i);
             char ch = (char) glyph;
-            if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = Category.caseUp(ch);
+            if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = CharClasses.caseUp(ch);
             if(omitCurlyBraces) {
                 if (curly) {
                     if (ch == '}') {
@@ -4024,21 +4448,30 @@ public class Font implements Disposable {
             Font font = null;
             if (family != null) font = family.connected[(int) (glyph >>> 16 & 15)];
             if (font == null) font = this;
-            GlyphRegion tr = font.mapping.get(ch);
-            if (tr == null) continue;
+            final float advance, offsetX;
+            if (ch < font.denseLimit) {
+                // NaN marks a char with no glyph.
+                if ((advance = font.denseAdvances[ch]) != advance) continue;
+                offsetX = font.denseOffsetsX[ch];
+            } else {
+                GlyphRegion tr = font.mapping.get(ch);
+                if (tr == null) continue;
+                advance = tr.xAdvance;
+                offsetX = tr.offsetX;
+            }
             if (font.kerning != null) {
                 kern = kern << 16 | ch;
                 scale = (glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
                 if((char)glyph >= 0xE000 && (char)glyph < 0xF800)
-                    scaleX = scale * font.cellHeight / (tr.xAdvance);
+                    scaleX = scale * font.cellHeight / (advance);
                 else
                     scaleX = font.scaleX * scale * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
-                amt = font.kerning.get(kern, 0) * scaleX;
-                float changedW = tr.xAdvance * scaleX;
-                if(tr.offsetX != tr.offsetX)
+                amt = font.getKerningTable().get(kern, 0) * scaleX;
+                float changedW = advance * scaleX;
+                if(offsetX != offsetX)
                     changedW = font.cellWidth * scale;
                 else if(initial && !isMono){
-                    float ox = tr.offsetX * scaleX;
+                    float ox = offsetX * scaleX;
                     if(ox < 0) changedW -= ox;
                 }
                 initial = false;
@@ -4046,21 +4479,22 @@ public class Font implements Disposable {
             } else {
                 scale = (glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
                 if((char)glyph >= 0xE000 && (char)glyph < 0xF800)
-                    scaleX = scale * font.cellHeight / (tr.xAdvance);
+                    scaleX = scale * font.cellHeight / (advance);
                 else
                     scaleX = font.scaleX * scale * ((glyph & SUPERSCRIPT) != 0L && !font.isMono ? 0.5f : 1.0f);
 
-                float changedW = tr.xAdvance * scaleX;
-                if(tr.offsetX != tr.offsetX)
+                float changedW = advance * scaleX;
+                if(offsetX != offsetX)
                     changedW = font.cellWidth * scale;
                 else if(initial && !isMono){
-                    float ox = tr.offsetX * scaleX;
+                    float ox = offsetX * scaleX;
                     if(ox < 0) changedW -= ox;
                 }
                 initial = false;
                 drawn += changedW;
             }
         }
+        line.measured(this, 0, version, 0f, 0f, drawn);
         return drawn;
     }
 
@@ -4072,6 +4506,11 @@ public class Font implements Disposable {
      * @return the width in world units
      */
     public float calculateSize(Line line) {
+        final int version = getMetricsVersion();
+        if (line.isMeasured(this, 1, version, 0f)) {
+            line.height = line.measuredHeight;
+            return line.width = line.measuredWidth;
+        }
         float drawn = 0f;
         float scaleX;
         float scale;
@@ -4083,7 +4522,7 @@ public class Font implements Disposable {
         for (int i = 0, n = glyphs.size; i < n; i++) {
             long glyph = glyphs.get(i);
             char ch = (char) glyph;
-            if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = Category.caseUp(ch);
+            if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = CharClasses.caseUp(ch);
             if(omitCurlyBraces) {
                 if (curly) {
                     if (ch == '}') {
@@ -4100,24 +4539,33 @@ public class Font implements Disposable {
             Font font = null;
             if (family != null) font = family.connected[(int) (glyph >>> 16 & 15)];
             if (font == null) font = this;
-            GlyphRegion tr = font.mapping.get(ch);
-            if (tr == null) continue;
+            final float advance, offsetX;
+            if (ch < font.denseLimit) {
+                // NaN marks a char with no glyph.
+                if ((advance = font.denseAdvances[ch]) != advance) continue;
+                offsetX = font.denseOffsetsX[ch];
+            } else {
+                GlyphRegion tr = font.mapping.get(ch);
+                if (tr == null) continue;
+                advance = tr.xAdvance;
+                offsetX = tr.offsetX;
+            }
             scale = (glyph & ALTERNATE) != 0L || isMono ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
 
             if (font.kerning != null) {
                 kern = kern << 16 | ch;
                 if(ch >= 0xE000 && ch < 0xF800) {
-                    scaleX = scale * font.cellHeight / (tr.xAdvance);
+                    scaleX = scale * font.cellHeight / (advance);
                 }
                 else
                     scaleX = font.scaleX * scale * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
                 line.height = Math.max(line.height, (font.cellHeight /* - font.descent * font.scaleY */) * scale);
-                amt = font.kerning.get(kern, 0) * scaleX;
-                float changedW = tr.xAdvance * scaleX;
-                if(tr.offsetX != tr.offsetX)
+                amt = font.getKerningTable().get(kern, 0) * scaleX;
+                float changedW = advance * scaleX;
+                if(offsetX != offsetX)
                     changedW = font.cellWidth * scale;
                 else if(initial && !isMono){
-                    float ox = tr.offsetX * scaleX;
+                    float ox = offsetX * scaleX;
                     if(ox < 0) changedW -= ox;
                 }
                 initial = false;
@@ -4125,15 +4573,15 @@ public class Font implements Disposable {
             } else {
                 line.height = Math.max(line.height, (font.cellHeight /* - font.descent * font.scaleY */) * scale);
                 if((char)glyph >= 0xE000 && (char)glyph < 0xF800) {
-                    scaleX = scale * font.cellHeight / (tr.xAdvance);
+                    scaleX = scale * font.cellHeight / (advance);
                 }
                 else
                     scaleX = font.scaleX * scale * ((glyph & SUPERSCRIPT) != 0L && !font.isMono ? 0.5f : 1.0f);
-                float changedW = tr.xAdvance * scaleX;
-                if(tr.offsetX != tr.offsetX)
+                float changedW = advance * scaleX;
+                if(offsetX != offsetX)
                     changedW = font.cellWidth * scale;
                 else if(initial && !isMono){
-                    float ox = tr.offsetX * scaleX;
+                    float ox = offsetX * scaleX;
                     if(ox < 0) changedW -= ox;
                 }
                 initial = false;
@@ -4141,6 +4589,7 @@ public class Font implements Disposable {
             }
         }
         line.width = drawn;
+        line.measured(this, 1, version, 0f, 0f, drawn);
         return drawn;
     }
 
@@ -4149,17 +4598,29 @@ public class Font implements Disposable {
      * the values in layout if they are incorrect. This returns the total width of the measured Layout. Most usage will
      * not necessarily need the return value; either this is called to fix incorrect size information on a Layout, or
      * the Layout this modifies will be queried for its {@link Layout#getWidth()} and/or {@link Layout#getHeight()}.
+     * Lines that haven't changed since this last measured them (and that follow a Line that ends at the same height)
+     * aren't measured again unless {@link #getMetricsVersion()} has changed; see {@link Layout#invalidate()}.
      * @param layout a Layout object that may have the width and height of its lines modified (its content won't change)
      * @return the total width of the measured Layout, as a float
      */
     public float calculateSize(Layout layout) {
+        final int version = getMetricsVersion();
         float w = 0f;
         float currentHeight = 0f;
         for (int ln = 0; ln < layout.lines(); ln++) {
+            Line line = layout.getLine(ln);
+            // the height of a Line can depend on the Line before it, so that is part of what must match.
+            if (line.isMeasured(this, 2, version, currentHeight)) {
+                line.width = line.measuredWidth;
+                line.height = line.measuredHeight;
+                currentHeight = line.measuredHeightOut;
+                w = Math.max(w, line.width);
+                continue;
+            }
+            final float heightIn = currentHeight;
             float drawn = 0f;
             float scaleX;
             float scale;
-            Line line = layout.getLine(ln);
             LongArray glyphs = line.glyphs;
             boolean curly = false, initial = true;
             int kern = -1;
@@ -4168,7 +4629,7 @@ public class Font implements Disposable {
             for (int i = 0, n = glyphs.size; i < n; i++) {
                 long glyph = glyphs.get(i);
                 char ch = (char) glyph;
-                if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = Category.caseUp(ch);
+                if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = CharClasses.caseUp(ch);
                 if(omitCurlyBraces) {
                     if (curly) {
                         if (ch == '}') {
@@ -4185,24 +4646,33 @@ public class Font implements Disposable {
                 Font font = null;
                 if (family != null) font = family.connected[(int) (glyph >>> 16 & 15)];
                 if (font == null) font = this;
-                GlyphRegion tr = font.mapping.get(ch);
-                if (tr == null) continue;
+                final float advance, offsetX;
+                if (ch < font.denseLimit) {
+                    // NaN marks a char with no glyph.
+                    if ((advance = font.denseAdvances[ch]) != advance) continue;
+                    offsetX = font.denseOffsetsX[ch];
+                } else {
+                    GlyphRegion tr = font.mapping.get(ch);
+                    if (tr == null) continue;
+                    advance = tr.xAdvance;
+                    offsetX = tr.offsetX;
+                }
                 scale = (glyph & ALTERNATE) != 0L || isMono ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
                 if (font.kerning != null) {
                     kern = kern << 16 | ch;
                     if(ch >= 0xE000 && ch < 0xF800){
-                        scaleX = scale * font.cellHeight / (tr.xAdvance);
-//                        scaleX = scale * font.cellHeight / (tr.xAdvance*1.25f);
+                        scaleX = scale * font.cellHeight / (advance);
+//                        scaleX = scale * font.cellHeight / (advance*1.25f);
                     }
                     else
                         scaleX = font.scaleX * scale * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
                     line.height = Math.max(line.height, (currentHeight = font.cellHeight) * scale);
-                    amt = font.kerning.get(kern, 0) * scaleX;
-                    float changedW = tr.xAdvance * scaleX;
-                    if(tr.offsetX != tr.offsetX)
+                    amt = font.getKerningTable().get(kern, 0) * scaleX;
+                    float changedW = advance * scaleX;
+                    if(offsetX != offsetX)
                         changedW = font.cellWidth * scale;
                     else if(initial && !isMono){
-                        float ox = tr.offsetX * scaleX;
+                        float ox = offsetX * scaleX;
                         if(ox < 0) changedW -= ox;
                     }
                     initial = false;
@@ -4210,16 +4680,16 @@ public class Font implements Disposable {
                 } else {
                     line.height = Math.max(line.height, (currentHeight = font.cellHeight) * scale);
                     if(ch >= 0xE000 && ch < 0xF800){
-                        scaleX = scale * font.cellHeight / (tr.xAdvance);
-//                        scaleX = scale * font.cellHeight / (tr.xAdvance*1.25f);
+                        scaleX = scale * font.cellHeight / (advance);
+//                        scaleX = scale * font.cellHeight / (advance*1.25f);
                     }
                     else
                         scaleX = font.scaleX * scale * ((glyph & SUPERSCRIPT) != 0L && !font.isMono ? 0.5f : 1.0f);
-                    float changedW = tr.xAdvance * scaleX;
-                    if(tr.offsetX != tr.offsetX)
+                    float changedW = advance * scaleX;
+                    if(offsetX != offsetX)
                         changedW = font.cellWidth * scale;
                     else if(initial && !font.isMono){
-                        float ox = tr.offsetX * scaleX;
+                        float ox = offsetX * scaleX;
                         if(ox < 0) changedW -= ox;
                     }
                     initial = false;
@@ -4227,6 +4697,7 @@ public class Font implements Disposable {
                 }
             }
             line.width = drawn;
+            line.measured(this, 2, version, heightIn, currentHeight, drawn);
             w = Math.max(w, drawn);
         }
         return w;
@@ -4273,26 +4744,37 @@ public class Font implements Disposable {
             Font font = null;
             if (family != null) font = family.connected[(int) (glyph >>> 16 & 15)];
             if (font == null) font = this;
-            GlyphRegion tr = font.mapping.get(ch);
-            if (tr == null) {
-                advances.add(0f);
-                continue;
+            final float advance, offsetX;
+            if (ch < font.denseLimit) {
+                // NaN marks a char with no glyph.
+                if ((advance = font.denseAdvances[ch]) != advance) {
+                    advances.add(0f);
+                    continue;
+                }
+                offsetX = font.denseOffsetsX[ch];
+            } else {
+                GlyphRegion tr = font.mapping.get(ch);
+                if (tr == null) {
+                    advances.add(0f);
+                    continue;
+                }
+                advance = tr.xAdvance;
+                offsetX = tr.offsetX;
             }
             if (font.kerning != null) {
                 kern = kern << 16 | ch;
                 scale = (glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
                 if((char)glyph >= 0xE000 && (char)glyph < 0xF800){
-                    scaleX = scale * font.cellHeight / (tr.xAdvance);
-//                    scaleX = scale * font.cellHeight / (tr.xAdvance*1.25f);
+                    scaleX = scale * font.cellHeight / (advance);
+//                    scaleX = scale * font.cellHeight / (advance*1.25f);
                 }
                 else
                     scaleX = font.scaleX * scale * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
                 line.height = Math.max(line.height, (font.cellHeight /* - font.descent * font.scaleY */) * scale);
-                amt = font.kerning.get(kern, 0) * scaleX;
+                amt = font.getKerningTable().get(kern, 0) * scaleX;
                 float changedW = xAdvance(font, scaleX, glyph);
                 if(initial){
-                    float ox = font.mapping.get((int) (glyph & 0xFFFF), font.defaultValue).offsetX
-                            * scaleX;
+                    float ox = offsetX * scaleX;
                     if(ox < 0) changedW -= ox;
                     initial = false;
                 }
@@ -4302,17 +4784,16 @@ public class Font implements Disposable {
                 scale = (glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
                 line.height = Math.max(line.height, (font.cellHeight /* - font.descent * font.scaleY */) * scale);
                 if((char)glyph >= 0xE000 && (char)glyph < 0xF800){
-                    scaleX = scale * font.cellHeight / (tr.xAdvance);
-//                    scaleX = scale * font.cellHeight / (tr.xAdvance*1.25f);
+                    scaleX = scale * font.cellHeight / (advance);
+//                    scaleX = scale * font.cellHeight / (advance*1.25f);
                 }
                 else
                     scaleX = font.scaleX * scale * ((glyph & SUPERSCRIPT) != 0L && !font.isMono ? 0.5f : 1.0f);
                 float changedW = xAdvance(font, scaleX, glyph);
                 if (font.isMono)
-                    changedW += tr.offsetX * scaleX;
+                    changedW += offsetX * scaleX;
                 else if(initial){
-                    float ox = font.mapping.get((int) (glyph & 0xFFFF), font.defaultValue).offsetX
-                            * scaleX;
+                    float ox = offsetX * scaleX;
                     if(ox < 0) changedW -= ox;
                     initial = false;
                 }
@@ -4415,6 +4896,15 @@ public class Font implements Disposable {
      * @return the distance in world units the drawn glyph uses up for width, as in a line of text along the given rotation
      */
     public float drawGlyph(Batch batch, long glyph, float x, float y, float rotation, float sizingX, float sizingY, int backgroundColor) {
+        beginBulk();
+        try {
+            return drawGlyphQuads(batch, glyph, x, y, rotation, sizingX, sizingY, backgroundColor);
+        } finally {
+            endBulk();
+        }
+    }
+
+    private float drawGlyphQuads(Batch batch, long glyph, float x, float y, float rotation, float sizingX, float sizingY, int backgroundColor) {
         final float sin = MathUtils.sinDeg(rotation);
         final float cos = MathUtils.cosDeg(rotation);
 
@@ -4424,7 +4914,7 @@ public class Font implements Disposable {
         char c = (char) glyph;
         boolean squashed = false, jostled = false;
         if((glyph & SMALL_CAPS) == SMALL_CAPS) {
-            squashed = (c != (c = Category.caseUp(c)));
+            squashed = (c != (c = CharClasses.caseUp(c)));
             glyph = (glyph & 0xFFFFFFFFFFFF0000L) | c;
         } else {
             jostled = (glyph & ALTERNATE_MODES_MASK) == JOSTLE;
@@ -4434,7 +4924,11 @@ public class Font implements Disposable {
         if (tr == null) return 0f;
 
 
-        if(font.distanceField != DistanceFieldType.STANDARD && latestTexture != (latestTexture = tr.getTexture())) {
+        if(font.recording != null) {
+            font.recording.shade(font, tr.getTexture());
+        } else if(grouping != null) {
+            grouping.shade(font, tr.getTexture());
+        } else if(font.distanceField != DistanceFieldType.STANDARD && latestTexture != (latestTexture = tr.getTexture())) {
             boolean located = false;
             for (int p = 0; p < font.parents.size; p++) {
                 if (font.parents.get(p).getTexture() == latestTexture) {
@@ -4451,11 +4945,7 @@ public class Font implements Disposable {
             sizingY *= 0.7f;
         }
 
-        float color = NumberUtils.intBitsToFloat(
-                  (int) (batch.getColor().a * (glyph >>> 33 & 127)) << 25
-                | (int)(batch.getColor().r * (glyph >>> 56))
-                | (int)(batch.getColor().g * (glyph >>> 48 & 0xFF)) << 8
-                | (int)(batch.getColor().b * (glyph >>> 40 & 0xFF)) << 16);
+        float color = glyphColor(batch.getColor(), glyph);
         float scale = ((glyph & ALTERNATE) != 0L) ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f;
         float scaleX, fsx, osx;
         float scaleY, fsy, osy;
@@ -4720,7 +5210,10 @@ public class Font implements Disposable {
         vertices[18] = u2;
         vertices[19] = v;
 
-        if((glyph & ALTERNATE_MODES_MASK) == DROP_SHADOW) {
+        final int shaderMode = shaderEffects && shader != null && batch.getShader() == shader && u != u2 && v != v2
+                && hasEffectTexelSize(tex) ? shaderEffectMode(glyph) : 0;
+        // when shaderMode isn't 0, the outline, shadow, or shine is drawn by effectFragmentShader with the glyph, below.
+        if(shaderMode == 0 && (glyph & ALTERNATE_MODES_MASK) == DROP_SHADOW) {
 //            float shadow = Color.toFloatBits(0.1333f, 0.1333f, 0.1333f, 0.5f);// (dark transparent gray, as batch alpha is lowered, this gets more transparent)
             float shadow = ColorUtils.multiplyAlpha(PACKED_SHADOW_COLOR, batch.getColor().a);// (dark transparent gray, as batch alpha is lowered, this gets more transparent)
             vertices[2] = shadow;
@@ -4733,7 +5226,7 @@ public class Font implements Disposable {
 
             drawVertices(batch, tex, vertices);
         }
-        else if((glyph & ALTERNATE_MODES_MASK) == BLACK_OUTLINE || (glyph & ALTERNATE_MODES_MASK) == WHITE_OUTLINE) {
+        else if(shaderMode == 0 && ((glyph & ALTERNATE_MODES_MASK) == BLACK_OUTLINE || (glyph & ALTERNATE_MODES_MASK) == WHITE_OUTLINE)) {
             float outline = ColorUtils.multiplyAlpha((glyph & ALTERNATE_MODES_MASK) == BLACK_OUTLINE
                     ? PACKED_BLACK // black
                     : PACKED_WHITE, batch.getColor().a); // white
@@ -4757,7 +5250,7 @@ public class Font implements Disposable {
                 }
             }
         }
-        else if((glyph & ALTERNATE_MODES_MASK) == SHINY) {
+        else if(shaderMode == 0 && (glyph & ALTERNATE_MODES_MASK) == SHINY) {
             float shine = ColorUtils.multiplyAlpha(PACKED_WHITE, batch.getColor().a);
             vertices[2] = shine;
             vertices[7] = shine;
@@ -4786,7 +5279,16 @@ public class Font implements Disposable {
         vertices[15] = (vertices[0] = font.handleIntegerPosition(x + cos * p0x - sin * p0y)) - (vertices[5] = font.handleIntegerPosition(x + cos * p1x - sin * p1y)) + (vertices[10] = font.handleIntegerPosition(x + cos * p2x - sin * p2y));
         vertices[16] = (vertices[1] = font.handleIntegerPosition(y + sin * p0x + cos * p0y)) - (vertices[6] = font.handleIntegerPosition(y + sin * p1x + cos * p1y)) + (vertices[11] = font.handleIntegerPosition(y + sin * p2x + cos * p2y));
 
-        drawVertices(batch, tex, vertices);
+        if (shaderMode != 0) {
+            growEffectQuad(tex, u, v, u2, v2, shaderMode);
+            drawVertices(batch, tex, vertices);
+            vertices[3] = vertices[8] = u;
+            vertices[13] = vertices[18] = u2;
+            vertices[4] = vertices[19] = v;
+            vertices[9] = vertices[14] = v2;
+        } else {
+            drawVertices(batch, tex, vertices);
+        }
 
         // This is the "emergency debug code" to get as much info as possible about a glyph when it prints.
 //        if(c >= 0xE000 && c < 0xF800) {
@@ -5172,13 +5674,147 @@ public class Font implements Disposable {
      *     {@link ColorLookup#DESCRIPTIVE}, because it only evaluates ASCII letters, and treats everything else as a
      *     separator.</li>
      * </ul>
-     * You can render {@code appendTo} using {@link #drawGlyphs(Batch, Layout, float, float)}.
+     * You can render {@code appendTo} using {@link #drawGlyphs(Batch, Layout, float, float)}. If the same text is
+     * marked up many times, {@link #useMarkupCache(int)} can make later calls much faster.
      *
      * @param text     text, typically with square-bracket markup
      * @param appendTo a Layout that stores one or more Line objects, carrying color, style, chars, and size
      * @return appendTo, for chaining
      */
     public Layout markup(String text, Layout appendTo) {
+        if (text != null && isPlain(text) && plainMarkup(text, appendTo))
+            return appendTo;
+        final MarkupCache cache = markupCache;
+        if (cache == null || text == null
+                || (appendTo.font == this && (appendTo.atLimit || appendTo.lines.size != 1
+                || appendTo.lines.peek().glyphs.size != 0)))
+            return parseMarkup(text, appendTo);
+        MarkupCache.Entry entry = cache.get(text, appendTo, this, getMarkupStamp());
+        if (entry == null) {
+            parseMarkup(text, appendTo);
+            cache.put(appendTo);
+            return appendTo;
+        }
+        if (appendTo.font != this) {
+            appendTo.clear();
+            appendTo.font(this);
+        }
+        entry.flat.unpack(appendTo);
+        appendTo.atLimit = entry.atLimit;
+        appendTo.invalidate();
+        return appendTo;
+    }
+
+    /**
+     * Returns true if {@code text} has nothing that {@link #markup(String, Layout)} would treat as markup, and no chars
+     * in the private use area that are scaled like icons, so {@link #plainMarkup(String, Layout)} can handle it.
+     * The first two checks use {@link String#indexOf(int)}, which the JVM can scan with vector instructions.
+     */
+    private boolean isPlain(String text) {
+        if (omitCurlyBraces && text.indexOf('{') >= 0) return false;
+        if (enableSquareBrackets && text.indexOf('[') >= 0) return false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            final char c = text.charAt(i);
+            if (c >= 0xE000 && c < 0xF800) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Does what {@link #parseMarkup(String, Layout)} would do for text without markup, which only needs the base color,
+     * kerning, and line breaks. If the text would need to be wrapped or would reach the Layout's max lines, this
+     * removes what it added and returns false, so the full markup can handle it; otherwise it returns true. Only call
+     * this if {@link #isPlain(String)} returned true for {@code text}.
+     */
+    private boolean plainMarkup(String text, Layout appendTo) {
+        if (appendTo.font == null || !appendTo.font.equals(this)) {
+            appendTo.clear();
+            appendTo.font(this);
+        }
+        if (appendTo.atLimit) return false;
+        appendTo.invalidate();
+        final int startLines = appendTo.lines.size;
+        final Line start = appendTo.peekLine();
+        final int startGlyphs = start.glyphs.size;
+        final float startWidth = start.width;
+        start.height = 0;
+        final float targetWidth = appendTo.getTargetWidth();
+        final long current = Long.reverseBytes(NumberUtils.floatToIntBits(appendTo.getBaseColor())) & 0xFFFFFFFE00000000L;
+        final float height = cellHeight;
+        final KerningTable kerningTable = kerning == null ? null : getKerningTable();
+        int kern = -1;
+        boolean initial = true;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            final char ch = text.charAt(i);
+            Line line = appendTo.peekLine();
+            float w;
+            if (kerningTable == null) {
+                w = (line.width += xAdvance(this, scaleX, current | ch));
+            } else {
+                kern = kern << 16 | ch;
+                w = (line.width += xAdvance(this, scaleX, current | ch) + kerningTable.get(kern, 0) * scaleX);
+            }
+            if (initial && !isMono) {
+                float ox = mapping.get(ch, defaultValue).offsetX;
+                if (ox != ox) ox = 0;
+                else ox *= scaleX;
+                if (ox < 0) w = (line.width -= ox);
+            }
+            initial = false;
+            if (ch == '\n') {
+                line.height = Math.max(line.height, height);
+                initial = true;
+            }
+            appendTo.add(current | ch);
+            if ((targetWidth > 0 && w > targetWidth) || appendTo.atLimit) {
+                while (appendTo.lines.size > startLines) {
+                    Line.POOL.free(appendTo.lines.pop());
+                }
+                start.glyphs.truncate(startGlyphs);
+                start.invalidate();
+                start.width = startWidth;
+                start.height = 0;
+                appendTo.atLimit = false;
+                return false;
+            }
+            line = appendTo.peekLine();
+            line.height = Math.max(line.height, height);
+        }
+        return true;
+    }
+
+    /**
+     * Gets a number that changes whenever this Font (or its family) changes in a way that affects what
+     * {@link #markup(String, Layout)} produces, so saved markup results can tell when they are out-of-date. This
+     * includes changes to which chars {@link CharClasses} treats as breaks or spaces, since those affect wrapping.
+     */
+    int getMarkupStamp() {
+        return (getMetricsVersion() + markupStateVersion) * 31 + CharClasses.version();
+    }
+
+    /**
+     * Does the work of {@link #markup(String, Layout)}, without checking the markup cache.
+     *
+     * @param text     text, typically with square-bracket markup
+     * @param appendTo a Layout that stores one or more Line objects, carrying color, style, chars, and size
+     * @return appendTo, for chaining
+     */
+    private Layout parseMarkup(String text, Layout appendTo) {
+        return parseMarkup(text, appendTo, null);
+    }
+
+    /**
+     * Does the work of {@link #markup(String, Layout)}, without checking the markup cache. If {@code state} is
+     * non-null and was saved by an earlier call, this starts from that state instead of the initial one, continuing
+     * the last line of appendTo; either way, the state this ends with is saved into {@code state}. This is used by
+     * {@link MarkupStream}.
+     *
+     * @param text     text, typically with square-bracket markup
+     * @param appendTo a Layout that stores one or more Line objects, carrying color, style, chars, and size
+     * @param state    may be null; if non-null, the markup state to start from and to save into
+     * @return appendTo, for chaining
+     */
+    Layout parseMarkup(String text, Layout appendTo, MarkupStream.State state) {
         boolean capitalize = false, previousWasLetter = false,
                 capsLock = false, lowerCase = false, initial = true;
         int c, scale = 3, fontIndex = -1;
@@ -5191,13 +5827,39 @@ public class Font implements Disposable {
         if (appendTo.font == null || !appendTo.font.equals(this)) {
             appendTo.clear();
             appendTo.font(this);
+            if (state != null) state.started = false;
+        }
+        if (state != null && state.started) {
+            // Continuing only changes the last Line and adds new ones, which start out unmeasured, so the earlier
+            // Lines keep their measurements.
+            appendTo.peekLine().invalidate();
+            appendTo.invalidateIndex();
+        } else {
+            appendTo.invalidate();
         }
-        appendTo.peekLine().height = 0;
         float targetWidth = appendTo.getTargetWidth();
         int kern = -1;
         historyBuffer.clear();
         labeledStates.clear();
-        labeledStates.putAll(storedStates);
+        if (state != null && state.started) {
+            capitalize = state.capitalize;
+            previousWasLetter = state.previousWasLetter;
+            capsLock = state.capsLock;
+            lowerCase = state.lowerCase;
+            initial = state.initial;
+            scale = state.scale;
+            fontIndex = state.fontIndex;
+            if (family != null && fontIndex > 0 && family.connected[fontIndex & 15] != null)
+                font = family.connected[fontIndex & 15];
+            color = state.color;
+            current = state.current;
+            kern = state.kern;
+            historyBuffer.addAll(state.history);
+            labeledStates.putAll(state.labeledStates);
+        } else {
+            appendTo.peekLine().height = 0;
+            labeledStates.putAll(storedStates);
+        }
 
         for (int i = 0, n = text.length(); i < n; i++) {
             scaleX = font.scaleX * (scale + 1) * 0.25f;
@@ -5376,21 +6038,21 @@ public class Font implements Disposable {
                                 if (text.charAt(i + 1) == '?' || text.charAt(i + 1) == '^') {
                                     long modes = (text.charAt(i + 1) == '^' ? SMALL_CAPS : ALTERNATE);
                                     if(len >= 5) {
-                                        char ch = Category.caseUp(text.charAt(i+2));
+                                        char ch = CharClasses.caseUp(text.charAt(i+2));
                                         if(ch == 'B') {
                                             modes |= BLACK_OUTLINE;
                                         } else if(ch == 'W') {
-                                            if(Category.caseUp(text.charAt(i+3)) == 'H') {
+                                            if(CharClasses.caseUp(text.charAt(i+3)) == 'H') {
                                                 modes |= WHITE_OUTLINE;
                                             }
                                             else {
                                                 modes |= WARN;
                                             }
                                         } else if(ch == 'S') {
-                                            if(Category.caseUp(text.charAt(i+4)) == 'I') {
+                                            if(CharClasses.caseUp(text.charAt(i+4)) == 'I') {
                                                 modes |= SHINY;
                                             }
-                                            else if(Category.caseUp(text.charAt(i+3)) == 'H'){
+                                            else if(CharClasses.caseUp(text.charAt(i+3)) == 'H'){
                                                 modes |= DROP_SHADOW;
                                             }
                                             // unrecognized falls back to small caps or jostle
@@ -5512,7 +6174,7 @@ public class Font implements Disposable {
                         initial = false;
                     } else {
                         kern = kern << 16 | c;
-                        w = (appendTo.peekLine().width += xAdvance(font, scaleX, current | c) + font.kerning.get(kern, 0) * scaleX * (1f + 0.5f * (-(current & SUPERSCRIPT) >> 63)));
+                        w = (appendTo.peekLine().width += xAdvance(font, scaleX, current | c) + font.getKerningTable().get(kern, 0) * scaleX * (1f + 0.5f * (-(current & SUPERSCRIPT) >> 63)));
                         if(initial && !isMono){
                             float ox = font.mapping.get(c, font.defaultValue).offsetX;
                             if(ox != ox) ox = 0;
@@ -5537,11 +6199,11 @@ public class Font implements Disposable {
                             for (int j = earlier.glyphs.size - 2; j >= 0; j--) {
                                 long curr;
                                 if ((curr = earlier.glyphs.get(j)) >>> 32 == 0L ||
-                                        Arrays.binarySearch(breakChars.items, 0, breakChars.size, (char) curr) >= 0) {
+                                        CharClasses.isBreak((char) curr)) {
                                     int leading = 0;
                                     boolean hyphenated = true;
                                     while (j > 0 && ((curr = earlier.glyphs.get(j)) >>> 32 == 0L ||
-                                            Arrays.binarySearch(spaceChars.items, 0, spaceChars.size, (char) curr) >= 0)) {
+                                            CharClasses.isSpace((char) curr))) {
                                         ++leading;
                                         --j;
                                         hyphenated = false;
@@ -5616,10 +6278,10 @@ public class Font implements Disposable {
                                             }
                                             k2 = k2 << 16 | (char) curr;
                                             float adv = xAdvance(font, scaleX, curr);
-                                            change += adv + font.kerning.get(k2, 0) * scaleX * (1f + 0.5f * (-(curr & SUPERSCRIPT) >> 63));
+                                            change += adv + font.getKerningTable().get(k2, 0) * scaleX * (1f + 0.5f * (-(curr & SUPERSCRIPT) >> 63));
                                             if (--leading < 0) {
                                                 k3 = k3 << 16 | (char) curr;
-                                                changeNext += adv + font.kerning.get(k3, 0) * scaleX * (1f + 0.5f * (-(curr & SUPERSCRIPT) >> 63));
+                                                changeNext += adv + font.getKerningTable().get(k3, 0) * scaleX * (1f + 0.5f * (-(curr & SUPERSCRIPT) >> 63));
                                                 glyphBuffer.add(curr);
                                                 if(glyphBuffer.size == 1){
                                                     if(!isMono) {
@@ -5636,19 +6298,19 @@ public class Font implements Disposable {
                                     }
                                     if (earlier.width - change > targetWidth)
                                         continue;
-                                    earlier.glyphs.truncate(j + 1);
+                                    earlier.invalidate().glyphs.truncate(j + 1);
                                     if(!hyphenated)
                                         earlier.glyphs.add(' ');
 //                                    earlier.glyphs.add('\n');
                                     later.width = changeNext;
                                     earlier.width -= change;
-                                    later.glyphs.addAll(glyphBuffer);
+                                    later.invalidate().glyphs.addAll(glyphBuffer);
                                     later.height = Math.max(later.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
                                     break;
                                 }
                             }
                             if(later.glyphs.isEmpty()){
-                                appendTo.lines.pop();
+                                Line.POOL.free(appendTo.lines.pop());
                             }
                         }
                     } else {
@@ -5662,7 +6324,7 @@ public class Font implements Disposable {
                 char ch = text.charAt(i), showCh;
                 if (StringUtils.isLowerCase(ch)) {
                     if ((capitalize && !previousWasLetter) || capsLock) {
-                        ch = Category.caseUp(ch);
+                        ch = CharClasses.caseUp(ch);
                     }
                     previousWasLetter = true;
                 } else if (StringUtils.isUpperCase(ch)) {
@@ -5673,7 +6335,7 @@ public class Font implements Disposable {
                 } else {
                     previousWasLetter = false;
                 }
-                showCh = (current & SMALL_CAPS) == SMALL_CAPS ? Category.caseUp(ch) : ch;
+                showCh = (current & SMALL_CAPS) == SMALL_CAPS ? CharClasses.caseUp(ch) : ch;
                 if(ch >= 0xE000 && ch < 0xF800){
                     scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance);
 //                    scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance*1.25f);
@@ -5683,7 +6345,7 @@ public class Font implements Disposable {
                     w = (appendTo.peekLine().width += xAdvance(font, scaleX, current | showCh));
                 } else {
                     kern = kern << 16 | showCh;
-                    w = (appendTo.peekLine().width += xAdvance(font, scaleX, current | showCh) + font.kerning.get(kern, 0) * scaleX * (1f + 0.5f * (-((current | showCh) & SUPERSCRIPT) >> 63)));
+                    w = (appendTo.peekLine().width += xAdvance(font, scaleX, current | showCh) + font.getKerningTable().get(kern, 0) * scaleX * (1f + 0.5f * (-((current | showCh) & SUPERSCRIPT) >> 63)));
                 }
                 if(initial && !isMono) {
                     float ox = font.mapping.get(showCh, font.defaultValue).offsetX;
@@ -5705,7 +6367,7 @@ public class Font implements Disposable {
                     if (appendTo.lines.size >= appendTo.maxLines) {
                         later = null;
                     } else {
-                        later = new Line();
+                        later = Line.POOL.obtain();
                         later.height = 0;
                         appendTo.lines.add(later);
                         initial = true;
@@ -5720,11 +6382,11 @@ public class Font implements Disposable {
                         for (int j = earlier.glyphs.size - 2; j >= 0; j--) {
                             long curr;
                             if ((curr = earlier.glyphs.get(j)) >>> 32 == 0L ||
-                                    Arrays.binarySearch(breakChars.items, 0, breakChars.size, (char) curr) >= 0) {
+                                    CharClasses.isBreak((char) curr)) {
                                 int leading = 0;
                                 boolean hyphenated = true;
                                 while (j > 0 && ((curr = earlier.glyphs.get(j)) >>> 32 == 0L ||
-                                        Arrays.binarySearch(spaceChars.items, 0, spaceChars.size, (char) curr) >= 0)) {
+                                        CharClasses.isSpace((char) curr))) {
                                     ++leading;
                                     --j;
                                     hyphenated = false;
@@ -5738,7 +6400,7 @@ public class Font implements Disposable {
                                     boolean curly = false;
                                     for (int k = j + 1; k < earlier.glyphs.size; k++) {
                                         curr = earlier.glyphs.get(k);
-                                        showCh = (curr & SMALL_CAPS) == SMALL_CAPS ? Category.caseUp((char)curr) : (char)curr;
+                                        showCh = (curr & SMALL_CAPS) == SMALL_CAPS ? CharClasses.caseUp((char)curr) : (char)curr;
                                         if(omitCurlyBraces) {
                                             if (curly) {
                                                 glyphBuffer.add(curr);
@@ -5782,7 +6444,7 @@ public class Font implements Disposable {
                                     boolean curly = false;
                                     for (int k = j + 1; k < earlier.glyphs.size; k++) {
                                         curr = earlier.glyphs.get(k);
-                                        showCh = (curr & SMALL_CAPS) == SMALL_CAPS ? Category.caseUp((char)curr) : (char)curr;
+                                        showCh = (curr & SMALL_CAPS) == SMALL_CAPS ? CharClasses.caseUp((char)curr) : (char)curr;
                                         if(omitCurlyBraces){
                                             if (curly) {
                                                 glyphBuffer.add(curr);
@@ -5801,10 +6463,10 @@ public class Font implements Disposable {
                                         }
                                         k2 = k2 << 16 | showCh;
                                         float adv = xAdvance(font, scaleX, curr);
-                                        change += adv + font.kerning.get(k2, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
+                                        change += adv + font.getKerningTable().get(k2, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
                                         if (--leading < 0) {
                                             kern = kern << 16 | showCh;
-                                            changeNext += adv + font.kerning.get(kern, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
+                                            changeNext += adv + font.getKerningTable().get(kern, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
                                             glyphBuffer.add(curr);
                                             if(glyphBuffer.size == 1){
                                                 if(!isMono) {
@@ -5820,19 +6482,19 @@ public class Font implements Disposable {
                                 }
                                 if (earlier.width - change > targetWidth)
                                     continue;
-                                earlier.glyphs.truncate(j + 1);
+                                earlier.invalidate().glyphs.truncate(j + 1);
                                 if(!hyphenated)
                                     earlier.glyphs.add(' ');
 //                                earlier.glyphs.add('\n');
                                 later.width = changeNext;
                                 earlier.width -= change;
-                                later.glyphs.addAll(glyphBuffer);
+                                later.invalidate().glyphs.addAll(glyphBuffer);
                                 later.height = Math.max(later.height, font.cellHeight * (scale + 1) * 0.25f);
                                 break;
                             }
                         }
                         if(later.glyphs.isEmpty()){
-                            appendTo.lines.pop();
+                            Line.POOL.free(appendTo.lines.pop());
                         }
                     }
                 } else {
@@ -5840,10 +6502,28 @@ public class Font implements Disposable {
                 }
             }
         }
+        if (state != null) {
+            state.started = true;
+            state.capitalize = capitalize;
+            state.previousWasLetter = previousWasLetter;
+            state.capsLock = capsLock;
+            state.lowerCase = lowerCase;
+            state.initial = initial;
+            state.scale = scale;
+            state.fontIndex = fontIndex;
+            state.color = color;
+            state.current = current;
+            state.kern = kern;
+            state.history.clear();
+            state.history.addAll(historyBuffer);
+            state.labeledStates.clear();
+            state.labeledStates.putAll(labeledStates);
+        }
         return appendTo;
     }
 
     protected boolean handleEllipsis(Layout appendTo) {
+        appendTo.invalidate();
         Font font = null;
         Line earlier = appendTo.peekLine();
         //// ELLIPSIS FOR VISIBLE
@@ -5854,9 +6534,9 @@ public class Font implements Disposable {
         for (int j = earlier.glyphs.size - 2; j >= 0; j--) {
             long curr;
             if ((curr = earlier.glyphs.get(j)) >>> 32 == 0L ||
-                    Arrays.binarySearch(breakChars.items, 0, breakChars.size, (char) curr) >= 0) {
+                    CharClasses.isBreak((char) curr)) {
                 while (j > 0 && ((curr = earlier.glyphs.get(j)) >>> 32 == 0L ||
-                        Arrays.binarySearch(spaceChars.items, 0, spaceChars.size, (char) curr) >= 0)) {
+                        CharClasses.isSpace((char) curr))) {
                     --j;
                 }
                 if (family != null) font = family.connected[(int) (curr >>> 16 & 15)];
@@ -5923,19 +6603,19 @@ public class Font implements Disposable {
                         }
                         k2 = k2 << 16 | (char) curr;
                         float adv = xAdvance(font, scaleX, curr);
-                        change += adv + font.kerning.get(k2, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
+                        change += adv + font.getKerningTable().get(k2, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
                     }
                     for (int e = 0; e < ellipsis.length(); e++) {
                         // 0xFFFFFFFF81FF0000L masks to include everything but style and char
                         curr = (curr & 0xFFFFFFFF81FF0000L) | ellipsis.charAt(e);
                         k2 = k2 << 16 | (char) curr;
                         float adv = xAdvance(font, scaleX, curr);
-                        change -= adv + font.kerning.get(k2, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
+                        change -= adv + font.getKerningTable().get(k2, 0) * scaleX * (isMono || (curr & SUPERSCRIPT) == 0L ? 1f : 0.5f);
                     }
                 }
                 if (earlier.width - change > appendTo.targetWidth)
                     continue;
-                earlier.glyphs.truncate(j + 1);
+                earlier.invalidate().glyphs.truncate(j + 1);
                 for (int e = 0; e < ellipsis.length(); e++) {
                     // 0xFFFFFFFF81FF0000L masks to include everything but style and char
                     earlier.glyphs.add((curr & 0xFFFFFFFF81FF0000L) | ellipsis.charAt(e));
@@ -6221,21 +6901,21 @@ public class Font implements Disposable {
                                 if (markup.charAt(i + 1) == '?' || markup.charAt(i + 1) == '^') {
                                     long modes = (markup.charAt(i + 1) == '^' ? SMALL_CAPS : ALTERNATE);
                                     if(len >= 5) {
-                                        char ch = Category.caseUp(markup.charAt(i+2));
+                                        char ch = CharClasses.caseUp(markup.charAt(i+2));
                                         if(ch == 'B') {
                                             modes |= BLACK_OUTLINE;
                                         } else if(ch == 'W') {
-                                            if(Category.caseUp(markup.charAt(i+3)) == 'H') {
+                                            if(CharClasses.caseUp(markup.charAt(i+3)) == 'H') {
                                                 modes |= WHITE_OUTLINE;
                                             }
                                             else {
                                                 modes |= WARN;
                                             }
                                         } else if(ch == 'S') {
-                                            if(Category.caseUp(markup.charAt(i+4)) == 'I') {
+                                            if(CharClasses.caseUp(markup.charAt(i+4)) == 'I') {
                                                 modes |= SHINY;
                                             }
-                                            else if(Category.caseUp(markup.charAt(i+3)) == 'H'){
+                                            else if(CharClasses.caseUp(markup.charAt(i+3)) == 'H'){
                                                 modes |= DROP_SHADOW;
                                             }
                                             // unrecognized falls back to small caps or jostle
@@ -6327,7 +7007,7 @@ public class Font implements Disposable {
                 char ch = markup.charAt(i);
                 if (StringUtils.isLowerCase(ch)) {
                     if ((capitalize) || capsLock) {
-                        ch = Category.caseUp(ch);
+                        ch = CharClasses.caseUp(ch);
                     }
                 } else if (StringUtils.isUpperCase(ch)) {
                     if (lowerCase) {
@@ -6520,21 +7200,21 @@ public class Font implements Disposable {
                                 if (markup.charAt(i + 1) == '?' || markup.charAt(i + 1) == '^') {
                                     long modes = (markup.charAt(i + 1) == '^' ? SMALL_CAPS : ALTERNATE);
                                     if(len >= 5) {
-                                        char ch = Category.caseUp(markup.charAt(i+2));
+                                        char ch = CharClasses.caseUp(markup.charAt(i+2));
                                         if(ch == 'B') {
                                             modes |= BLACK_OUTLINE;
                                         } else if(ch == 'W') {
-                                            if(Category.caseUp(markup.charAt(i+3)) == 'H') {
+                                            if(CharClasses.caseUp(markup.charAt(i+3)) == 'H') {
                                                 modes |= WHITE_OUTLINE;
                                             }
                                             else {
                                                 modes |= WARN;
                                             }
                                         } else if(ch == 'S') {
-                                            if(Category.caseUp(markup.charAt(i+4)) == 'I') {
+                                            if(CharClasses.caseUp(markup.charAt(i+4)) == 'I') {
                                                 modes |= SHINY;
                                             }
-                                            else if(Category.caseUp(markup.charAt(i+3)) == 'H'){
+                                            else if(CharClasses.caseUp(markup.charAt(i+3)) == 'H'){
                                                 modes |= DROP_SHADOW;
                                             }
                                             // unrecognized falls back to small caps or jostle
@@ -6606,6 +7286,21 @@ public class Font implements Disposable {
      * When the {@link Layout#getTargetWidth() targetWidth} of a Layout changes, you can use this to cause the text to
      * be placed according to the new width, and wrap if needed. This doesn't allocate as much as
      * {@link #markup(String, Layout)}, if at all, but may eat up newlines if called repeatedly.
+     * <br>
+     * This copies every glyph in {@code changing} into one contiguous {@link FlatLayout} that this Font reuses, finds
+     * where each line should start and end in that flat buffer, and then writes the lines back into the existing
+     * {@link Line} objects in changing, only creating new Lines if there are more lines than before.
+     * <br>
+     * Text is wrapped one paragraph at a time, where a paragraph ends with a hard newline or the end of the text. The
+     * Layout remembers where each of its paragraphs could be broken, along with how much each glyph adds to the width
+     * of a line, so when this is called again, a paragraph with the same glyphs as before (ignoring color) doesn't need
+     * to be measured again, even if paragraphs were inserted or removed before it. If the target width is the same, its
+     * previous breaks are reused; otherwise, each line is
+     * found with a binary search over running totals of those stored widths, checked against a sum done the same way
+     * {@link #markup(String, Layout)} does when a line ends within rounding error of the width, so both break lines in
+     * the same places. Only paragraphs that changed are measured glyph-by-glyph. If you change this Font in a way that affects glyph widths
+     * other than its {@link #scaleX} or {@link #cellHeight} (such as changing {@link #kerning}), call
+     * {@link Layout#invalidateWrapCache()} on any affected Layouts.
      * @param changing a Layout that will be modified in-place
      * @return {@code changing}, after modifications
      */
@@ -6616,215 +7311,170 @@ public class Font implements Disposable {
         if(!changing.font.equals(this)){
             changing.font = this;
         }
-        Font font = null;
-        float scaleX;
+        changing.invalidate();
         float targetWidth = changing.getTargetWidth();
-        int oldLength = changing.lines.size;
-        Line firstLine = changing.getLine(0);
-        for (int i = 1; i < oldLength; i++) {
-            firstLine.glyphs.addAll(changing.getLine(i).glyphs);
-        }
-        changing.lines.truncate(1);
+        final FlatLayout flat = flatBuffer.pack(changing).clearLines();
+        final long[] items = flat.glyphs;
+        final int size = flat.size;
+        if (changing.paragraphCache == null) changing.paragraphCache = new ParagraphCache();
+        final ParagraphCache cache = changing.paragraphCache;
+        cache.begin(this);
         boolean curly = false;
-        for (int ln = 0; ln < changing.lines(); ln++) {
-            Line line = changing.getLine(ln);
-            line.height = 0;
-            float drawn = 0f;
-            int cutoff, breakPoint = -2, spacingPoint = -2, spacingSpan = 0;
-            int scale;
-            LongArray glyphs = line.glyphs;
-            int kern = -1;
-            float amt;
-            for (int i = 0, n = glyphs.size; i < n; i++) {
-                long glyph = glyphs.get(i);
-                char ch = (char) glyph;
-                if(ch == '{' && !curly) curly = true;
-                if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = Category.caseUp(ch);
-                if (family != null) font = family.connected[(int) (glyph >>> 16 & 15)];
-                if (font == null) font = this;
-
-                if (font.kerning == null) {
-
-                    //// no kerning
-
-                    scale = (int) ((glyph & ALTERNATE) != 0L ? 3 : (glyph + 0x300000L >>> 20 & 15));
-                    line.height = Math.max(line.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
-                    if(ch >= 0xE000 && ch < 0xF800)
-                        scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance);
-//                        scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance*1.25f);
-                    else
-                        scaleX = font.scaleX * (scale + 1) * 0.25f;
-
-                    if (ch == '\n') {
-                        Line next;
-                        next = changing.pushLine();
-                        glyphs.pop();
-                        if (next == null) {
-                            if(handleEllipsis(changing)) {
-                                calculateSize(changing);
-                                return changing;
-                            }
-                            break;
-                        }
-                        next.height = Math.max(next.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
-
-                        long[] arr = next.glyphs.setSize(glyphs.size - i - 1);
-                        System.arraycopy(glyphs.items, i + 1, arr, 0, glyphs.size - i - 1);
-                        glyphs.truncate(i);
-//                        glyphs.add(' ');
-                        glyphs.add('\n');
-                        break;
-                    }
-                    GlyphRegion tr = font.mapping.get(ch);
-                    if (tr == null) continue;
-                    float changedW = xAdvance(font, scaleX, glyph);
-                    if(i == 0 && !isMono){
-                        float ox = tr.offsetX;
-                        if(ox != ox) ox = 0;
-                        else ox *= scaleX * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
-                        if(ox < 0) changedW -= ox;
-                    }
-                    // if inside curly braces, set width to 0.
-                    if(curly) {
-                        changedW = 0;
-                        if(ch == '}') curly = false;
-                    }
-
-
-                    if (breakPoint >= 0 && drawn + changedW > targetWidth) {
-                        cutoff = breakPoint - spacingSpan + 1;
-                        Line next;
-                        if (changing.lines() == ln + 1) {
-                            next = changing.pushLine();
-                            glyphs.pop();
-                        } else
-                            next = changing.getLine(ln + 1);
-                        if (next == null) {
-                            glyphs.truncate(cutoff);
-                            if(handleEllipsis(changing)) {
-                                calculateSize(changing);
-                                return changing;
-                            }
-                            break;
-                        }
-                        next.height = Math.max(next.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
-
-                        int nextSize = next.glyphs.size;
-                        long[] arr = next.glyphs.setSize(nextSize + glyphs.size - cutoff);
-                        System.arraycopy(arr, 0, arr, glyphs.size - cutoff, nextSize);
-                        System.arraycopy(glyphs.items, cutoff, arr, 0, glyphs.size - cutoff);
-                        glyphs.truncate(cutoff);
-                        break;
-                    }
-                    if (glyph >>> 32 == 0L) {
-                        breakPoint = i;
-                        if (spacingPoint + 1 < i) {
-                            spacingSpan = 0;
-                        } else spacingSpan++;
-                        spacingPoint = i;
-                    } else if (Arrays.binarySearch(breakChars.items, 0, breakChars.size, (char) glyph) >= 0) {
-//                        hasMultipleGaps = breakPoint >= 0;
-                        breakPoint = i;
-                        if (Arrays.binarySearch(spaceChars.items, 0, spaceChars.size, (char) glyph) >= 0) {
-                            if (spacingPoint + 1 < i) {
-                                spacingSpan = 0;
-                            } else spacingSpan=1;
-                            spacingPoint = i;
-                        }
-                    }
-                    drawn += changedW;
-                } else {
+        int start = 0;
+        while (true) {
+            int end = start;
+            while (end < size && (char) items[end] != '\n') end++;
+            final boolean hasNewline = end < size;
+            if (hasNewline) items[end++] = '\n';
+            final long hash = ParagraphCache.hash(items, start, end);
+            final int breakStart = cache.spareBreaks.size;
+            if (!cache.reuse(hash, end - start, curly, targetWidth)) {
+                ParagraphCache.BreakTable table = cache.table();
+                buildBreakTable(table, items, start, end, curly);
+                table.wrap(targetWidth, cache.spareBreaks);
+                cache.store(hash, end - start, curly, targetWidth, breakStart);
+            }
+            curly = cache.next();
+            int lineStart = start;
+            for (int b = breakStart, bn = cache.spareBreaks.size; b < bn; b++) {
+                int next = start + cache.spareBreaks.get(b);
+                if (flat.lineCount + 1 >= changing.maxLines) {
+                    cache.clear();
+                    flat.addLine(lineStart, size, 0f, 0f).unpack(changing);
+                    changing.peekLine().invalidate().glyphs.truncate(next - lineStart);
+                    return regenerateAtLimit(changing);
+                }
+                flat.addLine(lineStart, next, 0f, 0f);
+                lineStart = next;
+            }
+            if (!hasNewline) {
+                flat.addLine(lineStart, end, 0f, 0f);
+                break;
+            }
+            if (flat.lineCount + 1 >= changing.maxLines) {
+                cache.clear();
+                flat.addLine(lineStart, size, 0f, 0f).unpack(changing);
+                changing.peekLine().invalidate().glyphs.pop();
+                return regenerateAtLimit(changing);
+            }
+            flat.addLine(lineStart, end, 0f, 0f);
+            start = end;
+        }
+        cache.end();
+        flat.unpack(changing);
+        calculateSize(changing);
+        return changing;
+    }
 
-                    //// font has kerning
+    /**
+     * Measures one paragraph of glyphs, from {@code start} (inclusive) to {@code end} (exclusive) in {@code items},
+     * and fills {@code table} with every place it could be broken and the total advance up to each glyph. A paragraph
+     * may only contain a newline as its last glyph. This measures glyphs the same way the rest of this class does when
+     * wrapping, including kerning, the left offset of the first glyph in a line, and zero-width text in curly braces.
+     * @param table a BreakTable that will be cleared and filled
+     * @param items glyphs, as in {@link FlatLayout#glyphs}
+     * @param start the index of the first glyph in the paragraph
+     * @param end the index after the last glyph in the paragraph
+     * @param curly whether the paragraph starts inside curly braces
+     */
+    private void buildBreakTable(ParagraphCache.BreakTable table, long[] items, final int start, final int end,
+                                 boolean curly) {
+        final int n = end - start;
+        table.reset(n);
+        final float[] advances = table.advances, firstAdvances = table.firstAdvances, startAdjust = table.startAdjust;
+        final boolean[] skipped = table.skipped, kerned = table.kerned;
+        Font font = null;
+        float scaleX, amt;
+        int scale, kern = -1, spacingPoint = -2, spacingSpan = 0;
+        for (int i = 0; i < n; i++) {
+            long glyph = items[start + i];
+            char ch = (char) glyph;
+            if(ch == '{' && !curly) curly = true;
+            if((glyph & SMALL_CAPS) == SMALL_CAPS) ch = CharClasses.caseUp(ch);
+            if (family != null) font = family.connected[(int) (glyph >>> 16 & 15)];
+            if (font == null) font = this;
 
-                    scale = (int) ((glyph & ALTERNATE) != 0L ? 3 : (glyph + 0x300000L >>> 20 & 15));
-                    line.height = Math.max(line.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
-                    if(ch >= 0xE000 && ch < 0xF800)
-                        scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance);
-//                        scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance*1.25f);
-                    else
-                        scaleX = font.scaleX * (scale + 1) * 0.25f;
-                    kern = kern << 16 | ch;
-                    amt = font.kerning.get(kern, 0) * scaleX;
-                    if (ch == '\n') {
-                        Line next;
-                        next = changing.pushLine();
-                        glyphs.pop();
-                        if (next == null) {
-                            if(handleEllipsis(changing)) {
-                                calculateSize(changing);
-                                return changing;
-                            }
-                            break;
-                        }
-                        next.height = Math.max(next.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
-
-                        long[] arr = next.glyphs.setSize(glyphs.size - i - 1);
-                        System.arraycopy(glyphs.items, i + 1, arr, 0, glyphs.size - i - 1);
-                        glyphs.truncate(i);
-//                        glyphs.add(' ');
-                        glyphs.add('\n');
-                        break;
-                    }
-                    GlyphRegion tr = font.mapping.get(ch);
-                    if (tr == null) continue;
-                    float changedW = xAdvance(font, scaleX, glyph);
-                    if(i == 0 && !isMono){
-                        float ox = tr.offsetX;
-                        if(ox != ox) ox = 0;
-                        else ox *= scaleX * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
-                        if(ox < 0) changedW -= ox;
-                    }
-                    // if inside curly braces, set width to 0.
-                    if(curly) {
-                        changedW = 0;
-                        if(ch == '}') curly = false;
-                    }
-                    if (breakPoint >= 0 && drawn + changedW + amt > targetWidth) {
-                        cutoff = breakPoint - spacingSpan + 1;
-                        Line next;
-                        if (changing.lines() == ln + 1) {
-                            next = changing.pushLine();
-                            glyphs.pop();
-                        } else
-                            next = changing.getLine(ln + 1);
-                        if (next == null) {
-                            glyphs.truncate(cutoff);
-                            if(handleEllipsis(changing)) {
-                                calculateSize(changing);
-                                return changing;
-                            }
-                            break;
-                        }
-                        next.height = Math.max(next.height, (font.cellHeight /* - font.descent * font.scaleY */) * (scale + 1) * 0.25f);
-
-                        int nextSize = next.glyphs.size;
-                        long[] arr = next.glyphs.setSize(nextSize + glyphs.size - cutoff);
-                        System.arraycopy(arr, 0, arr, glyphs.size - cutoff, nextSize);
-                        System.arraycopy(glyphs.items, cutoff, arr, 0, glyphs.size - cutoff);
-                        glyphs.truncate(cutoff);
-                        break;
-                    }
-                    if (glyph >>> 32 == 0L) {
-                        breakPoint = i;
-                        if (spacingPoint + 1 < i) {
-                            spacingSpan = 0;
-                        } else spacingSpan++;
-                        spacingPoint = i;
-                    }
-                    else if (Arrays.binarySearch(breakChars.items, 0, breakChars.size, (char) glyph) >= 0) {
-                        breakPoint = i;
-                        if (Arrays.binarySearch(spaceChars.items, 0, spaceChars.size, (char) glyph) >= 0) {
-                            if (spacingPoint + 1 < i) {
-                                spacingSpan = 0;
-                            } else spacingSpan++;
-                            spacingPoint = i;
-                        }
-                    }
-                    drawn += changedW + amt;
+            scale = (int) ((glyph & ALTERNATE) != 0L ? 3 : (glyph + 0x300000L >>> 20 & 15));
+            if(ch >= 0xE000 && ch < 0xF800)
+                scaleX = (scale + 1) * 0.25f * font.cellHeight / (font.mapping.get(ch, font.defaultValue).xAdvance);
+            else
+                scaleX = font.scaleX * (scale + 1) * 0.25f;
+            startAdjust[i] = 0f;
+            advances[i] = firstAdvances[i] = 0f;
+            skipped[i] = true;
+            if (kerned[i] = font.kerning != null) {
+                kern = kern << 16 | ch;
+                amt = font.getKerningTable().get(kern, 0) * scaleX;
+            } else {
+                amt = 0f;
+            }
+            if (ch == '\n') {
+                table.checkEnd = i;
+                break;
+            }
+            final float advance, offsetX;
+            if (ch < font.denseLimit) {
+                // NaN marks a char with no glyph.
+                if ((advance = font.denseAdvances[ch]) != advance) continue;
+                offsetX = font.denseOffsetsX[ch];
+            } else {
+                GlyphRegion tr = font.mapping.get(ch);
+                if (tr == null) continue;
+                advance = tr.xAdvance;
+                offsetX = tr.offsetX;
+            }
+            skipped[i] = false;
+            // the same as xAdvance(font, scaleX, glyph), without looking up the glyph again.
+            float changedW = glyph >>> 32 == 0L ? 0f
+                    : advance * scaleX * (font.isMono || (glyph & SUPERSCRIPT) == 0L ? 1f : 0.5f);
+            if(!isMono){
+                float ox = offsetX;
+                if(ox != ox) ox = 0;
+                else ox *= scaleX * (1f + 0.5f * (-(glyph & SUPERSCRIPT) >> 63));
+                if(ox < 0) startAdjust[i] = -ox;
+            }
+            // if inside curly braces, set width to 0.
+            if(curly) {
+                changedW = 0;
+                startAdjust[i] = 0f;
+                if(ch == '}') curly = false;
+            }
+            advances[i] = changedW + amt;
+            // at the start of a line, there is no previous glyph to kern with.
+            firstAdvances[i] = kerned[i] ? changedW + font.getKerningTable().get(-1 << 16 | ch, 0) * scaleX
+                    : advances[i];
+
+            if (glyph >>> 32 == 0L) {
+                if (spacingPoint + 1 < i) {
+                    spacingSpan = 0;
+                } else spacingSpan++;
+                spacingPoint = i;
+                table.addOpportunity(i, spacingSpan, spacingPoint);
+            } else if (CharClasses.isBreak((char) glyph)) {
+                if (CharClasses.isSpace((char) glyph)) {
+                    if (spacingPoint + 1 < i) {
+                        spacingSpan = 0;
+                    } else if (kerned[i]) {
+                        spacingSpan++;
+                    } else spacingSpan = 1;
+                    spacingPoint = i;
                 }
+                table.addOpportunity(i, spacingSpan, spacingPoint);
             }
         }
+        table.curlyOut = curly;
+        table.finish();
+    }
+
+    /**
+     * Called by {@link #regenerateLayout(Layout)} when {@code changing} can't hold any more lines; this marks it as
+     * at its limit, tries to add an ellipsis, and updates the sizes of its lines.
+     * @param changing a Layout that has reached its {@link Layout#getMaxLines() max lines}
+     * @return changing, after modifications
+     */
+    private Layout regenerateAtLimit(Layout changing) {
+        changing.atLimit = true;
+        handleEllipsis(changing);
         calculateSize(changing);
         return changing;
     }
@@ -6839,6 +7489,7 @@ public class Font implements Disposable {
      */
     public void storeState(String name, String markup) {
         storedStates.put(name, markupGlyph('\u0000', markup));
+        markupStateVersion++;
     }
 
     /**
@@ -6851,6 +7502,7 @@ public class Font implements Disposable {
      */
     public void storeState(String name, long formatted) {
         storedStates.put(name, formatted & 0xFFFFFFFFFFFF0000L);
+        markupStateVersion++;
     }
 
     /**
@@ -6871,6 +7523,7 @@ public class Font implements Disposable {
      */
     public void removeStoredState(String name) {
         storedStates.remove(name, 0L);
+        markupStateVersion++;
     }
     /**
      * Important; must be called in {@link com.badlogic.gdx.ApplicationListener#resize(int, int)} on each
@@ -7142,13 +7795,151 @@ public class Font implements Disposable {
      * <br>
      * When a custom Font overrides this to handle a Batch with one extra attribute per-vertex, the custom Font should
      * have a 24-item float array and copy data from {@code vertices} to its own 24-item float array, then pass that
-     * larger array to {@link Batch#draw(Texture, float[], int, int)}.
+     * larger array to {@link Batch#draw(Texture, float[], int, int)}. Such a Font can't be used with
+     * {@link TextraLabel#setRetained(boolean) retained mode}, which records quads by calling this implementation;
+     * a TextraLabel that records nothing goes back to drawing every frame.
+     * <br>
+     * While one of this Font's draw methods is running, quads given to this are gathered and sent to the Batch together,
+     * one {@link Batch#draw(Texture, float[], int, int)} call per run of quads that share a Texture. They are sent when
+     * the Texture or Batch changes, when a shader is enabled, paused, or resumed, and when the draw method ends. An
+     * override that doesn't call this implementation draws each quad itself, as before.
      *
      * @param batch a Batch, which should be a SpriteBatch (or a compatible Batch) unless this was overridden
      * @param texture a Texture to draw (part of)
      * @param vertices a 20-item float array organized into 5-float sections per-vertex
      */
     protected void drawVertices(Batch batch, Texture texture, float[] vertices) {
-        batch.draw(texture, vertices, 0, 20);
+        if (recording != null) {
+            recording.add(texture, vertices);
+        } else if (grouping != null) {
+            grouping.add(texture, vertices);
+        } else if (bulkDepth > 0) {
+            if (texture != bulkTexture || batch != bulkBatch || bulkSize == bulkVertices.length) {
+                flushBulk();
+                bulkTexture = texture;
+                bulkBatch = batch;
+            }
+            System.arraycopy(vertices, 0, bulkVertices, bulkSize, 20);
+            bulkSize += 20;
+        } else {
+            batch.draw(texture, vertices, 0, 20);
+        }
+    }
+
+    /**
+     * Gets the packed float color that {@link #drawGlyph(Batch, long, float, float)} draws {@code glyph} with, which
+     * is the glyph's own color multiplied by {@code batchColor}.
+     */
+    static float glyphColor(Color batchColor, long glyph) {
+        return NumberUtils.intBitsToFloat(
+                  (int) (batchColor.a * (glyph >>> 33 & 127)) << 25
+                | (int)(batchColor.r * (glyph >>> 56))
+                | (int)(batchColor.g * (glyph >>> 48 & 0xFF)) << 8
+                | (int)(batchColor.b * (glyph >>> 40 & 0xFF)) << 16);
+    }
+
+    /**
+     * Gets the mode {@link #effectVertexShader} reads for a glyph: 1 for {@link #BLACK_OUTLINE}, 2 for
+     * {@link #WHITE_OUTLINE}, 3 for {@link #DROP_SHADOW}, or 4 for {@link #SHINY}, plus 4 if the glyph is bold. Any
+     * other glyph gets 0, and is drawn normally.
+     */
+    private static int shaderEffectMode(long glyph) {
+        final long mode = glyph & ALTERNATE_MODES_MASK;
+        final int kind = mode == BLACK_OUTLINE ? 1 : mode == WHITE_OUTLINE ? 2 : mode == DROP_SHADOW ? 3 : mode == SHINY ? 4 : 0;
+        return kind == 0 || (glyph & BOLD) == 0L ? kind : kind + 4;
+    }
+
+    /**
+     * Grows the glyph quad in {@link #vertices} by {@link #EFFECT_MARGIN} texels on each side, keeping its shape and
+     * rotation, and adds 4 times {@code mode} to each u coordinate so {@link #effectVertexShader} can read it.
+     */
+    private void growEffectQuad(Texture tex, float u, float v, float u2, float v2, int mode) {
+        final float du = (u2 >= u ? EFFECT_MARGIN : -EFFECT_MARGIN) / (float) tex.getWidth();
+        final float dv = (v2 >= v ? EFFECT_MARGIN : -EFFECT_MARGIN) / (float) tex.getHeight();
+        final float fu = du / (u2 - u), fv = dv / (v2 - v);
+        // one margin's worth of world distance along the glyph's bottom edge (ux, uy) and left edge (vx, vy)
+        final float ux = (vertices[10] - vertices[5]) * fu, uy = (vertices[11] - vertices[6]) * fu;
+        final float vx = (vertices[0] - vertices[5]) * fv, vy = (vertices[1] - vertices[6]) * fv;
+        vertices[0] += vx - ux;
+        vertices[1] += vy - uy;
+        vertices[5] -= ux + vx;
+        vertices[6] -= uy + vy;
+        vertices[10] += ux - vx;
+        vertices[11] += uy - vy;
+        vertices[15] += ux + vx;
+        vertices[16] += uy + vy;
+        vertices[3] = vertices[8] = u - du + mode * 4;
+        vertices[13] = vertices[18] = u2 + du + mode * 4;
+        vertices[4] = vertices[19] = v - dv;
+        vertices[9] = vertices[14] = v2 + dv;
+    }
+
+    /**
+     * Returned by {@link #shaderState(Font, Texture)} when drawing doesn't need to touch the shader, because the Font
+     * doesn't use a distance field.
+     */
+    static final int SHADER_LEAVE = 0;
+    /**
+     * Returned by {@link #shaderState(Font, Texture)} when the Font's distance field shader should be resumed.
+     */
+    static final int SHADER_RESUME = 1;
+    /**
+     * Returned by {@link #shaderState(Font, Texture)} when the Font's distance field shader should be paused, because
+     * the Texture isn't one of the Font's {@link #parents}, such as for emoji.
+     */
+    static final int SHADER_PAUSE = 2;
+
+    /**
+     * Gets what {@link #drawGlyph(Batch, long, float, float, float, float, float, int)} would do to the distance field
+     * shader before drawing a glyph from {@code font} that uses {@code texture}: {@link #SHADER_LEAVE},
+     * {@link #SHADER_RESUME}, or {@link #SHADER_PAUSE}. This is used when quads are drawn later, out of the order
+     * their glyphs were drawn in.
+     */
+    static int shaderState(Font font, Texture texture) {
+        if (font.distanceField == DistanceFieldType.STANDARD) return SHADER_LEAVE;
+        for (int p = 0; p < font.parents.size; p++) {
+            if (font.parents.get(p).getTexture() == texture) return SHADER_RESUME;
+        }
+        return SHADER_PAUSE;
+    }
+
+    /**
+     * Makes the next glyph drawn check again whether its Texture needs a distance field shader to be paused or resumed.
+     * {@link DrawGrouper} and {@link VertexCache} call this after they change the shader state themselves.
+     */
+    static void forgetLatestTexture() {
+        latestTexture = null;
+    }
+
+    /**
+     * Starts gathering quads given to {@link #drawVertices(Batch, Texture, float[])}, so each run of quads that share a
+     * Texture can be drawn with one call to {@link Batch#draw(Texture, float[], int, int)}. Calls can be nested; every
+     * call must be followed by a call to {@link #endBulk()}, even if drawing throws an Exception.
+     */
+    static void beginBulk() {
+        bulkDepth++;
+    }
+
+    /**
+     * Ends what the matching {@link #beginBulk()} started; when the outermost call ends, any gathered quads are drawn.
+     */
+    static void endBulk() {
+        if (--bulkDepth <= 0) {
+            bulkDepth = 0;
+            flushBulk();
+        }
+    }
+
+    /**
+     * Draws any quads gathered by {@link #drawVertices(Batch, Texture, float[])} right away. This must be called before
+     * anything else changes the state of the Batch those quads are meant for, such as its shader or its uniforms.
+     */
+    static void flushBulk() {
+        if (bulkSize > 0) {
+            bulkBatch.draw(bulkTexture, bulkVertices, 0, bulkSize);
+            bulkSize = 0;
+        }
+        bulkTexture = null;
+        bulkBatch = null;
     }
 }
\ No newline at end of file
@@ -38,7 +38,11 @@ enum InternalToken {
     EVENT("EVENT", TokenCategory.EVENT),
     RESET("RESET", TokenCategory.RESET),
     SKIP("SKIP", TokenCategory.SKIP),
-    UNDO("UNDO", TokenCategory.UNDO);
+    UNDO("UNDO", TokenCategory.UNDO),
+    /**
+     * Not typed by users; {@link Parser} places this just before the value of a variable to find where it ends up.
+     */
+    SPLICE("\u0002", TokenCategory.VARIABLE);
 
     final String name;
     final TokenCategory category;
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.IntFloatMap;
+
+import java.util.Arrays;
+
+/**
+ * A read-only copy of the kerning pairs in a {@link Font#kerning} map, arranged so that looking up a pair is fast,
+ * especially when the pair isn't present. It has a bitmap with one bit for each char that starts any kerning pair, so
+ * most lookups (where the first char has no pairs at all) only need to check one bit. For chars that do start a pair,
+ * the second chars of all their pairs are stored in a sorted slice of one big array, and are binary searched.
+ * <br>
+ * Font creates one of these as needed in {@link Font#getKerningTable()}, and you usually won't need to create one
+ * yourself. Keys are the same as in {@link Font#kerning}: the first char in the upper 16 bits of an int, and the
+ * second char in the lower 16 bits, as produced by {@link Font#kerningPair(char, char)}.
+ */
+public class KerningTable {
+    /**
+     * The map this was built from, and how many pairs it had then.
+     */
+    private final IntFloatMap source;
+    private final int sourceSize;
+    /**
+     * One bit for each char; set if that char is the first char of at least one pair.
+     */
+    private final long[] firsts = new long[1024];
+    /**
+     * How many bits are set in {@link #firsts} before each long in it.
+     */
+    private final int[] ranks = new int[1024];
+    /**
+     * For the nth char with a set bit in {@link #firsts}, its second chars and amounts are from {@code starts[n]}
+     * (inclusive) to {@code starts[n+1]} (exclusive) in {@link #seconds} and {@link #amounts}.
+     */
+    private final int[] starts;
+    private final char[] seconds;
+    private final float[] amounts;
+
+    /**
+     * Creates a KerningTable with all the pairs in {@code pairs}, as used by {@link Font#kerning}.
+     * Changing pairs later won't change this.
+     * @param pairs an IntFloatMap with kerning pairs as keys and amounts as values; may be null
+     */
+    public KerningTable(IntFloatMap pairs) {
+        source = pairs;
+        int n = pairs == null ? 0 : pairs.size;
+        sourceSize = n;
+        // sort keys as unsigned ints, so they are ordered by first char, then by second char.
+        long[] keys = new long[n];
+        if (n > 0) {
+            IntFloatMap.Keys ks = pairs.keys();
+            for (int i = 0; ks.hasNext && i < n; i++) {
+                keys[i] = ks.next() & 0xFFFFFFFFL;
+            }
+            Arrays.sort(keys);
+        }
+        seconds = new char[n];
+        amounts = new float[n];
+        int firstCount = 0;
+        for (int i = 0; i < n; i++) {
+            int key = (int) keys[i];
+            int first = key >>> 16;
+            if ((firsts[first >>> 6] & 1L << first) == 0L) {
+                firsts[first >>> 6] |= 1L << first;
+                firstCount++;
+            }
+            seconds[i] = (char) key;
+            amounts[i] = pairs.get(key, 0f);
+        }
+        for (int i = 1; i < 1024; i++) {
+            ranks[i] = ranks[i - 1] + Long.bitCount(firsts[i - 1]);
+        }
+        starts = new int[firstCount + 1];
+        for (int i = 0, f = -1, prev = -1; i < n; i++) {
+            int first = (int) keys[i] >>> 16;
+            if (first != prev) {
+                starts[++f] = i;
+                prev = first;
+            }
+        }
+        starts[firstCount] = n;
+    }
+
+    /**
+     * Gets the kerning amount for {@code pair}, or {@code defaultValue} if pair isn't present. This is a drop-in
+     * replacement for {@link IntFloatMap#get(int, float)} on {@link Font#kerning}.
+     * @param pair a kerning pair, with the first char in the upper 16 bits and the second char in the lower 16 bits
+     * @param defaultValue returned if pair isn't present; usually 0
+     * @return the kerning amount for pair, or defaultValue
+     */
+    public float get(int pair, float defaultValue) {
+        final int first = pair >>> 16;
+        final long word = firsts[first >>> 6], bit = 1L << first;
+        if ((word & bit) == 0L) return defaultValue;
+        final int rank = ranks[first >>> 6] + Long.bitCount(word & bit - 1L);
+        final char second = (char) pair;
+        int lo = starts[rank], hi = starts[rank + 1] - 1;
+        while (lo <= hi) {
+            final int mid = lo + hi >>> 1;
+            final char s = seconds[mid];
+            if (s < second) lo = mid + 1;
+            else if (s > second) hi = mid - 1;
+            else return amounts[mid];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Gets the kerning amount between {@code first} and {@code second}, or 0 if they aren't a kerning pair.
+     * @param first the char on the left
+     * @param second the char on the right
+     * @return the kerning amount, or 0
+     */
+    public float get(char first, char second) {
+        return get(first << 16 | second, 0f);
+    }
+
+    /**
+     * Returns true if {@code first} is the first char in at least one kerning pair.
+     * @param first any char
+     * @return true if any kerning pair starts with first
+     */
+    public boolean startsAnyPair(char first) {
+        return (firsts[first >>> 6] & 1L << first) != 0L;
+    }
+
+    /**
+     * Gets how many kerning pairs this holds.
+     * @return the number of kerning pairs
+     */
+    public int size() {
+        return seconds.length;
+    }
+
+    /**
+     * Returns true if this was built from {@code pairs} and pairs still has as many items as it did then. This can't
+     * notice changes to pairs that don't change its size.
+     * @param pairs an IntFloatMap, such as {@link Font#kerning}
+     * @return true if this is probably still up-to-date with pairs
+     */
+    public boolean isBuiltFrom(IntFloatMap pairs) {
+        return source == pairs && pairs != null && pairs.size == sourceSize;
+    }
+}
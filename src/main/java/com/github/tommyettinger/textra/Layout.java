@@ -21,14 +21,28 @@ import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.Pool;
 
 /**
  * A replacement for libGDX's GlyphLayout, more or less; stores one or more (possibly empty) {@link Line}s of text,
  * which can use color and style markup from {@link Font}, and can be drawn with
  * {@link Font#drawGlyphs(Batch, Layout, float, float, int)}. This is a Poolable class, and you can obtain a Layout with
- * {@code new Layout()} followed by setting the font, or just using a constructor.
+ * {@code Layout.POOL.obtain()} or {@code new Layout()} followed by setting the font, or just using a constructor. Any
+ * Lines a Layout creates come from {@link Line#POOL}, and any Lines it removes are freed back to that Pool, so a Layout
+ * that has its text set repeatedly to text of a similar size doesn't need to allocate.
  */
-public class Layout {
+public class Layout implements Pool.Poolable {
+
+    /**
+     * A shared Pool of Layouts, for code that needs temporary Layouts. Layouts are {@link #reset()} when freed to this,
+     * which also frees their Lines to {@link Line#POOL}. This is not thread-safe, like the rest of libGDX's Pools.
+     */
+    public static final Pool<Layout> POOL = new Pool<Layout>() {
+        @Override
+        protected Layout newObject() {
+            return new Layout();
+        }
+    };
 
     protected Font font;
     protected final Array<Line> lines = new Array<>(true, 8);
@@ -37,28 +51,92 @@ public class Layout {
     protected String ellipsis = null;
     protected float targetWidth = 0f;
     protected float baseColor = Color.WHITE_FLOAT_BITS;
+    /**
+     * Holds the global glyph index of the first glyph in each Line, followed by the total glyph count, so item
+     * {@code i} is where Line {@code i} starts and item {@code lines.size} is {@link #countGlyphs()}. This is only
+     * accurate when {@link #indexDirty} is false; it is rebuilt lazily by {@link #updateIndex()}.
+     */
+    protected int[] lineStarts = new int[9];
+    /**
+     * True when {@link #lineStarts} may be out-of-date and must be rebuilt before use. Any change to the Lines in this
+     * Layout that can alter how many glyphs are in a Line should set this, typically via {@link #invalidateIndex()}.
+     */
+    protected boolean indexDirty = true;
+    /**
+     * How many Lines this had when {@link #lineStarts} was last rebuilt.
+     */
+    protected int indexedLines;
+    /**
+     * Incremented whenever glyphs in this Layout change through its own methods, or when {@link #invalidate()} is
+     * called; see {@link #getModificationCount()}.
+     */
+    protected int modificationCount;
+    /**
+     * Remembers how {@link Font#regenerateLayout(Layout)} last broke each paragraph into lines; created the first time
+     * this is re-wrapped. See {@link #invalidateWrapCache()}.
+     */
+    ParagraphCache paragraphCache;
 
     public Layout() {
-        lines.add(new Line());
+        lines.add(Line.POOL.obtain());
     }
 
     public Layout(Font font) {
         this.font = font;
-        lines.add(new Line());
+        lines.add(Line.POOL.obtain());
     }
 
     public Layout(Layout other) {
+        set(other);
+    }
+
+    /**
+     * Makes this Layout a copy of {@code other}, with the same font, settings, and glyphs in each Line. This reuses
+     * the Lines already in this Layout where it can, obtaining more from {@link Line#POOL} only if other has more Lines,
+     * and freeing any extra Lines back to that Pool. This is useful for keeping a snapshot of a Layout that changes
+     * often, without allocating a new Layout each time.
+     *
+     * @param other another Layout to copy; will not be modified
+     * @return this Layout, for chaining
+     */
+    public Layout set(Layout other) {
+        if (other == this) return this;
         this.font = other.font;
         this.maxLines = other.maxLines;
         this.atLimit = other.atLimit;
         this.ellipsis = other.ellipsis;
         this.targetWidth = other.targetWidth;
         this.baseColor = other.baseColor;
-        for (int i = 0; i < other.lines(); i++) {
-            Line ln = new Line(), o = other.lines.get(i);
+        final int n = other.lines.size;
+        for (int i = 0; i < n; i++) {
+            Line ln, o = other.lines.get(i);
+            if (i < lines.size) {
+                ln = lines.get(i);
+                ln.glyphs.clear();
+            } else {
+                lines.add(ln = Line.POOL.obtain());
+            }
             ln.glyphs.addAll(o.glyphs);
-            lines.add(ln.size(o.width, o.height));
+            ln.size(o.width, o.height).invalidate();
+        }
+        truncateLines(n);
+        indexDirty = true;
+        modificationCount++;
+        return this;
+    }
+
+    /**
+     * Removes Lines from the end of this Layout until it has at most {@code size} Lines, freeing each removed Line to
+     * {@link Line#POOL}. This does not change {@link #atLimit}.
+     *
+     * @param size how many Lines this should keep, at most
+     */
+    protected void truncateLines(int size) {
+        while (lines.size > size) {
+            Line.POOL.free(lines.pop());
         }
+        indexDirty = true;
+        modificationCount++;
     }
     /**
      * One of the ways to set the font on a Layout; this one returns this Layout for chaining.
@@ -69,8 +147,11 @@ public class Layout {
     public Layout font(Font font) {
         if (this.font == null || !this.font.equals(font)) {
             this.font = font;
+            Line.POOL.freeAll(lines);
             lines.clear();
-            lines.add(new Line());
+            lines.add(Line.POOL.obtain());
+            indexDirty = true;
+            modificationCount++;
         }
         return this;
     }
@@ -96,10 +177,12 @@ public class Layout {
      */
     public Layout add(long glyph) {
         if (!atLimit) {
+            indexDirty = true;
+            modificationCount++;
             if ((glyph & 0xFFFFL) == 10L) {
                 pushLine();
             } else {
-                lines.peek().glyphs.add(glyph);
+                lines.peek().invalidate().glyphs.add(glyph);
             }
         }
 
@@ -107,9 +190,12 @@ public class Layout {
     }
 
     public Layout clear() {
+        Line.POOL.freeAll(lines);
         lines.clear();
-        lines.add(new Line());
+        lines.add(Line.POOL.obtain());
         atLimit = false;
+        indexDirty = true;
+        modificationCount++;
         return this;
     }
 
@@ -154,10 +240,12 @@ public class Layout {
             return null;
         }
 
-        Line line = new Line(), prev = lines.peek();
-        prev.glyphs.add('\n');
+        Line line = Line.POOL.obtain(), prev = lines.peek();
+        prev.invalidate().glyphs.add('\n');
         line.height = 0;
         lines.add(line);
+        indexDirty = true;
+        modificationCount++;
         return line;
     }
 
@@ -167,10 +255,12 @@ public class Layout {
             return null;
         }
         if (index < 0 || index >= maxLines) return null;
-        Line line = new Line(), prev = lines.get(index);
-        prev.glyphs.add('\n');
+        Line line = Line.POOL.obtain(), prev = lines.get(index);
+        prev.invalidate().glyphs.add('\n');
         line.height = 0;
         lines.insert(index + 1, line);
+        indexDirty = true;
+        modificationCount++;
         return line;
     }
 
@@ -272,11 +362,180 @@ public class Layout {
         }
         return layoutSize;
     }
+
+    /**
+     * Marks the index of line start positions as out-of-date, so it will be rebuilt the next time a method like
+     * {@link #getGlyph(int)} or {@link #lineIndexOf(int)} needs it. Methods on Layout and {@link Font} that change how
+     * many glyphs a Line holds already call this; you only need to call it yourself if you add, remove, or insert glyphs
+     * directly in a {@link Line#glyphs} array, or add or remove Lines without going through Layout.
+     */
+    public void invalidateIndex() {
+        indexDirty = true;
+    }
+
+    /**
+     * Marks everything that this Layout or {@link Font} remembers about the glyphs in this Layout as out-of-date: the
+     * index used by {@link #getGlyph(int)} and similar methods, and the measured size of every Line (see
+     * {@link Line#invalidate()}). Call this after changing the glyphs in any Line directly, instead of through
+     * methods on this Layout.
+     */
+    public void invalidate() {
+        indexDirty = true;
+        modificationCount++;
+        for (int i = 0, n = lines.size; i < n; i++) {
+            lines.get(i).invalidate();
+        }
+    }
+
+    /**
+     * Gets a number that changes whenever the glyphs in this Layout are changed by a method here (including
+     * {@link #setGlyph(int, long)}), by {@link Font} marking up or wrapping this, or when {@link #invalidate()} is
+     * called. Something that draws this Layout differently from frame to frame can compare it to tell if it must
+     * refresh anything it built from the glyphs. Changes made directly to a {@link Line#glyphs} aren't counted unless
+     * {@link #invalidate()} is called afterward.
+     *
+     * @return a number that changes when this Layout's glyphs change
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Discards any line breaks that {@link Font#regenerateLayout(Layout)} remembered for this Layout, so the next call
+     * to it measures every paragraph again. Changes to the glyphs in this Layout, to its target width, to the Font it
+     * uses, or to that Font's {@link Font#scaleX} or {@link Font#cellHeight} are detected automatically; you only need
+     * to call this if something else that affects glyph widths changed, such as {@link Font#kerning}.
+     */
+    public void invalidateWrapCache() {
+        if (paragraphCache != null) paragraphCache.clear();
+    }
+
+    /**
+     * Rebuilds {@link #lineStarts} if it is out-of-date; otherwise does nothing. This takes time proportional to
+     * {@link #lines()} when it does need to rebuild, and is called automatically by the index-based methods here.
+     */
+    protected void updateIndex() {
+        if (!indexDirty) return;
+        final int n = lines.size;
+        if (lineStarts.length <= n)
+            lineStarts = new int[n + (n >>> 1) + 1];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            lineStarts[i] = total;
+            total += lines.get(i).glyphs.size;
+        }
+        lineStarts[n] = total;
+        indexedLines = n;
+        indexDirty = false;
+    }
+
+    /**
+     * Finds which Line contains the glyph at the given global index, where global indices count every glyph in every
+     * Line from the start of this Layout. This uses a binary search over the start positions of each Line, so it takes
+     * time proportional to the log of {@link #lines()}, plus a rebuild of the index if it is out-of-date.
+     * <br>
+     * If the number of Lines changed, the Line found no longer holds as many glyphs as the index says, or index seems
+     * to be past the end, the index is rebuilt automatically. A change to how many glyphs some other Line holds can't be noticed this cheaply, so call
+     * {@link #invalidateIndex()} after adding or removing glyphs directly in any {@link Line#glyphs}; this applies to
+     * every method here that takes a global index.
+     * @param index the global index of a glyph, as used by {@link TypingLabel#getInWorkingLayout(int)}
+     * @return the index of the Line holding that glyph, or -1 if index is out of bounds
+     */
+    public int lineIndexOf(int index) {
+        updateIndex();
+        int ln = searchIndex(index);
+        if (indexedLines != lines.size || (ln < 0 ? index >= 0
+                : lineStarts[ln + 1] - lineStarts[ln] != lines.get(ln).glyphs.size)) {
+            indexDirty = true;
+            updateIndex();
+            ln = searchIndex(index);
+        }
+        return ln;
+    }
+
+    private int searchIndex(int index) {
+        final int n = indexedLines;
+        if (index < 0 || index >= lineStarts[n]) return -1;
+        int lo = 0, hi = n - 1;
+        while (lo < hi) {
+            int mid = lo + hi + 1 >>> 1;
+            if (lineStarts[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        // empty Lines share their start with the Line after them, so this finds the last Line starting at or before
+        // index, which is the only one that can actually contain it.
+        return lo;
+    }
+
+    /**
+     * Gets the global index of the first glyph in the Line at the given line index. If {@code lineIndex} is equal to
+     * {@link #lines()}, this returns the total glyph count. Call {@link #invalidateIndex()} first if glyphs were added
+     * to or removed from any {@link Line#glyphs} directly.
+     * @param lineIndex the index of a Line, from 0 to {@link #lines()}, inclusive
+     * @return the global index of the first glyph in that Line, or -1 if lineIndex is out of bounds
+     */
+    public int lineStart(int lineIndex) {
+        updateIndex();
+        if (lineIndex < 0 || lineIndex > lines.size) return -1;
+        return lineStarts[lineIndex];
+    }
+
+    /**
+     * Gets the glyph at the given global index, where global indices count every glyph in every Line from the start of
+     * this Layout. This is typically much faster than walking every Line, especially for Layouts with many Lines.
+     * See {@link #lineIndexOf(int)} for when {@link #invalidateIndex()} needs to be called first.
+     * @param index the global index of a glyph
+     * @return the glyph at that index, or {@code 0xFFFFFFL} if index is out of bounds
+     */
+    public long getGlyph(int index) {
+        int ln = lineIndexOf(index);
+        if (ln < 0) return 0xFFFFFFL;
+        return lines.get(ln).glyphs.get(index - lineStarts[ln]);
+    }
+
+    /**
+     * Sets the glyph at the given global index, where global indices count every glyph in every Line from the start of
+     * this Layout. This does not change how many glyphs are in any Line, so the index stays valid afterwards.
+     * See {@link #lineIndexOf(int)} for when {@link #invalidateIndex()} needs to be called first.
+     * @param index the global index of a glyph
+     * @param glyph the new glyph to place at that index
+     * @return true if index was in bounds and the glyph was set, or false otherwise
+     */
+    public boolean setGlyph(int index, long glyph) {
+        int ln = lineIndexOf(index);
+        if (ln < 0) return false;
+        Line line = lines.get(ln);
+        long old = line.glyphs.get(index - lineStarts[ln]);
+        line.glyphs.set(index - lineStarts[ln], glyph);
+        if (old != glyph) modificationCount++;
+        // only the char, style, and scale bits (and whether the color is fully transparent) can change a Line's size.
+        if (((old ^ glyph) & 0xFFFFFFFFL) != 0L || (old >>> 32 == 0L) != (glyph >>> 32 == 0L))
+            line.invalidate();
+        return true;
+    }
+
+    /**
+     * Gets the Line containing the glyph at the given global index, or null if index is out of bounds.
+     * See {@link #lineIndexOf(int)} for when {@link #invalidateIndex()} needs to be called first.
+     * @param index the global index of a glyph
+     * @return the Line containing that glyph, or null if index is out of bounds
+     */
+    public Line getLineOfGlyph(int index) {
+        int ln = lineIndexOf(index);
+        if (ln < 0) return null;
+        return lines.get(ln);
+    }
     /**
      * Resets the object for reuse. The font is nulled, but the lines are freed, cleared, and then one blank line is
      * re-added to lines so it can be used normally later.
      */
+    @Override
     public void reset() {
+        Line.POOL.freeAll(lines);
+        lines.clear();
+        lines.add(Line.POOL.obtain());
+        indexDirty = true;
+        modificationCount++;
         targetWidth = 0f;
         baseColor = Color.WHITE_FLOAT_BITS;
         maxLines = Integer.MAX_VALUE;
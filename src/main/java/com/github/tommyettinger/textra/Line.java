@@ -17,18 +17,45 @@
 package com.github.tommyettinger.textra;
 
 import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.Pool;
 
 /**
  * One line of possibly-colorful, possibly-styled text, with a width and height set by
  * {@link Font#markup(String, Layout)} on Lines in a {@link Layout}. This stores each (colorful, styled) char as a
  * {@code long} in a libGDX {@link LongArray}. This is a Poolable class, and you can obtain a
- * Line with {@code new Line()}, or just using a constructor.
+ * Line with {@code Line.POOL.obtain()}, {@code new Line()}, or just using a constructor. Layout and Font obtain every
+ * Line they create from {@link #POOL} and free Lines back to it when a Layout removes them, so their glyph arrays can be
+ * reused instead of reallocated.
  */
-public class Line {
+public class Line implements Pool.Poolable {
+
+    /**
+     * The shared Pool of Lines used by {@link Layout} and {@link Font}. Lines are {@link #reset()} when freed to this,
+     * so a Line obtained from here is always empty, but its {@link #glyphs} may already have capacity from earlier use.
+     * This is not thread-safe, like the rest of libGDX's Pools; only use it from the rendering thread.
+     */
+    public static final Pool<Line> POOL = new Pool<Line>(16, 4096) {
+        @Override
+        protected Line newObject() {
+            return new Line();
+        }
+    };
 
     public final LongArray glyphs;
     public float width, height;
 
+    /**
+     * Counts calls to {@link #invalidate()}, so a measurement can tell if this Line changed after it was taken.
+     */
+    transient int modificationCount;
+    /**
+     * What this Line was last measured with, so {@link Font} can skip measuring it again if nothing changed. The kind
+     * is -1 if there is no usable measurement; see {@link #invalidate()}.
+     */
+    transient Font measuredFont;
+    transient int measuredKind = -1, measuredVersion, measuredSize, measuredModification;
+    transient float measuredHeightIn, measuredHeightOut, measuredWidth, measuredHeight;
+
     public Line() {
         glyphs = new LongArray(16);
     }
@@ -43,13 +70,56 @@ public class Line {
         return this;
     }
 
+    /**
+     * Discards any measurement of this Line that {@link Font} has remembered, so the next call to
+     * {@link Font#calculateSize(Line)}, {@link Font#measureWidth(Line)}, or {@link Font#calculateSize(Layout)} will
+     * measure it again. Layout and Font call this when they change a Line. If you change {@link #glyphs} directly,
+     * call this or {@link Layout#invalidate()} afterward; only a change to how many glyphs there are is noticed without
+     * it.
+     *
+     * @return this Line, for chaining
+     */
+    public Line invalidate() {
+        modificationCount++;
+        measuredKind = -1;
+        return this;
+    }
+
+    /**
+     * Returns true if this Line was last measured by {@code font} in the given way, and nothing that affects its size
+     * has changed since then; this only compares counters and sizes, so it doesn't look at each glyph.
+     */
+    boolean isMeasured(Font font, int kind, int version, float heightIn) {
+        return measuredKind == kind && measuredModification == modificationCount && measuredFont == font
+                && measuredVersion == version && measuredSize == glyphs.size && measuredHeightIn == heightIn;
+    }
+
+    /**
+     * Remembers a measurement of this Line; {@link #width} and {@link #height} should already be set, unless
+     * {@code width} is given separately because it wasn't stored in this Line.
+     */
+    void measured(Font font, int kind, int version, float heightIn, float heightOut, float width) {
+        measuredFont = font;
+        measuredKind = kind;
+        measuredVersion = version;
+        measuredSize = glyphs.size;
+        measuredModification = modificationCount;
+        measuredHeightIn = heightIn;
+        measuredHeightOut = heightOut;
+        measuredWidth = width;
+        measuredHeight = height;
+    }
+
     /**
      * Resets the object for reuse. This clears {@link #glyphs}, rather than nulling it. The sizes are set to 0.
      */
+    @Override
     public void reset() {
         glyphs.clear();
         width = 0;
         height = 0;
+        measuredFont = null;
+        measuredKind = -1;
     }
 
     public StringBuilder appendTo(StringBuilder sb) {
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of what {@link Font#markup(String, Layout)} produced for a markup String, so marking up
+ * the same String again into an empty Layout only needs to copy glyphs. Each result is keyed by the markup String,
+ * the settings of the Layout that affect markup (target width, base color, max lines, and ellipsis), and a stamp of
+ * the Font state that affects markup. When the Font changes, old entries simply stop matching and are eventually
+ * evicted. This is internal to Font; see {@link Font#useMarkupCache(int)}.
+ */
+class MarkupCache {
+    /**
+     * Identifies one call to markup. Lookups reuse one mutable Key; only misses allocate a new one to store.
+     */
+    static final class Key {
+        String text;
+        int targetWidthBits, baseColorBits, maxLines, stamp;
+        String ellipsis;
+        ColorLookup colorLookup;
+        Object nameLookup;
+        boolean squareBrackets;
+        int hash;
+
+        Key set(String text, Layout layout, Font font, int stamp) {
+            this.text = text;
+            targetWidthBits = Float.floatToIntBits(layout.targetWidth);
+            baseColorBits = Float.floatToIntBits(layout.baseColor);
+            maxLines = layout.maxLines;
+            ellipsis = layout.ellipsis;
+            this.stamp = stamp;
+            colorLookup = font.colorLookup;
+            nameLookup = font.nameLookup;
+            squareBrackets = font.enableSquareBrackets;
+            return rehash();
+        }
+
+        /**
+         * Recalculates {@link #hash} after fields were assigned directly.
+         */
+        Key rehash() {
+            int h = text.hashCode();
+            h = h * 31 + targetWidthBits;
+            h = h * 31 + baseColorBits;
+            h = h * 31 + maxLines;
+            h = h * 31 + stamp;
+            hash = h;
+            return this;
+        }
+
+        Key copy() {
+            Key k = new Key();
+            k.text = text;
+            k.targetWidthBits = targetWidthBits;
+            k.baseColorBits = baseColorBits;
+            k.maxLines = maxLines;
+            k.ellipsis = ellipsis;
+            k.stamp = stamp;
+            k.colorLookup = colorLookup;
+            k.nameLookup = nameLookup;
+            k.squareBrackets = squareBrackets;
+            k.hash = hash;
+            return k;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && targetWidthBits == k.targetWidthBits && baseColorBits == k.baseColorBits
+                    && maxLines == k.maxLines && stamp == k.stamp && squareBrackets == k.squareBrackets
+                    && colorLookup == k.colorLookup && nameLookup == k.nameLookup
+                    && (ellipsis == null ? k.ellipsis == null : ellipsis.equals(k.ellipsis)) && text.equals(k.text);
+        }
+    }
+
+    /**
+     * The glyphs and line sizes markup produced, and whether the Layout reached its max lines.
+     */
+    static final class Entry {
+        final FlatLayout flat;
+        final boolean atLimit;
+
+        Entry(Layout layout) {
+            this(new FlatLayout(layout), layout.atLimit);
+        }
+
+        Entry(FlatLayout flat, boolean atLimit) {
+            this.flat = flat;
+            this.atLimit = atLimit;
+        }
+    }
+
+    final int capacity;
+    final Key probe = new Key();
+    final LinkedHashMap<Key, Entry> entries;
+    int hits, misses;
+
+    MarkupCache(final int capacity) {
+        this.capacity = capacity;
+        entries = new LinkedHashMap<Key, Entry>(Math.min(capacity, 64) * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > MarkupCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached result of marking up {@code text} into {@code layout} with {@code font}, or null if there isn't
+     * one. This counts as a hit or a miss.
+     */
+    Entry get(String text, Layout layout, Font font, int stamp) {
+        Entry e = entries.get(probe.set(text, layout, font, stamp));
+        if (e == null) {
+            misses++;
+        } else {
+            hits++;
+            probe.text = null;
+            probe.ellipsis = null;
+        }
+        return e;
+    }
+
+    /**
+     * Stores a copy of {@code layout}, which was just marked up, under the key last used by
+     * {@link #get(String, Layout, Font, int)}.
+     */
+    void put(Layout layout) {
+        entries.put(probe.copy(), new Entry(layout));
+        probe.text = null;
+        probe.ellipsis = null;
+    }
+
+    void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
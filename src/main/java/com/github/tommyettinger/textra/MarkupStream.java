@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.ObjectLongMap;
+
+/**
+ * Marks up text that arrives a piece at a time, such as a chat log, console output, or streamed narration, appending
+ * each piece to the same {@link Layout} without marking up anything that came before it. The markup state at the end
+ * of each piece (color, style, scale, case mode, font, the history that {@code []} undoes, and any states stored with
+ * {@code [(label)]}) carries over to the next piece, so the result is the same as marking up all the text at once
+ * with {@link Font#markup(String, Layout)}. Only the last line of the Layout is ever wrapped again.
+ * <br>
+ * A tag can be split between pieces; if a piece ends partway through square-bracket markup or a curly-brace token,
+ * that part is held back until a later piece closes it, or until {@link #flush()} is called. Any other change to the
+ * Layout (such as {@link Layout#clear()}) should be followed by {@link #reset()}.
+ * <br>
+ * Draw the Layout from {@link #getLayout()} as usual, with
+ * {@link Font#drawGlyphs(com.badlogic.gdx.graphics.g2d.Batch, Layout, float, float)}.
+ */
+public class MarkupStream {
+    /**
+     * The markup state {@link Font#parseMarkup(String, Layout, State)} ends with, so it can start from there next time.
+     * Internal use only.
+     */
+    static final class State {
+        boolean started;
+        boolean capitalize, previousWasLetter, capsLock, lowerCase, initial;
+        int scale, fontIndex, kern;
+        long color, current;
+        final LongArray history = new LongArray(16);
+        final ObjectLongMap<String> labeledStates = new ObjectLongMap<>(16);
+    }
+
+    protected final Font font;
+    protected final Layout layout;
+    private final State state = new State();
+    private final StringBuilder pending = new StringBuilder(64);
+
+    /**
+     * Creates a MarkupStream that appends to a new Layout using {@code font}.
+     *
+     * @param font the Font to mark up text with
+     */
+    public MarkupStream(Font font) {
+        this(font, new Layout(font));
+    }
+
+    /**
+     * Creates a MarkupStream that appends to {@code layout} using {@code font}. If layout already has glyphs, the
+     * first piece appended starts with the initial markup state, but continues the last line of layout.
+     *
+     * @param font   the Font to mark up text with
+     * @param layout the Layout to append to; its target width, max lines, and ellipsis are respected
+     */
+    public MarkupStream(Font font, Layout layout) {
+        this.font = font;
+        this.layout = layout;
+    }
+
+    /**
+     * Marks up {@code chunk} and appends it to the Layout, continuing from the markup state the previous chunk ended
+     * with. If chunk ends partway through a tag, that tag is held back until a later chunk completes it.
+     *
+     * @param chunk the next piece of text, typically with square-bracket markup
+     * @return this, for chaining
+     */
+    public MarkupStream append(CharSequence chunk) {
+        if (chunk == null || chunk.length() == 0) return this;
+        pending.append(chunk);
+        final int complete = completeLength(pending);
+        if (complete > 0) {
+            parse(pending.substring(0, complete));
+            pending.delete(0, complete);
+        }
+        return this;
+    }
+
+    /**
+     * Marks up any text held back because it ended partway through a tag, as if the text ended there. Call this when
+     * no more text is coming, or when a partial tag should be shown as-is.
+     *
+     * @return this, for chaining
+     */
+    public MarkupStream flush() {
+        if (pending.length() > 0) {
+            parse(pending.toString());
+            pending.setLength(0);
+        }
+        return this;
+    }
+
+    /**
+     * Clears the Layout and any held-back text, and goes back to the initial markup state.
+     *
+     * @return this, for chaining
+     */
+    public MarkupStream reset() {
+        layout.clear();
+        pending.setLength(0);
+        state.started = false;
+        return this;
+    }
+
+    /**
+     * @return the Layout this appends to
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return the Font this marks up text with
+     */
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * @return how many chars were held back at the end of the last chunk, waiting for a tag to be closed
+     */
+    public int getPendingLength() {
+        return pending.length();
+    }
+
+    private void parse(String text) {
+        if (layout.atLimit) return;
+        font.parseMarkup(text, layout, state);
+    }
+
+    /**
+     * Finds how much of {@code text} can be marked up now; anything after that is an unfinished tag. This skips over
+     * tags the same way {@link Font#markup(String, Layout)} reads them.
+     */
+    private int completeLength(CharSequence text) {
+        final int n = text.length();
+        for (int i = 0; i < n; i++) {
+            final char c = text.charAt(i);
+            if (font.omitCurlyBraces && c == '{') {
+                if (i + 1 == n) return i;
+                if (text.charAt(i + 1) == '{') continue;
+                final int end = indexOf(text, '}', i + 1);
+                if (end < 0) return i;
+                i = end;
+            } else if (font.enableSquareBrackets && c == '[') {
+                if (i + 1 == n) return i;
+                if (text.charAt(i + 1) == '[') {
+                    i++;
+                    continue;
+                }
+                final int end = indexOf(text, ']', i + 1);
+                if (end < 0) return i;
+                i = end;
+            }
+        }
+        return n;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from, n = text.length(); i < n; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.github.tommyettinger.textra.utils.CharClasses;
+
+import java.util.Arrays;
+
+/**
+ * Remembers how {@link Font#regenerateLayout(Layout)} broke each paragraph of a {@link Layout} into lines, so a later
+ * call can skip paragraphs that haven't changed. A paragraph is a run of glyphs ending in a hard newline (or the end of
+ * the text). Each paragraph is identified by a hash of the parts of its glyphs that can affect wrapping, its length,
+ * and whether it starts inside curly braces, not by its position, so inserting or removing a paragraph anywhere in the
+ * Layout doesn't make the paragraphs after it miss. Its line breaks are stored as offsets from the start of the
+ * paragraph, along with the target width they were found for. Each paragraph also gets a {@link BreakTable}, which holds
+ * every place the paragraph could be broken and the advance of each glyph, so wrapping an unchanged paragraph to a
+ * different width only needs to search running totals of stored advances, without measuring any glyphs again. This is internal to Layout
+ * and Font, and is only created once a Layout is re-wrapped.
+ * <br>
+ * Each pass over a Layout calls {@link #begin(Font)}, then {@link #reuse(long, int, boolean, float)} for each
+ * paragraph in order, followed by {@link #table()} and {@link #store(long, int, boolean, float, int)} if that returned
+ * false, and finally {@link #end()}. The paragraphs of the last complete pass are what can be reused; each can be
+ * reused once per pass, so identical paragraphs (such as blank lines) each keep their own entry.
+ */
+class ParagraphCache {
+    /**
+     * The Font and the Font metrics that the cached breaks were found with; if any of these change, or if break chars
+     * are changed in {@link CharClasses}, everything cached is discarded.
+     */
+    Font font;
+    float scaleX, cellHeight;
+    /**
+     * The {@link CharClasses#version()} the cached breaks were found with.
+     */
+    int charClassVersion;
+    /**
+     * How many paragraphs the last complete pass cached; their data is in the arrays below, in order.
+     */
+    int count;
+    long[] hashes = new long[8];
+    int[] lengths = new int[8];
+    /**
+     * The target width each paragraph was last wrapped at.
+     */
+    float[] widths = new float[8];
+    /**
+     * True if the paragraph started inside curly braces.
+     */
+    boolean[] curlyIns = new boolean[8];
+    /**
+     * Where each paragraph's breaks start in {@link #breaks}, and how many there are.
+     */
+    int[] breakStarts = new int[8], breakCounts = new int[8];
+    /**
+     * The BreakTable for each paragraph.
+     */
+    BreakTable[] tables = new BreakTable[8];
+    /**
+     * Each break is the offset from the start of its paragraph to the first glyph of a new line.
+     */
+    IntArray breaks = new IntArray(), spareBreaks = new IntArray();
+    /**
+     * The same data as above, for the paragraphs the current pass has gone through; {@link #end()} swaps these in.
+     */
+    int nextCount;
+    long[] nextHashes = new long[8];
+    int[] nextLengths = new int[8];
+    float[] nextWidths = new float[8];
+    boolean[] nextCurlyIns = new boolean[8];
+    int[] nextBreakStarts = new int[8], nextBreakCounts = new int[8];
+    BreakTable[] nextTables = new BreakTable[8];
+    /**
+     * True for each of the {@link #count} cached paragraphs once the current pass has reused it.
+     */
+    boolean[] claimed = new boolean[8];
+    /**
+     * An open-addressed table from a paragraph's hash to its index in the cached paragraphs, plus one; 0 is empty.
+     * Paragraphs with the same hash each get their own slot.
+     */
+    int[] slots = new int[16];
+    /**
+     * BreakTables that no paragraph is using, so they can be rebuilt for new paragraphs.
+     */
+    final Array<BreakTable> pool = new Array<>(false, 8, BreakTable.class);
+
+    /**
+     * Discards all cached paragraphs if {@code font} or its relevant metrics are different from what this was last
+     * used with, and prepares to receive the paragraphs of a new pass.
+     * @param font the Font that is about to re-wrap the Layout this belongs to
+     */
+    void begin(Font font) {
+        if (this.font != font || this.scaleX != font.scaleX || this.cellHeight != font.cellHeight
+                || charClassVersion != CharClasses.version()) {
+            this.font = font;
+            this.scaleX = font.scaleX;
+            this.cellHeight = font.cellHeight;
+            charClassVersion = CharClasses.version();
+            clear();
+        }
+        nextCount = 0;
+        spareBreaks.clear();
+        Arrays.fill(claimed, 0, count, false);
+    }
+
+    /**
+     * Looks for a cached paragraph with the given content that this pass hasn't reused yet, and if there is one, adds
+     * it as the next paragraph of this pass, appends its breaks at {@code targetWidth} to {@link #spareBreaks}, and
+     * returns true. If the paragraph was last wrapped at the same width, its breaks are copied; otherwise they are
+     * found again using its {@link BreakTable}.
+     * @return true if the cached data could be reused, or false if the paragraph must be measured again
+     */
+    boolean reuse(long hash, int length, boolean curlyIn, float targetWidth) {
+        if (count == 0) return false;
+        final int mask = slots.length - 1;
+        int found = -1;
+        for (int s = (int) (hash ^ hash >>> 32) & mask; slots[s] != 0; s = s + 1 & mask) {
+            final int p = slots[s] - 1;
+            if (hashes[p] == hash && lengths[p] == length && curlyIns[p] == curlyIn && !claimed[p]) {
+                found = p;
+                break;
+            }
+        }
+        if (found < 0) return false;
+        claimed[found] = true;
+        final int n = grow();
+        nextHashes[n] = hash;
+        nextLengths[n] = length;
+        nextCurlyIns[n] = curlyIn;
+        nextTables[n] = tables[found];
+        nextBreakStarts[n] = spareBreaks.size;
+        if (widths[found] == targetWidth) {
+            spareBreaks.addAll(breaks.items, breakStarts[found], breakCounts[found]);
+        } else {
+            tables[found].wrap(targetWidth, spareBreaks);
+        }
+        nextWidths[n] = targetWidth;
+        nextBreakCounts[n] = spareBreaks.size - nextBreakStarts[n];
+        return true;
+    }
+
+    /**
+     * Gets a BreakTable for the next paragraph of this pass, which must be built and then given to
+     * {@link #store(long, int, boolean, float, int)}.
+     */
+    BreakTable table() {
+        final int n = grow();
+        BreakTable table = pool.size == 0 ? new BreakTable() : pool.pop();
+        nextTables[n] = table;
+        return table;
+    }
+
+    /**
+     * Stores freshly-computed data for the next paragraph of this pass; its {@link #table() table} must already be
+     * built, and its breaks must already be at the end of {@link #spareBreaks}, starting at {@code breakStart}.
+     */
+    void store(long hash, int length, boolean curlyIn, float targetWidth, int breakStart) {
+        final int n = nextCount;
+        nextHashes[n] = hash;
+        nextLengths[n] = length;
+        nextWidths[n] = targetWidth;
+        nextCurlyIns[n] = curlyIn;
+        nextBreakStarts[n] = breakStart;
+        nextBreakCounts[n] = spareBreaks.size - breakStart;
+    }
+
+    /**
+     * Makes sure the next arrays can hold one more paragraph, and returns the index it will have; {@link #next()}
+     * counts it.
+     */
+    private int grow() {
+        final int n = nextCount;
+        if (n == nextHashes.length) {
+            final int cap = n + (n >>> 1) + 1;
+            nextHashes = Arrays.copyOf(nextHashes, cap);
+            nextLengths = Arrays.copyOf(nextLengths, cap);
+            nextWidths = Arrays.copyOf(nextWidths, cap);
+            nextCurlyIns = Arrays.copyOf(nextCurlyIns, cap);
+            nextBreakStarts = Arrays.copyOf(nextBreakStarts, cap);
+            nextBreakCounts = Arrays.copyOf(nextBreakCounts, cap);
+            nextTables = Arrays.copyOf(nextTables, cap);
+        }
+        return n;
+    }
+
+    /**
+     * Gets whether the paragraph that was just reused or stored ended inside curly braces, and moves on to the next
+     * paragraph of this pass.
+     */
+    boolean next() {
+        return nextTables[nextCount++].curlyOut;
+    }
+
+    /**
+     * Finishes a complete pass, making the paragraphs and breaks it gathered the ones that can be reused by the next
+     * pass. BreakTables of cached paragraphs that this pass didn't reuse go back to {@link #pool}.
+     */
+    void end() {
+        for (int p = 0; p < count; p++) {
+            if (!claimed[p]) pool.add(tables[p]);
+        }
+        long[] h = hashes; hashes = nextHashes; nextHashes = h;
+        int[] l = lengths; lengths = nextLengths; nextLengths = l;
+        float[] w = widths; widths = nextWidths; nextWidths = w;
+        boolean[] c = curlyIns; curlyIns = nextCurlyIns; nextCurlyIns = c;
+        int[] bs = breakStarts; breakStarts = nextBreakStarts; nextBreakStarts = bs;
+        int[] bc = breakCounts; breakCounts = nextBreakCounts; nextBreakCounts = bc;
+        BreakTable[] t = tables; tables = nextTables; nextTables = t;
+        IntArray b = breaks; breaks = spareBreaks; spareBreaks = b;
+        count = nextCount;
+        nextCount = 0;
+        if (claimed.length < count) claimed = new boolean[hashes.length];
+        final int size = Math.max(16, Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1);
+        if (slots.length != size) slots = new int[size];
+        else Arrays.fill(slots, 0);
+        final int mask = size - 1;
+        for (int p = 0; p < count; p++) {
+            final long hash = hashes[p];
+            int s = (int) (hash ^ hash >>> 32) & mask;
+            while (slots[s] != 0) s = s + 1 & mask;
+            slots[s] = p + 1;
+        }
+    }
+
+    /**
+     * Discards all cached data, including the paragraphs the current pass has gone through.
+     */
+    void clear() {
+        count = 0;
+        nextCount = 0;
+        breaks.clear();
+        spareBreaks.clear();
+    }
+
+    /**
+     * Hashes the parts of each glyph from start (inclusive) to end (exclusive) that can affect how text wraps: the
+     * char, the style and scale bits, and whether the color is fully zero (which makes a glyph a break point).
+     */
+    static long hash(long[] items, int start, int end) {
+        long h = end - start;
+        for (int i = start; i < end; i++) {
+            long g = items[i];
+            h = (h ^ ((g & 0xFFFFFFFFL) | (g >>> 32 == 0L ? 0x100000000L : 0L))) * 0xD1B54A32D192ED03L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+
+    /**
+     * Every place one paragraph can be broken into lines, and how much each glyph adds to the width of a line. This is
+     * filled in by Font, which measures every glyph in the paragraph once; after that, {@link #wrap(float, IntArray)}
+     * can find the breaks for any target width without measuring glyphs again.
+     * <br>
+     * Each line's break is found with a binary search over the running total of advances, so wrapping takes time
+     * proportional to the number of lines times the log of the paragraph's length. Font sums the width of a line in
+     * float, one glyph at a time from the start of that line, and that can round differently than the running total;
+     * when the search finds a line that ends within rounding error of its target width, that line is summed again the
+     * way Font does it, so a line breaks in the same place either way.
+     */
+    static final class BreakTable {
+        /**
+         * How many glyphs are in the paragraph, including a trailing newline if it has one.
+         */
+        int length;
+        /**
+         * How many glyphs, from the start, can cause a line to wrap; a trailing newline can't.
+         */
+        int checkEnd;
+        /**
+         * Whether the paragraph ended inside curly braces.
+         */
+        boolean curlyOut;
+        /**
+         * {@code advances[i]} is how much glyph i adds to the width of a line, including kerning with the glyph before
+         * it.
+         */
+        float[] advances = new float[16];
+        /**
+         * What glyph i adds to the width of a line instead of {@link #advances}, when it is the first glyph in that
+         * line that uses kerning, since it isn't kerned with the glyph before it then.
+         */
+        float[] firstAdvances = new float[16];
+        /**
+         * How much wider a line gets when it starts at this glyph, because its first glyph's left offset is counted.
+         */
+        float[] startAdjust = new float[16];
+        /**
+         * True for glyphs that have no region in their font, and so are skipped entirely when wrapping.
+         */
+        boolean[] skipped = new boolean[16];
+        /**
+         * True for glyphs whose font uses kerning.
+         */
+        boolean[] kerned = new boolean[16];
+        /**
+         * {@code prefix[i]} is the total of {@link #advances} of every glyph before glyph i that isn't skipped.
+         */
+        double[] prefix = new double[17];
+        /**
+         * {@code nextKerned[i]} is the index of the first glyph at or after glyph i whose font uses kerning, or
+         * {@link #checkEnd} if there is none.
+         */
+        int[] nextKerned = new int[17];
+        /**
+         * True if no glyph that isn't skipped has a negative advance, so a line only gets wider as glyphs are added,
+         * and binary search can be used to find where it gets too wide.
+         */
+        boolean monotonic;
+        /**
+         * How many break opportunities there are.
+         */
+        int opportunityCount;
+        /**
+         * The index of each glyph that a line could be broken after, in ascending order.
+         */
+        int[] opportunities = new int[8];
+        /**
+         * For each opportunity, how many spacing glyphs were in a row just before the most recent spacing glyph, as
+         * counted from the start of the paragraph; these are moved to the start of the next line when it breaks.
+         */
+        int[] spans = new int[8];
+        /**
+         * For each opportunity, the index of the most recent spacing glyph at or before it, or -2 if there is none.
+         */
+        int[] spacePoints = new int[8];
+
+        /**
+         * Clears this table and makes sure it can hold {@code length} glyphs.
+         */
+        void reset(int length) {
+            this.length = length;
+            this.checkEnd = length;
+            opportunityCount = 0;
+            curlyOut = false;
+            if (advances.length < length) {
+                int cap = Math.max(length, advances.length + (advances.length >>> 1));
+                advances = new float[cap];
+                firstAdvances = new float[cap];
+                startAdjust = new float[cap];
+                skipped = new boolean[cap];
+                kerned = new boolean[cap];
+                prefix = new double[cap + 1];
+                nextKerned = new int[cap + 1];
+            }
+        }
+
+        /**
+         * Fills in {@link #prefix}, {@link #nextKerned}, and {@link #monotonic}; called once every glyph's advance is
+         * known.
+         */
+        void finish() {
+            final int n = checkEnd;
+            double sum = 0.0;
+            monotonic = true;
+            for (int i = 0; i < n; i++) {
+                prefix[i] = sum;
+                if (!skipped[i]) {
+                    sum += advances[i];
+                    if (advances[i] < 0f || firstAdvances[i] < 0f) monotonic = false;
+                }
+            }
+            prefix[n] = sum;
+            nextKerned[n] = n;
+            for (int i = n - 1, k = n; i >= 0; i--) {
+                if (kerned[i]) k = i;
+                nextKerned[i] = k;
+            }
+        }
+
+        /**
+         * Records a place the paragraph can be broken.
+         * @param index the index of the glyph that a line can be broken after
+         * @param span how many spacing glyphs are in a row before the most recent one
+         * @param spacePoint the index of the most recent spacing glyph
+         */
+        void addOpportunity(int index, int span, int spacePoint) {
+            if (opportunityCount == opportunities.length) {
+                int cap = opportunityCount + (opportunityCount >>> 1) + 1;
+                opportunities = Arrays.copyOf(opportunities, cap);
+                spans = Arrays.copyOf(spans, cap);
+                spacePoints = Arrays.copyOf(spacePoints, cap);
+            }
+            opportunities[opportunityCount] = index;
+            spans[opportunityCount] = span;
+            spacePoints[opportunityCount] = spacePoint;
+            opportunityCount++;
+        }
+
+        /**
+         * Finds where this paragraph should be broken to fit in {@code targetWidth}, the same way
+         * {@link Font#regenerateLayout(Layout)} would, and appends each break to {@code breaks} as the offset from the
+         * start of the paragraph to the first glyph of a new line.
+         * @param targetWidth the width lines must fit into
+         * @param breaks will have any breaks appended to it
+         */
+        void wrap(float targetWidth, IntArray breaks) {
+            int start = 0;
+            while (true) {
+                int first = firstOpportunity(start);
+                if (first == opportunityCount) return;
+                int over = firstOver(start, opportunities[first] + 1, targetWidth);
+                if (over < 0) return;
+                // the last opportunity before the glyph that went over is where this line breaks.
+                int b = firstOpportunity(over) - 1;
+                int spacePoint = spacePoints[b];
+                int span = spacePoint < start ? 0 : Math.min(spans[b], spacePoint - start);
+                start = opportunities[b] - span + 1;
+                breaks.add(start);
+            }
+        }
+
+        /**
+         * Gets the index in {@link #opportunities} of the first opportunity at or after glyph {@code index}, or
+         * {@link #opportunityCount} if there is none.
+         */
+        private int firstOpportunity(int index) {
+            int lo = 0, hi = opportunityCount;
+            while (lo < hi) {
+                int mid = lo + hi >>> 1;
+                if (opportunities[mid] < index) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * Gets the first glyph index i, from {@code from} (inclusive) to {@link #checkEnd} (exclusive), that isn't
+         * skipped and makes a line starting at glyph {@code start} wider than targetWidth, or -1 if there is no such
+         * glyph. This uses binary search when it can, and {@link #firstOverSummed(int, int, float)} when it can't, or
+         * when the result could depend on how the width is rounded.
+         */
+        private int firstOver(int start, int from, float targetWidth) {
+            if (!monotonic) return firstOverSummed(start, from, targetWidth);
+            int lo = from, hi = checkEnd;
+            while (lo < hi) {
+                int mid = lo + hi >>> 1;
+                if (widthThrough(start, mid) > targetWidth) hi = mid;
+                else lo = mid + 1;
+            }
+            // a float sum of k positive amounts is within about k * 2^-24 of its total, relative to that total.
+            final double tolerance = (Math.abs(targetWidth) + 1.0) * (checkEnd - start + 1) * 0x1p-23;
+            if ((lo < checkEnd && widthThrough(start, lo) - targetWidth <= tolerance)
+                    || (lo > from && targetWidth - widthThrough(start, lo - 1) <= tolerance))
+                return firstOverSummed(start, from, targetWidth);
+            // a skipped glyph adds nothing, so the first glyph after it that isn't skipped is just as wide.
+            while (lo < checkEnd && skipped[lo]) lo++;
+            return lo < checkEnd ? lo : -1;
+        }
+
+        /**
+         * Gets the width of a line that starts at glyph {@code start} and ends with glyph {@code end} (inclusive),
+         * using {@link #prefix}.
+         */
+        private double widthThrough(int start, int end) {
+            double width = startAdjust[start] + prefix[end + 1] - prefix[start];
+            final int k = nextKerned[start];
+            if (k <= end && !skipped[k]) width += firstAdvances[k] - advances[k];
+            return width;
+        }
+
+        /**
+         * Does the same thing as {@link #firstOver(int, int, float)}, but sums the width in float, one glyph at a time
+         * from start, the way Font sums the width of a line.
+         */
+        private int firstOverSummed(int start, int from, float targetWidth) {
+            float width = startAdjust[start];
+            boolean kernedYet = false;
+            for (int i = start; i < checkEnd; i++) {
+                final boolean firstKerned = !kernedYet && kerned[i];
+                if (firstKerned) kernedYet = true;
+                if (skipped[i]) continue;
+                width += firstKerned ? firstAdvances[i] : advances[i];
+                if (i >= from && width > targetWidth) return i;
+            }
+            return -1;
+        }
+    }
+}
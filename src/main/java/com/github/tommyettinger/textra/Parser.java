@@ -21,29 +21,33 @@ import com.badlogic.gdx.utils.Array;
 import com.github.tommyettinger.textra.utils.CaseInsensitiveIntMap;
 import com.github.tommyettinger.textra.utils.Palette;
 import com.github.tommyettinger.textra.utils.StringUtils;
-import regexodus.Matcher;
 import regexodus.Pattern;
-import regexodus.REFlags;
 import regexodus.Replacer;
 
 /**
  * Utility class to parse tokens from a {@link TypingLabel}; not intended for external use in most situations.
  */
 public class Parser {
-    private static final Pattern PATTERN_MARKUP_STRIP = Pattern.compile("((?<!\\[)\\[[^\\[\\]]*(\\]|$))");
-    private static final Replacer RESET_TAG = new Replacer(Pattern.compile("((?<!\\[)\\[ (?:\\]|$))"), "{RESET}");
-    private static final Replacer UNDO_TAG =  new Replacer(Pattern.compile("((?<!\\[)\\[(?:\\]|$))"), "{UNDO}");
-    private static final Replacer COLOR_MARKUP_TO_TAG = new Replacer(Pattern.compile("(?<!\\[)\\[(?:(?:#({=m}[A-Fa-f0-9]{3,8}))|(?:\\|?)({=m}[\\pL\\pN][^\\[\\]]*))(\\]|$)"), "{COLOR=${\\m}}");
-    private static final Replacer MARKUP_TO_TAG = new Replacer(Pattern.compile("(?<!\\[)\\[([^\\[\\]\\+][^\\[\\]]*)(\\]|$)"), "{STYLE=$1}");
-    private static final Pattern PATTERN_COLOR_HEX_NO_HASH = Pattern.compile("[A-Fa-f0-9]{3,8}");
+    /**
+     * Finds tokens and square-bracket markup; this replaced a series of regular expressions, with the same results.
+     */
+    private static final TokenScanner SCANNER = new TokenScanner();
+
+    /**
+     * Reused for the parameters of every token, so most effects can read them without any Strings being created.
+     */
+    private static final EffectParams EFFECT_PARAMS = new EffectParams();
+
+    /**
+     * When true, each effect's parameters are also kept as a String array in its {@link TokenEntry}, even if the
+     * effect reads them from {@link #EFFECT_PARAMS}; {@link TypingScript} needs them to produce the effect again.
+     */
+    static boolean keepEffectParams;
 
     private static final Replacer BRACKET_MINUS_TO_TAG = new Replacer(Pattern.compile("((?<!\\[)\\[-({=t}[^\\[\\]]*)(?:\\]|$))"), "{${\\t}}");
 
     private static final CaseInsensitiveIntMap BOOLEAN_TRUE = new CaseInsensitiveIntMap(new String[]{"true", "yes", "t", "y", "on", "1"}, new int[6]);
-    private static final int INDEX_TOKEN = 1;
-    private static final int INDEX_PARAM = 2;
 
-    private static Pattern PATTERN_TOKEN_STRIP;
     private static String RESET_REPLACEMENT;
 
     /**
@@ -73,21 +77,131 @@ public class Parser {
      * @return {@code text} with square bracket style markup changed to curly-brace style tags
      */
     public static String preprocess(String text) {
-        text = RESET_TAG.replace(text);
-        text = UNDO_TAG.replace(text);
-        text = COLOR_MARKUP_TO_TAG.replace(text);
-        text = MARKUP_TO_TAG.replace(text);
-//        System.out.println(text);
-        return text;
+        return SCANNER.preprocess(text);
+    }
+
+    /**
+     * Does everything to {@code text} that a {@link TypingLabel} does before it parses tokens:
+     * {@link #handleBracketMinusMarkup(String)}, then {@link #preprocess(String)}. Text this returns can be given to
+     * {@link TypingLabel#restartNormalized(CharSequence)}, which won't need to preprocess it again. Normalizing text
+     * that is already normalized doesn't change it.
+     *
+     * @param text text that could have square-bracket markup, including square-bracket-minus markup
+     * @return {@code text} with square-bracket markup changed to curly-brace tags
+     */
+    public static String normalize(String text) {
+        return SCANNER.preprocess(handleBracketMinusMarkup(text));
+    }
+
+    /**
+     * Checks {@code text} for markup mistakes that would otherwise only be noticed when the text is shown, and adds a
+     * message to {@code problems} for each one. This finds {@code [} and <code>{</code> that are never closed, tokens
+     * in curly braces that aren't internal tokens or registered effects (see
+     * {@link TypingConfig#registerEffect(String, Effect.EffectBuilder)}), colors that are neither hex nor known to
+     * {@code font}'s {@link ColorLookup}, and style markup that isn't recognized. Variables aren't checked, because a
+     * label can set them at any time, and neither are effect parameters.
+     *
+     * @param text     text that could have square-bracket markup and curly-brace tokens
+     * @param font     the Font the text will be shown with; its ColorLookup and square-bracket setting are used
+     * @param problems an Array that will receive a message for each problem found; may be null to only count them
+     * @return how many problems were found
+     */
+    public static int validate(String text, Font font, Array<String> problems) {
+        int count = 0;
+        if (font.enableSquareBrackets) {
+            for (int i = 0, n = text.length(); i < n; i++) {
+                if (text.charAt(i) != '[') continue;
+                if (i + 1 < n && text.charAt(i + 1) == '[') {
+                    i++;
+                    continue;
+                }
+                final int end = text.indexOf(']', i);
+                if (end < 0) {
+                    count++;
+                    if (problems != null) problems.add("Unclosed '[' at index " + i + ": " + snippet(text, i));
+                    break;
+                }
+                i = end;
+            }
+        }
+        final String normalized = normalize(text);
+        for (int i = 0, n = normalized.length(); i < n; i++) {
+            if (normalized.charAt(i) != '{') continue;
+            if (i + 1 < n && normalized.charAt(i + 1) == '{') {
+                i++;
+                continue;
+            }
+            final int end = normalized.indexOf('}', i);
+            if (end < 0) {
+                count++;
+                if (problems != null) problems.add("Unclosed '{': " + snippet(normalized, i));
+                break;
+            }
+            final String tag = normalized.substring(i, end + 1);
+            i = end;
+            if (tag.length() < 3 || !Character.isLetter(tag.charAt(1))) continue; // Font's own markup, such as {@Name}
+            final int eq = tag.indexOf('=');
+            final String name = tag.substring(1, eq < 0 ? tag.length() - 1 : eq).toUpperCase();
+            final String param = eq < 0 ? null : tag.substring(eq + 1, tag.length() - 1);
+            final InternalToken internal = InternalToken.fromName(name);
+            String problem = null;
+            if (internal == InternalToken.COLOR) {
+                final String color = param == null ? "" : param.startsWith("|") ? param.substring(1) : param;
+                final String hex = color.startsWith("#") ? color.substring(1) : color;
+                if (!TokenScanner.isHexColor(hex) && (color.isEmpty() || font.getColorLookup().getRgba(color) == 256))
+                    problem = "Unknown color " + tag;
+            } else if (internal == InternalToken.STYLE || internal == InternalToken.SIZE) {
+                if (param == null || stringToStyleMarkup(param).isEmpty())
+                    problem = "Unknown style " + tag;
+            } else if (internal == null && !TypingConfig.EFFECT_START_TOKENS.containsKey(name)
+                    && !TypingConfig.EFFECT_END_TOKENS.containsKey(name)) {
+                problem = "Unknown token " + tag;
+            }
+            if (problem != null) {
+                count++;
+                if (problems != null) problems.add(problem);
+            }
+        }
+        return count;
+    }
+
+    private static String snippet(String text, int start) {
+        return text.length() - start <= 24 ? text.substring(start) : text.substring(start, start + 24) + "...";
+    }
+
+    /**
+     * Called by {@link TypingConfig#registerEffect(String, Effect.EffectBuilder)} after it adds the start token
+     * {@code name} and the end token "END" + name, so only those two token names need to be added here.
+     */
+    static void effectRegistered(String name) {
+        if (!SCANNER.hasTokenNames()) return;
+        SCANNER.addEffectName(name, TokenCategory.EFFECT_START);
+        SCANNER.addEffectName("END" + name, TokenCategory.EFFECT_END);
+    }
+
+    /**
+     * Called by {@link TypingConfig#unregisterEffect(String)} after it removes the start token {@code name} and the
+     * end token "END" + name, so only those two token names need to be removed here.
+     */
+    static void effectUnregistered(String name) {
+        if (!SCANNER.hasTokenNames()) return;
+        final String end = "END" + name;
+        SCANNER.removeEffectName(name, TokenCategory.EFFECT_START);
+        SCANNER.removeEffectName(end, TokenCategory.EFFECT_END);
+        // either name could still belong to another effect, in the other role
+        if (TypingConfig.EFFECT_END_TOKENS.containsKey(name))
+            SCANNER.addEffectName(name, TokenCategory.EFFECT_END);
+        if (TypingConfig.EFFECT_START_TOKENS.containsKey(end))
+            SCANNER.addEffectName(end, TokenCategory.EFFECT_START);
     }
 
     /**
      * Parses all tokens from the given {@link TypingLabel}.
      */
     public static void parseTokens(TypingLabel label) {
-        // Compile patterns if necessary
-        if (PATTERN_TOKEN_STRIP == null || TypingConfig.dirtyEffectMaps) {
-            PATTERN_TOKEN_STRIP = compileTokenPattern();
+        // Update token names if necessary
+        if (!SCANNER.hasTokenNames()) {
+            SCANNER.setTokenNames(TypingConfig.EFFECT_START_TOKENS, TypingConfig.EFFECT_END_TOKENS);
         }
         if (RESET_REPLACEMENT == null || TypingConfig.dirtyEffectMaps) {
             RESET_REPLACEMENT = getResetReplacement();
@@ -95,6 +209,7 @@ public class Parser {
 
         // Remove any previous entries
         label.tokenEntries.clear();
+        label.variableSpans.clear();
 
         // Parse all tokens with text replacements, namely color and var.
         parseReplacements(label);
@@ -102,9 +217,6 @@ public class Parser {
         // Parse all regular tokens and properly register them
         parseRegularTokens(label);
 
-        // Parse color markups and register SKIP tokens
-//        parseColorMarkups(label);
-
         label.setText(label.getIntermediateText().toString(), false, false);
 
         // Sort token entries
@@ -117,30 +229,24 @@ public class Parser {
      */
     private static void parseReplacements(TypingLabel label) {
         // Get text
-        CharSequence text = label.layout.appendIntoDirect(new StringBuilder());
-
-        // Create string builder
-        Matcher m = PATTERN_TOKEN_STRIP.matcher(text);
-        int matcherIndexOffset = 0;
-
-        // Iterate through matches
-        while (true) {
-            // Reset StringBuilder and matcher
-            m.setTarget(text);
-            m.setPosition(matcherIndexOffset);
-
-            // Make sure there's at least one regex match
-            if (!m.find()) break;
-
+        final StringBuilder text = label.getIntermediateText();
+        text.setLength(0);
+        final TokenScanner scanner = SCANNER.load(label.layout.appendIntoDirect(text));
+        // Tokens are only found at or after this; replacements are scanned again, but skipped tokens are not.
+        int cursor = 0;
+
+        // Iterate through tokens
+        while (scanner.find()) {
             // Get token and parameter
-            final InternalToken internalToken = InternalToken.fromName(m.group(INDEX_TOKEN));
-            final String param = m.group(INDEX_PARAM);
+            final InternalToken internalToken = scanner.internal(scanner.foundName());
 
-            // If token couldn't be parsed, move one index forward to continue the search
+            // If token isn't one that gets replaced, move past it to continue the search
             if (internalToken == null) {
-                matcherIndexOffset++;
+                cursor = scanner.position() + 1;
+                scanner.skip();
                 continue;
             }
+            final String param = scanner.foundParams();
 
             // Process tokens and handle replacement
             String replacement;
@@ -166,27 +272,22 @@ public class Parser {
                     replacement = "[@]";
                     break;
                 case VAR:
-                    replacement = null;
-
-                    // Try to replace variable through listener.
-                    if (label.getTypingListener() != null) {
-                        replacement = label.getTypingListener().replaceVariable(param);
-                    }
-
-                    // If replacement is null, get value from maps.
-                    if (replacement == null) {
-                        replacement = label.getVariables().get(param.toUpperCase());
-                    }
+                    replacement = getVariableValue(label, param);
 
-                    // If replacement is still null, get value from global scope
-                    if (replacement == null) {
-                        replacement = TypingConfig.GLOBAL_VARS.get(param.toUpperCase());
+                    // Remember where plain values go, so they can be replaced later without parsing everything again.
+                    label.variableSpans.add(new VariableSpan(param, replacement));
+                    if (VariableSpan.isPlain(replacement) && !scanner.insideBrackets()) {
+                        replacement = "{" + InternalToken.SPLICE.name + "=" + (label.variableSpans.size - 1) + "}" + replacement;
                     }
-
-                    // Make sure we're not inserting "null" to the text.
-                    if (replacement == null) replacement = param.toUpperCase();
                     break;
                 case IF:
+                    // Remember the variable, so changing it will parse everything again.
+                    if (param != null) {
+                        final int semi = param.indexOf(';');
+                        final String variable = semi < 0 ? param : param.substring(0, semi);
+                        label.variableSpans.add(new VariableSpan(variable, getVariableValue(label, variable)));
+                    }
+
                     // Process token
                     replacement = processIfToken(label, param);
 
@@ -200,18 +301,46 @@ public class Parser {
                     replacement = "[]";
                     break;
                 default:
-                    // We don't want to process this token now. Move one index forward to continue the search
-                    matcherIndexOffset++;
+                    // We don't want to process this token now. Move past it to continue the search
+                    cursor = scanner.position() + 1;
+                    scanner.skip();
                     continue;
             }
 
             // Update text with replacement
-            m.setPosition(m.start());
-            text = m.replaceFirst(replacement);
+            scanner.replace(replacement, cursor);
         }
 
         // Set new text
-        label.setIntermediateText(text, false, false);
+        label.setIntermediateText(scanner.writeTo(text), false, false);
+    }
+
+    /**
+     * Gets the value a <code>{VAR=name}</code> token is replaced with: what the label's {@link TypingListener} gives
+     * for {@code name}, or if that is null, the label's variable with that name, or the global variable with that name
+     * in {@link TypingConfig#GLOBAL_VARS}, or if there is no such variable, name in upper case.
+     */
+    static String getVariableValue(TypingLabel label, String name) {
+        String value = null;
+
+        // Try to replace variable through listener.
+        if (label.getTypingListener() != null) {
+            value = label.getTypingListener().replaceVariable(name);
+        }
+
+        // If value is null, get value from maps.
+        if (value == null) {
+            value = label.getVariables().get(name.toUpperCase());
+        }
+
+        // If value is still null, get value from global scope
+        if (value == null) {
+            value = TypingConfig.GLOBAL_VARS.get(name.toUpperCase());
+        }
+
+        // Make sure we're not inserting "null" to the text.
+        if (value == null) value = name.toUpperCase();
+        return value;
     }
 
     private static String processIfToken(TypingLabel label, String paramsString) {
@@ -283,67 +412,64 @@ public class Parser {
      * Parses regular tokens that don't need replacement and register their indexes in the {@link TypingLabel}.
      */
     private static void parseRegularTokens(TypingLabel label) {
-        // Get text
-        CharSequence text = PATTERN_MARKUP_STRIP.matcher(label.getIntermediateText()).replaceAll("");
-        CharSequence text2 = label.getIntermediateText();
-//        System.out.println(text2);
-        // Create matcher and StringBuilder
-        Matcher m = PATTERN_TOKEN_STRIP.matcher(text);
-        Matcher m2 = PATTERN_TOKEN_STRIP.matcher(text2);
-        int matcherIndexOffset = 0, m2IndexOffset = 0;
-
-        // Iterate through matches
-        while (true) {
-            // Reset matcher and StringBuilder
-            m.setTarget(text);
-            m2.setTarget(text2);
-            m2.setPosition(m2IndexOffset);
-            m.setPosition(matcherIndexOffset);
-
-            // Make sure there's at least one regex match
-            if (!m.find()) break;
-            m2.find();
+        // Get text; token indices are found in the text without markup, but tokens are removed from the full text
+        final TokenScanner scanner = SCANNER;
+        final StringBuilder text2 = label.getIntermediateText();
+        final char[] text = scanner.stripMarkup(text2);
+        final int tokenCount = scanner.tokenize(text, scanner.strippedLength());
+        scanner.load(text2);
+        // Markers before variable values are removed from the indices of everything after them, so the indices are
+        // the same as if the markers had never been there; tokenChars counts the chars in all other tokens so far.
+        int markerShift = 0, tokenChars = 0;
+
+        // Iterate through tokens
+        for (int t = 0; t < tokenCount; t++) {
             // Get token name and category
-            String tokenName = m.group(INDEX_TOKEN).toUpperCase();
-            TokenCategory tokenCategory = null;
-            InternalToken tmpToken = InternalToken.fromName(tokenName);
-            if (tmpToken == null) {
-                if (TypingConfig.EFFECT_START_TOKENS.containsKey(tokenName)) {
-                    tokenCategory = TokenCategory.EFFECT_START;
-                } else if (TypingConfig.EFFECT_END_TOKENS.containsKey(tokenName)) {
-                    tokenCategory = TokenCategory.EFFECT_END;
+            final int name = scanner.tokenNames[t];
+
+            // Record where a variable's value was placed, then remove the marker that precedes it
+            if (scanner.internal(name) == InternalToken.SPLICE) {
+                int which = 0;
+                for (int i = scanner.paramStarts[t], e = scanner.paramEnds[t]; i < e; i++) {
+                    which = which * 10 + text[i] - '0';
+                }
+                final VariableSpan span = which < label.variableSpans.size ? label.variableSpans.get(which) : null;
+                if (span != null) {
+                    span.rawIndex = scanner.tokenStarts[t] - markerShift;
+                    span.glyphIndex = span.rawIndex - tokenChars;
+                }
+                markerShift += scanner.tokenEnds[t] - scanner.tokenStarts[t];
+                if (scanner.find()) {
+                    if (span != null) span.textIndex = scanner.position();
+                    scanner.remove();
                 }
-            } else {
-                tokenCategory = tmpToken.category;
+                continue;
             }
 
+            final String tokenName = scanner.name(name);
+            final TokenCategory tokenCategory = scanner.category(name);
+
             // Get token, param and index of where the token begins
-            int groupCount = m.groupCount();
-            final String paramsString = groupCount == INDEX_PARAM ? m.group(INDEX_PARAM) : null;
-            final String[] params = paramsString == null ? new String[0] : paramsString.split(";");
-            final String firstParam = params.length > 0 ? params[0] : null;
-            final int index = m.start(0);
+            final int paramStart = scanner.paramStarts[t];
+            final EffectParams params = paramStart < 0 ? EFFECT_PARAMS.clear() : EFFECT_PARAMS.set(text, paramStart, scanner.paramEnds[t]);
+            final int index = scanner.tokenStarts[t] - markerShift;
+            tokenChars += scanner.tokenEnds[t] - scanner.tokenStarts[t];
             int indexOffset = 0;
 
-            // If token couldn't be parsed, move one index forward to continue the search
-            if (tokenCategory == null) {
-                matcherIndexOffset++;
-                continue;
-            }
-
             // Process tokens
             float floatValue = 0;
             String stringValue = null;
             Effect effect = null;
+            String[] effectParams = null;
 
             switch (tokenCategory) {
                 case WAIT: {
-                    floatValue = stringToFloat(firstParam, TypingConfig.DEFAULT_WAIT_VALUE);
+                    floatValue = params.getFloat(0, TypingConfig.DEFAULT_WAIT_VALUE);
 //                    indexOffset = 1;
                     break;
                 }
                 case EVENT: {
-                    stringValue = paramsString;
+                    stringValue = paramStart < 0 ? null : params.toString();
 //                    indexOffset = -1;
                     break;
                 }
@@ -352,7 +478,7 @@ public class Parser {
                         case "SPEED": {
                             float minModifier = TypingConfig.MIN_SPEED_MODIFIER;
                             float maxModifier = TypingConfig.MAX_SPEED_MODIFIER;
-                            float modifier = MathUtils.clamp(stringToFloat(firstParam, 1), minModifier, maxModifier);
+                            float modifier = MathUtils.clamp(params.getFloat(0, 1), minModifier, maxModifier);
                             floatValue = TypingConfig.DEFAULT_SPEED_PER_CHAR / modifier;
                             break;
                         }
@@ -374,7 +500,7 @@ public class Parser {
                         case "NATURAL": {
                             float minModifier = TypingConfig.MIN_SPEED_MODIFIER;
                             float maxModifier = TypingConfig.MAX_SPEED_MODIFIER;
-                            float modifier = MathUtils.clamp(stringToFloat(firstParam, 1), minModifier, maxModifier);
+                            float modifier = MathUtils.clamp(params.getFloat(0, 1), minModifier, maxModifier);
                             floatValue = -TypingConfig.DEFAULT_SPEED_PER_CHAR / modifier;
                             break;
                         }
@@ -382,9 +508,13 @@ public class Parser {
                     break;
                 }
                 case EFFECT_START: {
-                    Effect.EffectBuilder eb = TypingConfig.EFFECT_START_TOKENS.get(tokenName.toUpperCase());
-                    if (eb != null) {
-                        effect = eb.produce(label, params);
+                    Effect.EffectBuilder eb = TypingConfig.EFFECT_START_TOKENS.get(tokenName);
+                    if (eb instanceof TypingConfig.NamedParamsBuilder) {
+                        if (keepEffectParams) effectParams = params.toArray();
+                        effect = ((TypingConfig.NamedParamsBuilder) eb).produce(label, params);
+                    } else if (eb != null) {
+                        effectParams = params.toArray();
+                        effect = eb.produce(label, effectParams);
                     }
                     break;
                 }
@@ -394,35 +524,17 @@ public class Parser {
             }
 
             // Register token
-            TokenEntry entry = new TokenEntry(tokenName, tokenCategory, index + indexOffset, m.end(0), floatValue, stringValue);
+            TokenEntry entry = new TokenEntry(tokenName, tokenCategory, index + indexOffset, scanner.tokenEnds[t] - markerShift, floatValue, stringValue);
             entry.effect = effect;
+            if (effect != null) entry.params = effectParams;
             label.tokenEntries.add(entry);
 
             // Set new text without tokens
-            matcherIndexOffset = m.end();
-            m2.setPosition(0);
-            text2 = m2.replaceFirst("");
+            if (scanner.find()) scanner.remove();
         }
 
-//        System.out.println("Modified: "+text);
         // Update label text
-        label.setIntermediateText(text2, false, false);
-    }
-
-    /**
-     * Parse color markup tags and register SKIP tokens.
-     */
-    private static void parseColorMarkups(TypingLabel label) {
-        // Get text
-        final CharSequence text = label.getOriginalText();
-//        System.out.println("Original: "+text);
-        // Iterate through matches and register skip tokens
-        Matcher m = PATTERN_MARKUP_STRIP.matcher(text);
-        while (m.find()) {
-            final String tag = m.group(0);
-            final int index = m.start(0);
-            label.tokenEntries.add(new TokenEntry("SKIP", TokenCategory.SKIP, index, m.end(0), 0, tag));
-        }
+        label.setIntermediateText(scanner.writeTo(text2), false, false);
     }
 
     /**
@@ -508,7 +620,7 @@ public class Parser {
     public static String stringToColorMarkup(String str) {
         if (str != null) {
             // If color isn't registered by name, try to parse it as a hex code.
-            if (str.length() >= 3 && !Palette.NAMED.containsKey(str) && PATTERN_COLOR_HEX_NO_HASH.matches(str)) {
+            if (str.length() >= 3 && !Palette.NAMED.containsKey(str) && TokenScanner.isHexColor(str)) {
                 return "[#" + str + "]";
             }
         }
@@ -581,34 +693,13 @@ public class Parser {
                 return "[" + str + "]";
             if(Palette.NAMED.containsKey(str))
                 return "[" + str + "]";
-            if (str.length() >= 3 && PATTERN_COLOR_HEX_NO_HASH.matches(str))
+            if (str.length() >= 3 && TokenScanner.isHexColor(str))
                 return "[#" + str + "]";
         }
         // Return no change
         return "";
     }
 
-    /**
-     * Returns a compiled {@link Pattern} that groups the token name in the first group and the params in an optional
-     * second one. Case-insensitive.
-     */
-    private static Pattern compileTokenPattern() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("\\{(");
-        Array<String> tokens = new Array<>();
-        TypingConfig.EFFECT_START_TOKENS.keys().toArray(tokens);
-        TypingConfig.EFFECT_END_TOKENS.keys().toArray(tokens);
-        for (InternalToken token : InternalToken.values()) {
-            tokens.add(token.name);
-        }
-        for (int i = 0; i < tokens.size; i++) {
-            sb.append(tokens.get(i));
-            if ((i + 1) < tokens.size) sb.append('|');
-        }
-        sb.append(")(?:\\=([^\\{\\}]+))?\\}");
-        return Pattern.compile(sb.toString(), REFlags.IGNORE_CASE);
-    }
-
     /**
      * Returns the replacement string intended to be used on {RESET} tokens.
      */
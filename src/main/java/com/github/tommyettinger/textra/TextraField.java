@@ -117,6 +117,11 @@ public class TextraField extends Widget implements Disableable {
 
 	String undoText = "";
 	long lastChangeTime;
+	/**
+	 * Holds a copy of the label's layout from before the most recent change, so the change can be undone if a listener
+	 * cancels it. This is reused for every change instead of copying into a new Layout each time.
+	 */
+	private Layout snapshotLayout = new Layout();
 
 	boolean passwordMode;
 	private char passwordCharacter = BULLET;
@@ -460,6 +465,7 @@ public class TextraField extends Widget implements Disableable {
 					line.glyphs.set(g, 0xFFFFFFFE00000000L | passwordCharacter);
 				}
 			}
+			label.workingLayout.invalidate();
 		}
 		displayText = label.toString();
 		label.skipToTheEnd(true, true);
@@ -551,6 +557,7 @@ public class TextraField extends Widget implements Disableable {
 		LongArray glyphs = label.layout.getLine(0).glyphs;
 		if(glyphs.size > 0 && minIndex <= maxIndex)
 			glyphs.removeRange(minIndex, Math.max(Math.min(glyphs.size - 1, maxIndex), 0));
+		label.layout.invalidate();
 		if (fireChangeEvent)
 			changeText(text, label.layout.toString());
 		else
@@ -667,6 +674,7 @@ public class TextraField extends Widget implements Disableable {
 		String oldText = text;
 		text = "";
 		label.layout.getLine(0).glyphs.clear();
+		label.layout.invalidate();
 		cursor = 0;
 		hasSelection = false;
 		paste(str, false);
@@ -693,12 +701,14 @@ public class TextraField extends Widget implements Disableable {
 
 	/** @return True if the text was changed. */
 	boolean changeText (int position, CharSequence inserting) {
-		Layout oldText = new Layout(label.layout);
+		snapshotLayout.set(label.layout);
 		if (insert(position, inserting)) return false;
 		ChangeEvent changeEvent = Pools.obtain(ChangeEvent.class);
 		boolean cancelled = fire(changeEvent);
 		if (cancelled) {
-			label.layout = oldText;
+			Layout changed = label.layout;
+			label.layout = snapshotLayout;
+			snapshotLayout = changed;
 		}
 		Pools.free(changeEvent);
 		return !cancelled;
@@ -48,6 +48,13 @@ public class TextraLabel extends Widget {
     public String storedText;
     public Styles.LabelStyle style;
 
+    private boolean retained, retainedUnsupported, retainedDirty = true;
+    private VertexCache retainedCache;
+    private float bakedX, bakedY, bakedRotation, bakedOriginX, bakedOriginY, bakedWidth, bakedHeight;
+    private int bakedColor, bakedAlign, bakedMetrics, bakedGlyphs;
+    private Font bakedFont;
+    private Layout bakedLayout;
+
     /**
      * Creates a TextraLabel that uses the default libGDX font (lsans-15 in the current version) with white color.
      */
@@ -252,8 +259,6 @@ public class TextraLabel extends Widget {
         final float sn = MathUtils.sinDeg(rot);
         final float cs = MathUtils.cosDeg(rot);
 
-        int bgc;
-        final int lines = layout.lines();
         float baseX = getX(), baseY = getY();
 
         float height = layout.getHeight();
@@ -314,12 +319,73 @@ public class TextraLabel extends Widget {
         if (layout.lines.isEmpty() || parentAlpha <= 0f) return;
 
         // we only change the shader or batch color if we actually are drawing something.
-        boolean resetShader = font.getDistanceField() != Font.DistanceFieldType.STANDARD && batch.getShader() != font.shader;
+        boolean resetShader = (font.getDistanceField() != Font.DistanceFieldType.STANDARD || font.isShaderEffects())
+                && batch.getShader() != font.shader;
         if (resetShader)
             font.enableShader(batch);
         batch.getColor().set(getColor()).a *= parentAlpha;
         batch.setColor(batch.getColor());
 
+        if (retained && !retainedUnsupported) {
+            if (retainedCache == null) retainedCache = new VertexCache();
+            final int colorBits = batch.getColor().toIntBits();
+            if (needsBake(rot, originX, originY, width, height, colorBits)) {
+                retainedCache.clear();
+                VertexCache.record(font, retainedCache);
+                try {
+                    drawLines(batch, baseX, baseY, rot, originX, originY, sn, cs);
+                } finally {
+                    VertexCache.record(font, null);
+                }
+                bakedX = getX();
+                bakedY = getY();
+                bakedRotation = rot;
+                bakedOriginX = originX;
+                bakedOriginY = originY;
+                bakedWidth = width;
+                bakedHeight = height;
+                bakedColor = colorBits;
+                bakedAlign = align;
+                bakedFont = font;
+                bakedMetrics = font.getMetricsVersion();
+                bakedLayout = layout;
+                bakedGlyphs = countGlyphs();
+                retainedDirty = false;
+                // A Font that overrides drawVertices() without calling super draws instead of recording, which can
+                // only be told apart from a Layout with nothing to draw if some glyph isn't whitespace.
+                if (retainedCache.isEmpty()) retainedUnsupported = hasVisibleGlyphs();
+                else retainedCache.draw(batch);
+            } else {
+                final float dx = getX() - bakedX, dy = getY() - bakedY;
+                if (dx != 0f || dy != 0f) {
+                    retainedCache.translate(dx, dy);
+                    bakedX += dx;
+                    bakedY += dy;
+                }
+                retainedCache.draw(batch);
+            }
+        } else {
+            Font.beginBulk();
+            try {
+                drawLines(batch, baseX, baseY, rot, originX, originY, sn, cs);
+            } finally {
+                Font.endBulk();
+            }
+        }
+
+        if (resetShader)
+            batch.setShader(null);
+    }
+
+    /**
+     * Draws every glyph in {@link #layout}, starting at the given base position. This is the part of
+     * {@link #draw(Batch, float)} that retained mode records.
+     */
+    private void drawLines(Batch batch, float baseX, float baseY, float rot, float originX, float originY,
+                           float sn, float cs) {
+        int bgc;
+        final int lines = layout.lines();
+
 //        baseX -= 0.5f * font.cellWidth;
 //
 //        baseX += cs * 0.5f * font.cellWidth;
@@ -405,7 +471,7 @@ public class TextraLabel extends Widget {
 
                 if (f.kerning != null) {
                     kern = kern << 16 | (int) ((glyph = glyphs.glyphs.get(i)) & 0xFFFF);
-                    float amt = f.kerning.get(kern, 0) * f.scaleX * ((glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f);
+                    float amt = f.getKerningTable().get(kern, 0) * f.scaleX * ((glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f);
                     xChange += cs * amt;
                     yChange += sn * amt;
                 } else {
@@ -419,9 +485,92 @@ public class TextraLabel extends Widget {
                 yChange += sn * single;
             }
         }
+    }
 
-        if (resetShader)
-            batch.setShader(null);
+    /**
+     * Returns true if the quads retained mode recorded can't be reused, either because {@link #invalidateRetained()}
+     * or {@link #invalidate()} was called, or because something that changes more than the position of those quads
+     * is different from when they were recorded. A change in position only needs a bake if integer positions are used
+     * and the position moved by a fractional amount.
+     */
+    private boolean needsBake(float rot, float originX, float originY, float width, float height, int colorBits) {
+        if (retainedDirty || retainedCache.isEmpty()) return true;
+        if (bakedRotation != rot || bakedOriginX != originX || bakedOriginY != originY || bakedWidth != width
+                || bakedHeight != height || bakedColor != colorBits || bakedAlign != align || bakedFont != font
+                || bakedLayout != layout || bakedMetrics != font.getMetricsVersion() || bakedGlyphs != countGlyphs())
+            return true;
+        if (font.integerPosition) {
+            final float dx = getX() - bakedX, dy = getY() - bakedY;
+            return dx != (int) dx || dy != (int) dy;
+        }
+        return false;
+    }
+
+    private boolean hasVisibleGlyphs() {
+        for (int i = 0, n = layout.lines(); i < n; i++) {
+            final Line line = layout.getLine(i);
+            for (int j = 0; j < line.glyphs.size; j++) {
+                if (!Character.isWhitespace((char) line.glyphs.get(j))) return true;
+            }
+        }
+        return false;
+    }
+
+    private int countGlyphs() {
+        int count = 0;
+        for (int i = 0, n = layout.lines(); i < n; i++) {
+            count += layout.getLine(i).glyphs.size;
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if this is in retained mode; see {@link #setRetained(boolean)}.
+     *
+     * @return true if this records its quads once and draws them again until something changes
+     */
+    public boolean isRetained() {
+        return retained;
+    }
+
+    /**
+     * Turns retained mode on or off; it is off by default. In retained mode, the first draw records every quad this
+     * would draw (including underline, strikethrough, and outline quads) into a float array, and later draws send that
+     * array to the Batch with one {@link Batch#draw(com.badlogic.gdx.graphics.Texture, float[], int, int)} call per
+     * texture, instead of calculating each glyph again. Moving this only shifts the recorded positions. The quads are
+     * recorded again when this is invalidated (as {@link #setText(String)} and {@link #setSize(float, float)} do),
+     * or when the rotation, origin, size, alignment, color, Font, or Font metrics change.
+     * <br>
+     * This is meant for labels whose text stays the same for many frames. If you change the glyphs in
+     * {@link #layout} directly without changing how many there are, call {@link #invalidateRetained()}. A Font that
+     * overrides {@link Font#drawVertices(Batch, com.badlogic.gdx.graphics.Texture, float[])} without calling the
+     * super method can't be recorded, so this quietly draws every frame with such a Font. This has no effect on a
+     * {@link TypingLabel}, which draws its glyphs differently every frame anyway.
+     *
+     * @param retained true to record quads and draw them again; false to calculate every quad on every draw
+     * @return this, for chaining
+     */
+    public TextraLabel setRetained(boolean retained) {
+        this.retained = retained;
+        retainedUnsupported = false;
+        retainedDirty = true;
+        if (!retained) retainedCache = null;
+        return this;
+    }
+
+    /**
+     * Makes the next draw in {@link #setRetained(boolean) retained mode} record its quads again. This is only needed
+     * after changing {@link #layout} directly.
+     */
+    public void invalidateRetained() {
+        retainedDirty = true;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        retainedDirty = true;
+        retainedUnsupported = false;
     }
 
     @Override
@@ -615,14 +764,7 @@ public class TextraLabel extends Widget {
      * @return the glyph, if it was found, or 16777215 (0xFFFFFF in hexadecimal) if the index was out of bounds
      */
     public long getGlyph(int index) {
-        for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = layout.getLine(i).glyphs;
-            if (index < glyphs.size)
-                return glyphs.get(index);
-            else
-                index -= glyphs.size;
-        }
-        return 0xFFFFFFL;
+        return layout.getGlyph(index);
     }
 
     /**
@@ -711,14 +853,9 @@ public class TextraLabel extends Widget {
      * @return the height of the Line containing the specified glyph
      */
     public float getLineHeight(int index) {
-        for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = layout.getLine(i).glyphs;
-            if (index < glyphs.size)
-                return layout.getLine(i).height;
-            else
-                index -= glyphs.size;
-        }
-        return font.cellHeight;
+        Line line = layout.getLineOfGlyph(index);
+        if (line == null) return font.cellHeight;
+        return line.height;
     }
 
 }
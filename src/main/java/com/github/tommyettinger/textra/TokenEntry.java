@@ -27,6 +27,12 @@ class TokenEntry implements Comparable<TokenEntry> {
     float floatValue;
     String stringValue;
     Effect effect;
+    /**
+     * The parameters {@link #effect} was produced with, or null if this doesn't start an effect; used by
+     * {@link TypingScript} to produce the effect again for another label. Effects that read an {@link EffectParams}
+     * only have this kept while a TypingScript is being compiled.
+     */
+    String[] params;
 
     TokenEntry(String token, TokenCategory category, int index, int endIndex, float floatValue, String stringValue) {
         this.token = token;
@@ -0,0 +1,670 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.ObjectMap;
+
+import java.util.Arrays;
+
+/**
+ * Finds <code>{TOKEN=params}</code> tokens and square-bracket markup for {@link Parser}, without regular expressions.
+ * Every method here takes time linear in the length of its text, and reuses its arrays between calls, so parsing a
+ * long page of dialog doesn't rebuild the whole text once per token. The results are the same as the regular
+ * expressions Parser used before this, including for odd inputs, such as markup nested inside other markup.
+ * <br>
+ * This has three parts. {@link #preprocess(String)} and {@link #stripMarkup(CharSequence)} handle square-bracket
+ * markup. {@link #tokenize(char[], int)} finds every token in some text and stores them in reusable arrays. The
+ * rewriting methods, {@link #load(CharSequence)}, {@link #find()}, {@link #skip()}, {@link #replace(String, int)},
+ * and {@link #remove()}, find tokens one at a time in a gap buffer and change them in place, re-scanning any text
+ * that gets inserted, as repeatedly calling {@code replaceFirst()} did. This isn't thread-safe, but Parser only uses it
+ * from the thread that lays out text.
+ */
+final class TokenScanner {
+    /**
+     * The token names this can find, in upper case, and what each one is.
+     */
+    private String[] names = new String[64];
+    private InternalToken[] internals = new InternalToken[64];
+    private TokenCategory[] categories = new TokenCategory[64];
+    private int nameCount;
+    /**
+     * An open-addressed hash table; each item is 1 more than an index into {@link #names}, or 0 if empty.
+     */
+    private int[] slots = new int[128];
+
+    /**
+     * Holds text being preprocessed or stripped.
+     */
+    private char[] chars = new char[256];
+    /**
+     * Used by {@link #preprocess(String)}: for each {@code '['}, which markup pass would replace it (0 if none), and
+     * where the replaced part and its content end.
+     */
+    private int[] levels = new int[256], ends = new int[256], contentStarts = new int[256], contentEnds = new int[256];
+    private int[] closeAt = new int[16], resumeAt = new int[16];
+    private final StringBuilder builder = new StringBuilder(256);
+
+    /**
+     * The tokens found by {@link #tokenize(char[], int)}: where each starts and ends, which name it has (an index
+     * that can be given to {@link #name(int)}), and where its parameters start and end (both -1 if it has none).
+     */
+    int[] tokenStarts = new int[16], tokenEnds = new int[16], tokenNames = new int[16],
+            paramStarts = new int[16], paramEnds = new int[16];
+    int tokenCount;
+
+    /**
+     * The gap buffer used while rewriting; chars before {@link #out} have been scanned, and chars from {@link #in}
+     * to the end of the array haven't.
+     */
+    private char[] gap = new char[256];
+    private int out, in;
+    /**
+     * The index of the last open curly brace before {@link #out} that has no curly braces after it, or -1.
+     */
+    private int lastOpen;
+    /**
+     * Describes the token {@link #find()} stopped at, which starts at {@link #in}.
+     */
+    private int foundEnd, foundName, foundParamStart, foundParamEnd;
+    /**
+     * Set by {@link #match(char[], int, int)}.
+     */
+    private int matchName, matchParamStart, matchParamEnd;
+
+    //// token names
+
+    /**
+     * Returns true if {@link #setTokenNames(ObjectMap, ObjectMap)} has been called.
+     */
+    boolean hasTokenNames() {
+        return nameCount > 0;
+    }
+
+    /**
+     * Replaces the token names this can find with every {@link InternalToken}, then the keys of {@code starts}, then
+     * the keys of {@code ends}. If a name is in more than one of those, the first one wins.
+     */
+    void setTokenNames(ObjectMap<String, ?> starts, ObjectMap<String, ?> ends) {
+        nameCount = 0;
+        int size = InternalToken.values().length + starts.size + ends.size;
+        int cap = Integer.highestOneBit(Math.max(size, 8)) << 2;
+        if (slots.length != cap) slots = new int[cap];
+        else Arrays.fill(slots, 0);
+        for (InternalToken token : InternalToken.values()) {
+            addName(token.name, token, token.category);
+        }
+        for (String name : starts.keys()) {
+            addName(name, null, TokenCategory.EFFECT_START);
+        }
+        for (String name : ends.keys()) {
+            addName(name, null, TokenCategory.EFFECT_END);
+        }
+    }
+
+    /**
+     * Adds one effect token name after {@link #setTokenNames(ObjectMap, ObjectMap)}, without rebuilding the others.
+     * This keeps the same precedence: an InternalToken name is never replaced, and a start name replaces an end name.
+     */
+    void addEffectName(String name, TokenCategory category) {
+        final int index = indexOf(name);
+        if (index >= 0) {
+            if (internals[index] == null && category == TokenCategory.EFFECT_START) categories[index] = category;
+            return;
+        }
+        if (nameCount + 1 << 2 > slots.length) {
+            slots = new int[slots.length << 1];
+            final int mask = slots.length - 1;
+            for (int n = 0; n < nameCount; n++) {
+                int i = hash(names[n], 0, names[n].length()) & mask;
+                while (slots[i] != 0) i = i + 1 & mask;
+                slots[i] = n + 1;
+            }
+        }
+        addName(name, null, category);
+    }
+
+    /**
+     * Removes one effect token name, if it is present with the given category, without rebuilding the others.
+     */
+    void removeEffectName(String name, TokenCategory category) {
+        final int index = indexOf(name);
+        if (index < 0 || internals[index] != null || categories[index] != category) return;
+        final int mask = slots.length - 1;
+        int i = slotOf(index);
+        slots[i] = 0;
+        // shift back any later names in the same run that could no longer be found past the hole
+        for (int j = i + 1 & mask, s; (s = slots[j]) != 0; j = j + 1 & mask) {
+            final int home = hash(names[s - 1], 0, names[s - 1].length()) & mask;
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                slots[i] = s;
+                slots[j] = 0;
+                i = j;
+            }
+        }
+        // fill the gap in the name arrays with the last name
+        final int last = --nameCount;
+        if (index != last) {
+            slots[slotOf(last)] = index + 1;
+            names[index] = names[last];
+            internals[index] = internals[last];
+            categories[index] = categories[last];
+        }
+        names[last] = null;
+        internals[last] = null;
+        categories[last] = null;
+    }
+
+    /**
+     * Gets the index in {@link #names} of {@code name}, ignoring case, or -1 if it isn't present.
+     */
+    private int indexOf(String name) {
+        final int mask = slots.length - 1;
+        for (int i = hash(name, 0, name.length()) & mask, s; (s = slots[i]) != 0; i = i + 1 & mask) {
+            if (names[s - 1].equalsIgnoreCase(name)) return s - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the position in {@link #slots} that refers to the name at {@code index}, which must be present.
+     */
+    private int slotOf(int index) {
+        final int mask = slots.length - 1;
+        int i = hash(names[index], 0, names[index].length()) & mask;
+        while (slots[i] != index + 1) i = i + 1 & mask;
+        return i;
+    }
+
+    private void addName(String name, InternalToken internal, TokenCategory category) {
+        final int mask = slots.length - 1;
+        int i = hash(name, 0, name.length()) & mask;
+        for (int s; (s = slots[i]) != 0; i = i + 1 & mask) {
+            if (names[s - 1].equalsIgnoreCase(name)) return;
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount << 1);
+            internals = Arrays.copyOf(internals, nameCount << 1);
+            categories = Arrays.copyOf(categories, nameCount << 1);
+        }
+        names[nameCount] = name.toUpperCase();
+        internals[nameCount] = internal;
+        categories[nameCount] = category;
+        slots[i] = ++nameCount;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = end - start;
+        for (int i = start; i < end; i++) {
+            h = h * 31 + Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return h ^ h >>> 15;
+    }
+
+    private static int hash(char[] text, int start, int end) {
+        int h = end - start;
+        for (int i = start; i < end; i++) {
+            h = h * 31 + Character.toLowerCase(Character.toUpperCase(text[i]));
+        }
+        return h ^ h >>> 15;
+    }
+
+    /**
+     * Looks up the token name from {@code start} to {@code end} in {@code text}, ignoring case the same way
+     * {@link String#equalsIgnoreCase(String)} does.
+     * @return an index that can be given to {@link #name(int)}, or -1 if there is no such token
+     */
+    int lookup(char[] text, int start, int end) {
+        final int mask = slots.length - 1, len = end - start;
+        for (int i = hash(text, start, end) & mask, s; (s = slots[i]) != 0; i = i + 1 & mask) {
+            final String name = names[s - 1];
+            if (name.length() != len) continue;
+            int j = 0;
+            for (; j < len; j++) {
+                char a = Character.toUpperCase(text[start + j]), b = Character.toUpperCase(name.charAt(j));
+                if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) break;
+            }
+            if (j == len) return s - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the upper-case name of a token, given an index from {@link #lookup(char[], int, int)} or
+     * {@link #tokenNames}.
+     */
+    String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Gets the InternalToken with the given name index, or null if it is the name of an effect.
+     */
+    InternalToken internal(int index) {
+        return internals[index];
+    }
+
+    /**
+     * Gets the TokenCategory of the token with the given name index.
+     */
+    TokenCategory category(int index) {
+        return categories[index];
+    }
+
+    /**
+     * Checks for a token starting at {@code start}, which should be an open curly brace, and ending before
+     * {@code end}. A token is a known name between curly braces, optionally followed by {@code '='} and one or more
+     * chars that aren't curly braces, such as <code>{WAVE}</code> or <code>{SPEED=0.5}</code>.
+     * @return the index just after the token, or -1 if there is no token at start
+     */
+    private int match(char[] text, int start, int end) {
+        int k = start + 1;
+        char c = 0;
+        while (k < end && (c = text[k]) != '=' && c != '}' && c != '{') k++;
+        if (k == end || c == '{') return -1;
+        if ((matchName = lookup(text, start + 1, k)) < 0) return -1;
+        if (c == '}') {
+            matchParamStart = matchParamEnd = -1;
+            return k + 1;
+        }
+        int m = k + 1;
+        while (m < end && (c = text[m]) != '{' && c != '}') m++;
+        if (m == k + 1 || m == end || c == '{') return -1;
+        matchParamStart = k + 1;
+        matchParamEnd = m;
+        return m + 1;
+    }
+
+    /**
+     * Finds every token in {@code text} before {@code length}, storing them in {@link #tokenStarts} and the other
+     * token arrays.
+     * @return how many tokens were found, which is also stored in {@link #tokenCount}
+     */
+    int tokenize(char[] text, int length) {
+        tokenCount = 0;
+        for (int i = 0; i < length; ) {
+            final int end;
+            if (text[i] == '{' && (end = match(text, i, length)) >= 0) {
+                if (tokenCount == tokenStarts.length) {
+                    final int cap = tokenCount << 1;
+                    tokenStarts = Arrays.copyOf(tokenStarts, cap);
+                    tokenEnds = Arrays.copyOf(tokenEnds, cap);
+                    tokenNames = Arrays.copyOf(tokenNames, cap);
+                    paramStarts = Arrays.copyOf(paramStarts, cap);
+                    paramEnds = Arrays.copyOf(paramEnds, cap);
+                }
+                tokenStarts[tokenCount] = i;
+                tokenEnds[tokenCount] = end;
+                tokenNames[tokenCount] = matchName;
+                paramStarts[tokenCount] = matchParamStart;
+                paramEnds[tokenCount] = matchParamEnd;
+                tokenCount++;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return tokenCount;
+    }
+
+    //// square-bracket markup
+
+    private char[] ensureChars(int length) {
+        if (chars.length < length) chars = new char[Math.max(length, chars.length << 1)];
+        return chars;
+    }
+
+    /**
+     * True if a regular expression {@code $} would match at {@code i}: at the end of the text, or just before a line
+     * terminator that ends the text.
+     */
+    private static boolean endsAt(char[] text, int i, int n) {
+        return i == n || (i == n - 1 && (text[i] == '\n' || text[i] == '\r'))
+                || (i == n - 2 && text[i] == '\r' && text[i + 1] == '\n');
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+    }
+
+    private static boolean isLetterOrNumber(char c) {
+        if (Character.isLetter(c)) return true;
+        final int type = Character.getType(c);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+                || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * Returns true if {@code str} is 3 to 8 hex digits, with nothing else.
+     */
+    static boolean isHexColor(String str) {
+        final int n = str.length();
+        if (n < 3 || n > 8) return false;
+        for (int i = 0; i < n; i++) {
+            if (!isHexDigit(str.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Changes square-bracket markup in {@code text} to curly-brace tags, as {@link Parser#preprocess(String)} is
+     * documented to do. This behaves exactly like replacing, in order, every {@code [ ]} with <code>{RESET}</code>,
+     * then every {@code []} with <code>{UNDO}</code>, then every color (such as {@code [#FF0000]} or {@code [RED]})
+     * with <code>{COLOR=...}</code>, then every other markup (except {@code [+image]}) with <code>{STYLE=...}</code>.
+     * In each of those steps, a {@code '['} after another {@code '['} is escaped, and markup can be left open at the
+     * end of the text. Because each step runs on the result of the step before it, markup can contain markup that an
+     * earlier step replaced; this works out which step replaces each {@code '['} from the end of the text to the start,
+     * then writes all the replacements at once.
+     */
+    String preprocess(String text) {
+        final int n = text.length();
+        final char[] t = ensureChars(n);
+        text.getChars(0, n, t, 0);
+        if (levels.length < n) {
+            final int cap = Math.max(n, levels.length << 1);
+            levels = new int[cap];
+            ends = new int[cap];
+            contentStarts = new int[cap];
+            contentEnds = new int[cap];
+        }
+        for (int q = n - 1; q >= 0; q--) {
+            if (t[q] == '[') levels[q] = (q == 0 || t[q - 1] != '[') ? classify(t, q, n) : 0;
+        }
+        final StringBuilder sb = builder;
+        sb.setLength(0);
+        int depth = 0;
+        for (int i = 0; ; ) {
+            while (depth > 0 && i == closeAt[depth - 1]) {
+                sb.append('}');
+                i = resumeAt[--depth];
+            }
+            if (i >= n) break;
+            final char c = t[i];
+            final int level = c == '[' ? levels[i] : 0;
+            if (level == 0) {
+                sb.append(c);
+                i++;
+            } else if (level == 1) {
+                sb.append("{RESET}");
+                i = ends[i];
+            } else if (level == 2) {
+                sb.append("{UNDO}");
+                i = ends[i];
+            } else {
+                sb.append(level == 3 ? "{COLOR=" : "{STYLE=");
+                if (depth == closeAt.length) {
+                    closeAt = Arrays.copyOf(closeAt, depth << 1);
+                    resumeAt = Arrays.copyOf(resumeAt, depth << 1);
+                }
+                closeAt[depth] = contentEnds[i];
+                resumeAt[depth++] = ends[i];
+                i = contentStarts[i];
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Works out which markup step would replace the unescaped {@code '['} at {@code q}, and stores where its
+     * replacement ends. Any {@code '['} after q must already have been classified. Returns 1 for {@code [ ]}, 2 for
+     * {@code []}, 3 for color markup, 4 for other markup, or 0 if q isn't replaced.
+     */
+    private int classify(char[] t, int q, int n) {
+        final int a = q + 1;
+        if (a < n && t[a] == ' ') {
+            if (a + 1 < n && t[a + 1] == ']') {
+                ends[q] = a + 2;
+                return 1;
+            }
+            if (endsAt(t, a + 1, n)) {
+                ends[q] = a + 1;
+                return 1;
+            }
+        }
+        if (a < n && t[a] == ']') {
+            ends[q] = a + 1;
+            return 2;
+        }
+        if (endsAt(t, a, n)) {
+            ends[q] = a;
+            return 2;
+        }
+        // a < n from here on
+        if (t[a] == '#') {
+            int h = a + 1;
+            while (h < n && h - a <= 8 && isHexDigit(t[h])) h++;
+            if (h - a > 3) {
+                if (h < n && t[h] == ']') {
+                    contentStarts[q] = a + 1;
+                    contentEnds[q] = h;
+                    ends[q] = h + 1;
+                    return 3;
+                }
+                if (endsAt(t, h, n)) {
+                    contentStarts[q] = a + 1;
+                    contentEnds[q] = ends[q] = h;
+                    return 3;
+                }
+            }
+        }
+        final char first = t[a];
+        if (first == '[' || first == '+') return 0;
+        final int colorStart = first == '|' ? a + 1 : a;
+        boolean color = colorStart < n && isLetterOrNumber(t[colorStart]);
+        int k = a + 1;
+        while (k < n) {
+            final char c = t[k];
+            if (c == ']') break;
+            if (c == '[') {
+                // earlier steps have already replaced markup with a lower level, so it can be inside this.
+                final int inner = levels[k];
+                if (inner == 0 || inner == 4) return 0;
+                if (inner == 3) color = false;
+                k = ends[k];
+            } else {
+                k++;
+            }
+        }
+        contentEnds[q] = k;
+        ends[q] = k < n ? k + 1 : n;
+        if (color) {
+            contentStarts[q] = colorStart;
+            return 3;
+        }
+        contentStarts[q] = a;
+        return 4;
+    }
+
+    /**
+     * Copies {@code text} into a reusable array, without any square-bracket markup: every unescaped {@code '['},
+     * the chars after it that aren't square brackets, and the {@code ']'} after those (if it is there) are removed.
+     * @return the array holding the stripped text; its length is {@link #strippedLength()}
+     */
+    char[] stripMarkup(CharSequence text) {
+        final int n = text.length();
+        final char[] t = ensureChars(n);
+        int o = 0;
+        for (int i = 0; i < n; ) {
+            final char c = text.charAt(i);
+            if (c == '[' && (i == 0 || text.charAt(i - 1) != '[')) {
+                int k = i + 1;
+                char d = 0;
+                while (k < n && (d = text.charAt(k)) != '[' && d != ']') k++;
+                if (k == n || d == ']') {
+                    i = Math.min(k + 1, n);
+                    continue;
+                }
+            }
+            t[o++] = c;
+            i++;
+        }
+        strippedLength = o;
+        return t;
+    }
+
+    private int strippedLength;
+
+    /**
+     * Gets how many chars the last call to {@link #stripMarkup(CharSequence)} produced.
+     */
+    int strippedLength() {
+        return strippedLength;
+    }
+
+    //// rewriting
+
+    /**
+     * Starts rewriting {@code text}, which is copied. Call {@link #find()} to get to each token.
+     */
+    TokenScanner load(CharSequence text) {
+        final int n = text.length();
+        if (gap.length < n + 16) gap = new char[Math.max(n + 16, gap.length << 1)];
+        out = 0;
+        in = gap.length - n;
+        lastOpen = -1;
+        for (int i = 0; i < n; i++) {
+            gap[in + i] = text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Moves forward to the next token, which starts at {@link #position()}.
+     * @return true if a token was found, or false if the end of the text was reached
+     */
+    boolean find() {
+        final char[] g = gap;
+        final int end = g.length;
+        while (in < end) {
+            final char c = g[in];
+            if (c == '{' && (foundEnd = match(g, in, end)) >= 0) {
+                foundName = matchName;
+                foundParamStart = matchParamStart;
+                foundParamEnd = matchParamEnd;
+                return true;
+            }
+            if (c == '{') lastOpen = out;
+            else if (c == '}') lastOpen = -1;
+            g[out++] = c;
+            in++;
+        }
+        return false;
+    }
+
+    /**
+     * Gets where the token found by {@link #find()} starts, counting every char before it as it is now.
+     */
+    int position() {
+        return out;
+    }
+
+    /**
+     * Returns true if the token found by {@link #find()} is inside square-bracket markup, such as the token in
+     * <code>[{VAR=color}]</code>. Two open brackets in a row are an escaped bracket, not markup.
+     */
+    boolean insideBrackets() {
+        final char[] g = gap;
+        for (int i = out - 1; i >= 0; i--) {
+            final char c = g[i];
+            if (c == ']' || c == '\n') return false;
+            if (c == '[') {
+                int run = 1;
+                while (i - run >= 0 && g[i - run] == '[') run++;
+                return (run & 1) == 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the name index of the token found by {@link #find()}.
+     */
+    int foundName() {
+        return foundName;
+    }
+
+    /**
+     * Gets the parameters of the token found by {@link #find()}, or null if it has none.
+     */
+    String foundParams() {
+        return foundParamStart < 0 ? null : new String(gap, foundParamStart, foundParamEnd - foundParamStart);
+    }
+
+    /**
+     * Leaves the token found by {@link #find()} in place and moves past it.
+     */
+    void skip() {
+        final int len = foundEnd - in;
+        System.arraycopy(gap, in, gap, out, len);
+        out += len;
+        in = foundEnd;
+        lastOpen = -1;
+    }
+
+    /**
+     * Removes the token found by {@link #find()}, as if by {@link #replace(String, int)} with an empty replacement
+     * and a cursor of 0.
+     */
+    void remove() {
+        replace("", 0);
+    }
+
+    /**
+     * Replaces the token found by {@link #find()} with {@code replacement}, which will be scanned for tokens next.
+     * Only tokens that start at or after {@code cursor} are found, but if the replacement completes a token that
+     * started before it (at or after cursor), that token is the one found next.
+     */
+    void replace(String replacement, int cursor) {
+        in = foundEnd;
+        final int len = replacement.length();
+        if (in - out < len) {
+            final int rest = gap.length - in;
+            final char[] bigger = new char[Math.max(gap.length << 1, out + rest + len + 16)];
+            System.arraycopy(gap, 0, bigger, 0, out);
+            System.arraycopy(gap, in, bigger, bigger.length - rest, rest);
+            in = bigger.length - rest;
+            gap = bigger;
+        }
+        in -= len;
+        replacement.getChars(0, len, gap, in);
+        final int open = lastOpen;
+        if (open >= 0 && open >= cursor) {
+            // there are no curly braces after open, so it may now start a token that runs into the replacement.
+            final int back = out - open;
+            in -= back;
+            System.arraycopy(gap, open, gap, in, back);
+            out = open;
+            lastOpen = -1;
+            for (int i = open - 1; i >= cursor; i--) {
+                final char c = gap[i];
+                if (c == '}') break;
+                if (c == '{') {
+                    lastOpen = i;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the rewritten text, including anything not scanned yet, into {@code sb}, replacing its contents.
+     */
+    StringBuilder writeTo(StringBuilder sb) {
+        sb.setLength(0);
+        sb.append(gap, 0, out).append(gap, in, gap.length - in);
+        return sb;
+    }
+}
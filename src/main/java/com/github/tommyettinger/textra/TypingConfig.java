@@ -117,7 +117,8 @@ public class TypingConfig {
     static final OrderedMap<String, Effect.EffectBuilder> EFFECT_END_TOKENS = new OrderedMap<>();
 
     /**
-     * Whether effect tokens are dirty and need to be recalculated.
+     * Whether effect tokens changed since the replacement for <code>{RESET}</code> was last built. Parser keeps its
+     * token names up-to-date as each effect is registered or unregistered, so it doesn't need this for those.
      */
     static boolean dirtyEffectMaps = true;
 
@@ -132,6 +133,24 @@ public class TypingConfig {
         final Effect.EffectBuilder b = (label, params) -> builder.produce(label, params).assignTokenName(name);
         EFFECT_START_TOKENS.put(name, b);
         EFFECT_END_TOKENS.put("END"+name, b);
+        Parser.effectRegistered(name);
+        dirtyEffectMaps = true;
+    }
+
+    /**
+     * Registers a new effect to TypingLabel that reads its parameters from a reusable {@link EffectParams} view, so
+     * parsing its token doesn't allocate a String array or any Strings for numeric, boolean, or hex color parameters.
+     * Code that looks up the builder and only has a String array can still call it; the array is viewed as params.
+     *
+     * @param startTokenName Name of the token that starts the effect, such as WAVE.
+     * @param builder        Typically a method reference to a constructor that takes a TypingLabel and EffectParams.
+     */
+    public static void registerParamsEffect(String startTokenName, Effect.EffectParamsBuilder builder) {
+        final String name = startTokenName.toUpperCase();
+        final NamedParamsBuilder b = new NamedParamsBuilder(name, builder);
+        EFFECT_START_TOKENS.put(name, b);
+        EFFECT_END_TOKENS.put("END"+name, b);
+        Parser.effectRegistered(name);
         dirtyEffectMaps = true;
     }
 
@@ -144,9 +163,35 @@ public class TypingConfig {
         String name = startTokenName.toUpperCase();
         EFFECT_START_TOKENS.remove(name);
         EFFECT_END_TOKENS.remove("END"+name);
+        Parser.effectUnregistered(name);
         dirtyEffectMaps = true;
     }
 
+    /**
+     * Stored in the effect token maps for an effect registered with
+     * {@link #registerParamsEffect(String, Effect.EffectParamsBuilder)}; Parser checks for this and passes its reused
+     * EffectParams directly. Internal use only.
+     */
+    static final class NamedParamsBuilder implements Effect.EffectBuilder, Effect.EffectParamsBuilder {
+        final String name;
+        final Effect.EffectParamsBuilder builder;
+
+        NamedParamsBuilder(String name, Effect.EffectParamsBuilder builder) {
+            this.name = name;
+            this.builder = builder;
+        }
+
+        @Override
+        public Effect produce(TypingLabel label, String[] params) {
+            return produce(label, new EffectParams().set(params));
+        }
+
+        @Override
+        public Effect produce(TypingLabel label, EffectParams params) {
+            return builder.produce(label, params).assignTokenName(name);
+        }
+    }
+
     static {
         // Generate default char intervals
         INTERVAL_MULTIPLIERS_BY_CHAR.put(' ', 0.0f);
@@ -160,14 +205,14 @@ public class TypingConfig {
         // Register default tokens
         registerEffect("EASE", EaseEffect::new);
         registerEffect("HANG", HangEffect::new);
-        registerEffect("JUMP", JumpEffect::new);
-        registerEffect("SHAKE", ShakeEffect::new);
+        registerParamsEffect("JUMP", JumpEffect::new);
+        registerParamsEffect("SHAKE", ShakeEffect::new);
         registerEffect("SICK", SickEffect::new);
         registerEffect("SLIDE", SlideEffect::new);
-        registerEffect("WAVE", WaveEffect::new);
+        registerParamsEffect("WAVE", WaveEffect::new);
         registerEffect("WIND", WindEffect::new);
-        registerEffect("RAINBOW", RainbowEffect::new);
-        registerEffect("GRADIENT", GradientEffect::new);
+        registerParamsEffect("RAINBOW", RainbowEffect::new);
+        registerParamsEffect("GRADIENT", GradientEffect::new);
         registerEffect("FADE", FadeEffect::new);
         registerEffect("BLINK", BlinkEffect::new);
         registerEffect("JOLT", JoltEffect::new);
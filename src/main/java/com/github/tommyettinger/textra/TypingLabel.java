@@ -52,6 +52,11 @@ public class TypingLabel extends TextraLabel {
     // Collections
     private final ObjectMap<String, String> variables = new ObjectMap<>();
     final Array<TokenEntry> tokenEntries = new Array<>();
+    /**
+     * Where each variable's value was placed by the last parse, so changing a variable can replace only its value.
+     */
+    final Array<VariableSpan> variableSpans = new Array<>();
+    private long[] spliceBuffer = new long[16];
 
     // Config
     private final Color clearColor = new Color(TypingConfig.DEFAULT_CLEAR_COLOR);
@@ -59,6 +64,11 @@ public class TypingLabel extends TextraLabel {
 
     // Internal state
     private final StringBuilder originalText = new StringBuilder();
+    /**
+     * True if {@link #originalText} was already normalized by {@link Parser#normalize(String)}, so
+     * {@link #parseTokens()} doesn't need to preprocess it again.
+     */
+    private boolean originalTextNormalized = false;
     private final StringBuilder intermediateText = new StringBuilder();
     protected final Layout workingLayout = new Layout();
     /**
@@ -131,6 +141,16 @@ public class TypingLabel extends TextraLabel {
     private boolean ignoringEffects = false;
     private String defaultToken = "";
 
+    private boolean gpuEffects = false, gpuActive = false, gpuUnsupported = false, gpuDirty = true;
+    private float gpuTime;
+    private EffectMesh effectMesh;
+    private VertexCache gpuCache;
+    private final FloatArray gpuMotion = new FloatArray(), gpuHue = new FloatArray(), gpuBody = new FloatArray();
+    private final float[] gpuParams = new float[4];
+    private float gpuX, gpuY, gpuRotation, gpuOriginX, gpuOriginY, gpuWidth, gpuHeight;
+    private int gpuColor, gpuAlign, gpuMetrics, gpuGlyphs, gpuModifications, gpuEffectsKey;
+    private Font gpuFont;
+
     ////////////////////////////
     /// --- Constructors --- ///
     ////////////////////////////
@@ -236,16 +256,7 @@ public class TypingLabel extends TextraLabel {
     public void setText(String newText, boolean modifyOriginalText, boolean restart) {
         final boolean hasEnded = this.hasEnded();
         newText = Parser.handleBracketMinusMarkup(newText);
-        font.markup(newText, layout.clear());
-        if (wrap) {
-            workingLayout.setTargetWidth(getWidth());
-            font.markup(newText, workingLayout.clear());
-        } else {
-            workingLayout.setTargetWidth(0f);
-            font.markup(newText, workingLayout.clear());
-            setWidth(workingLayout.getWidth() + (style != null && style.background != null ?
-                    style.background.getLeftWidth() + style.background.getRightWidth() : 0.0f));
-        }
+        layoutText(newText, null);
         if (modifyOriginalText) saveOriginalText(newText);
         if (restart) {
             this.restart();
@@ -255,6 +266,23 @@ public class TypingLabel extends TextraLabel {
         }
     }
 
+    /**
+     * Marks up {@code newText} into both {@link #layout} and {@link #workingLayout}, and resizes this if it doesn't wrap.
+     * If {@code script} is non-null and was compiled with the same Font and Layout settings, its glyphs are copied
+     * instead of marking up newText again.
+     */
+    private void layoutText(String newText, TypingScript script) {
+        if (script == null || !script.layout.restore(layout))
+            font.markup(newText, layout.clear());
+        workingLayout.setTargetWidth(wrap ? getWidth() : 0f);
+        if (script == null || !script.workingLayout.restore(workingLayout))
+            font.markup(newText, workingLayout.clear());
+        if (!wrap) {
+            setWidth(workingLayout.getWidth() + (style != null && style.background != null ?
+                    style.background.getLeftWidth() + style.background.getRightWidth() : 0.0f));
+        }
+    }
+
     /**
      * Similar to {@link Layout#toString()}, but returns the original text with all the tokens unchanged.
      */
@@ -270,6 +298,7 @@ public class TypingLabel extends TextraLabel {
         if (text != originalText) {
             originalText.setLength(0);
             originalText.append(text);
+            originalTextNormalized = false;
         }
 //        originalText.trimToSize();
     }
@@ -336,7 +365,10 @@ public class TypingLabel extends TextraLabel {
         boolean actualEnd = ended;
         ended = false;
 //        activeEffects.clear();
-        this.setText(Parser.preprocess("{NORMAL}" + getDefaultToken() + originalText), false, false);
+        if (originalTextNormalized)
+            this.setText(Parser.preprocess("{NORMAL}" + getDefaultToken()) + originalText, false, false);
+        else
+            this.setText(Parser.preprocess("{NORMAL}" + getDefaultToken() + originalText), false, false);
         Parser.parseTokens(this);
         ended = actualEnd;
 //        setSize(workingLayout.getWidth(), workingLayout.getHeight());
@@ -445,14 +477,74 @@ public class TypingLabel extends TextraLabel {
      * very buggy) behavior for code using this library.
      */
     public void restart(CharSequence newText) {
+        resetProgress();
+
+        // Set new text
+        invalidate();
+        saveOriginalText(newText);
+
+        // Parse tokens
+        parseTokens();
+    }
+
+    /**
+     * Like {@link #restart(CharSequence)}, but for text that was already normalized by {@link Parser#normalize(String)},
+     * such as text written by the MarkupValidator tool. The text won't be preprocessed again when tokens are parsed,
+     * including by later calls to {@link #restart()}, until other text is set.
+     *
+     * @param normalizedText text returned by {@link Parser#normalize(String)}
+     */
+    public void restartNormalized(CharSequence normalizedText) {
+        resetProgress();
+
+        // Set new text
+        invalidate();
+        saveOriginalText(normalizedText);
+        originalTextNormalized = true;
+
+        // Parse tokens
+        parseTokens();
+    }
+
+    /**
+     * Restarts this label with a {@link TypingScript} that was already compiled, and starts the char progression right
+     * away. This does the same thing as {@link #restart(CharSequence)} with the script's
+     * {@link TypingScript#getOriginalText() original text}, but doesn't need to parse any tokens or look for any
+     * variables; if this label has the same Font, width, and wrap setting as the label the script was compiled with,
+     * this doesn't even need to mark up the text. The same script can be given to any number of labels, any number of
+     * times. The original text is still saved, so if variables or the default token change later, this parses the
+     * tokens again just like it would have without a script.
+     *
+     * @param script a TypingScript, as produced by {@link TypingScript#compile(TypingLabel, CharSequence)}
+     */
+    public void restart(TypingScript script) {
+        resetProgress();
+
+        invalidate();
+        saveOriginalText(script.originalText);
+
+        parsed = true;
+        boolean actualEnd = ended;
+        ended = false;
+        intermediateText.setLength(0);
+        intermediateText.append(script.text);
+        layoutText(script.text, script);
+        script.addTokenEntries(this);
+        ended = actualEnd;
+        refreshVariable(null);
+    }
+
+    /**
+     * Clears any progress through the current text and any effects, so this can be restarted.
+     */
+    private void resetProgress() {
         workingLayout.atLimit = false;
 
         // Reset cache collections
+        workingLayout.truncateLines(1);
         Line first = workingLayout.lines.first();
-        first.glyphs.clear();
+        first.invalidate().glyphs.clear();
         first.width = first.height = 0;
-        workingLayout.lines.clear();
-        workingLayout.lines.add(first);
         offsets.clear();
         sizing.clear();
         rotations.clear();
@@ -470,13 +562,6 @@ public class TypingLabel extends TextraLabel {
         skipping = false;
         ignoringEvents = false;
         ignoringEffects = false;
-
-        // Set new text
-        invalidate();
-        saveOriginalText(newText);
-
-        // Parse tokens
-        parseTokens();
     }
 
     /**
@@ -497,6 +582,8 @@ public class TypingLabel extends TextraLabel {
             String old = variables.put(var.toUpperCase(), value);
             if (value.contains("[") || value.contains("{") || (old != null && (old.contains("[") || old.contains("{")))) {
                 parsed = false;
+            } else {
+                refreshVariable(var.toUpperCase());
             }
         }
     }
@@ -506,8 +593,10 @@ public class TypingLabel extends TextraLabel {
      * @param var the String name of a variable to remove
      */
     public void removeVariable(String var) {
-        if(var != null)
+        if(var != null) {
             variables.remove(var.toUpperCase());
+            refreshVariable(var.toUpperCase());
+        }
     }
 
     /**
@@ -521,6 +610,7 @@ public class TypingLabel extends TextraLabel {
                 this.variables.put(entry.key.toUpperCase(), entry.value);
             }
         }
+        refreshVariable(null);
     }
 
     /**
@@ -541,6 +631,7 @@ public class TypingLabel extends TextraLabel {
                 }
             }
         }
+        refreshVariable(null);
     }
 
     /**
@@ -548,6 +639,168 @@ public class TypingLabel extends TextraLabel {
      */
     public void clearVariables() {
         this.variables.clear();
+        refreshVariable(null);
+    }
+
+    /**
+     * Updates the text to match the current value of every variable it uses. Changing this label's variables with
+     * methods like {@link #setVariable(String, String)} already does this, so this is only needed after changing
+     * {@link TypingConfig#GLOBAL_VARS} or what the {@link TypingListener} returns for a variable.
+     * <br>
+     * Values without markup, tokens, or line breaks are replaced in place, only re-wrapping the paragraph they are in,
+     * even while the text is being typed. Other changes make this label parse all of its tokens again on the next
+     * {@link #act(float)}.
+     */
+    public void refreshVariables() {
+        refreshVariable(null);
+    }
+
+    /**
+     * Replaces the value of each variable named {@code name} (in upper case), or of every variable if name is null,
+     * wherever its current value differs from the value that was placed. If any value can't be replaced in place, this
+     * stops and marks this label to parse all of its tokens again.
+     */
+    private void refreshVariable(String name) {
+        if (!parsed) return;
+        for (int i = 0; i < variableSpans.size; i++) {
+            VariableSpan span = variableSpans.get(i);
+            if (name != null && !name.equals(span.name)) continue;
+            String value = Parser.getVariableValue(this, span.param);
+            if (value.equals(span.value)) continue;
+            if (!spliceVariable(span, value)) {
+                parsed = false;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces the glyphs of one variable's value with the glyphs of {@code value}, then moves every token, variable,
+     * effect, and the typing progress after it to match. Returns false without changing anything if this can't be
+     * sure where the old value is, or if either value has markup, tokens, or line breaks.
+     */
+    private boolean spliceVariable(VariableSpan span, String value) {
+        final String old = span.value;
+        final int oldLen = old.length(), newLen = value.length();
+        if (span.rawIndex < 0 || oldLen == 0 || !VariableSpan.isPlain(value)
+                || !holdsValue(layout, span.glyphIndex, old) || !holdsValue(workingLayout, span.glyphIndex, old)
+                || span.textIndex + oldLen > intermediateText.length()
+                || intermediateText.indexOf(old, span.textIndex) != span.textIndex)
+            return false;
+
+        spliceGlyphs(layout, span.glyphIndex, oldLen, value);
+        spliceGlyphs(workingLayout, span.glyphIndex, oldLen, value);
+        intermediateText.replace(span.textIndex, span.textIndex + oldLen, value);
+        span.value = value;
+        if (newLen != oldLen) shiftAfterSplice(span, oldLen, newLen);
+        if (!wrap) {
+            setWidth(workingLayout.getWidth() + (style != null && style.background != null ?
+                    style.background.getLeftWidth() + style.background.getRightWidth() : 0.0f));
+        }
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Moves every token, variable, effect, and the typing progress after {@code span} by the difference between
+     * {@code newLen} and {@code oldLen}, after {@link #spliceVariable(VariableSpan, String)} changed its length.
+     */
+    private void shiftAfterSplice(VariableSpan span, int oldLen, int newLen) {
+        final int delta = newLen - oldLen;
+        final int rawEnd = span.rawIndex + oldLen, glyphEnd = span.glyphIndex + oldLen, textEnd = span.textIndex + oldLen;
+        for (int i = 0; i < tokenEntries.size; i++) {
+            TokenEntry entry = tokenEntries.get(i);
+            if (entry.index >= rawEnd) {
+                entry.index += delta;
+                entry.endIndex += delta;
+            }
+        }
+        for (int i = 0; i < variableSpans.size; i++) {
+            VariableSpan other = variableSpans.get(i);
+            if (other.rawIndex >= rawEnd) {
+                other.rawIndex += delta;
+                other.glyphIndex += delta;
+            }
+            if (other.textIndex >= textEnd) other.textIndex += delta;
+        }
+        // An effect that ends right after the variable has its (inclusive) end on the variable's last glyph, and it
+        // should still cover the whole value; that can't be told apart from ending before an empty value.
+        final int lastGlyph = oldLen > 0 ? glyphEnd - 1 : glyphEnd;
+        for (int i = 0; i < activeEffects.size; i++) {
+            Effect effect = activeEffects.get(i);
+            if (effect.indexStart >= glyphEnd) effect.indexStart += delta;
+            if (effect.indexEnd >= lastGlyph) effect.indexEnd += delta;
+        }
+        if (rawCharIndex >= rawEnd) {
+            rawCharIndex += delta;
+            glyphCharIndex += delta;
+        } else if (rawCharIndex >= span.rawIndex + newLen) {
+            // the value got shorter than what was already typed of it
+            final int back = rawCharIndex - (span.rawIndex + newLen - 1);
+            rawCharIndex -= back;
+            glyphCharIndex -= back;
+        }
+    }
+
+    /**
+     * Returns true if the glyphs in {@code target} starting at glyph index {@code start} have the chars of
+     * {@code value}, and target wasn't cut short by its max lines.
+     */
+    private static boolean holdsValue(Layout target, int start, String value) {
+        if (target.atLimit || start < 0) return false;
+        final int n = value.length();
+        int i = 0;
+        for (int ln = 0, lines = target.lines(); ln < lines && i < n; ln++) {
+            final LongArray glyphs = target.getLine(ln).glyphs;
+            if (start >= glyphs.size) {
+                start -= glyphs.size;
+                continue;
+            }
+            for (; start < glyphs.size && i < n; start++, i++) {
+                if ((char) glyphs.get(start) != value.charAt(i)) return false;
+            }
+            start = 0;
+        }
+        return i == n;
+    }
+
+    /**
+     * Removes {@code oldLen} glyphs from {@code target} starting at glyph index {@code start}, which may be spread
+     * over more than one line, and inserts the chars of {@code value} there with the same color and style as the
+     * glyphs they replace. Then this wraps target again, which only measures paragraphs that changed, or just measures
+     * it if it doesn't wrap. {@link #holdsValue(Layout, int, String)} must have returned true for the same arguments.
+     */
+    private void spliceGlyphs(Layout target, int start, int oldLen, String value) {
+        if (spliceBuffer.length < oldLen) spliceBuffer = new long[Math.max(oldLen, spliceBuffer.length << 1)];
+        final long[] old = spliceBuffer;
+        int ln = 0;
+        LongArray glyphs = target.getLine(0).glyphs;
+        while (start >= glyphs.size) {
+            start -= glyphs.size;
+            glyphs = target.getLine(++ln).glyphs;
+        }
+        final LongArray first = glyphs;
+        // remove the old glyphs, remembering them for their colors and styles
+        for (int removed = 0, from = start; removed < oldLen; from = 0, glyphs = target.getLine(++ln).glyphs) {
+            final int count = Math.min(glyphs.size - from, oldLen - removed);
+            final long[] items = glyphs.items;
+            System.arraycopy(items, from, old, removed, count);
+            System.arraycopy(items, from + count, items, from, glyphs.size - from - count);
+            glyphs.size -= count;
+            removed += count;
+            if (removed == oldLen) break;
+        }
+        // insert the new glyphs where the old ones started
+        final int newLen = value.length(), tail = first.size - start;
+        final long[] items = first.ensureCapacity(newLen);
+        System.arraycopy(items, start, items, start + newLen, tail);
+        for (int i = 0; i < newLen; i++) {
+            items[start + i] = (old[Math.min(i, oldLen - 1)] & 0xFFFFFFFFFFFF0000L) | value.charAt(i);
+        }
+        first.size += newLen;
+        target.invalidate();
+        if (target.getTargetWidth() > 0f) font.regenerateLayout(target);
+        else font.calculateSize(target);
     }
 
     //////////////////////////////////
@@ -570,7 +823,10 @@ public class TypingLabel extends TextraLabel {
             }
         }
         font.calculateSize(workingLayout);
-        int glyphCount = workingLayout.countGlyphs();
+        // Lines may have been edited directly since the last frame, so the index is rebuilt once here; the many
+        // per-glyph lookups that effects do below can then use it without walking every Line.
+        workingLayout.invalidateIndex();
+        int glyphCount = workingLayout.lineStart(workingLayout.lines());
         offsets.setSize(glyphCount + glyphCount);
         Arrays.fill(offsets.items, 0, glyphCount + glyphCount, 0f);
         sizing.setSize(glyphCount + glyphCount);
@@ -578,6 +834,9 @@ public class TypingLabel extends TextraLabel {
         rotations.setSize(glyphCount);
         Arrays.fill(rotations.items, 0, glyphCount, 0f);
 
+        gpuActive = gpuEffects && !gpuUnsupported && canUseGpuEffects(glyphCount);
+        if (gpuActive) gpuTime += delta;
+
         // Apply effects
         if (!ignoringEffects) {
 
@@ -593,9 +852,12 @@ public class TypingLabel extends TextraLabel {
                     continue;
                 }
 
+                // The GPU path animates this effect in its vertex shader instead
+                if (gpuActive) continue;
+
                 // Apply effect to glyph
                 for (int j = Math.max(0, start); j <= glyphCharIndex && j <= end && j < glyphCount; j++) {
-                    long glyph = getInLayout(workingLayout, j);
+                    long glyph = workingLayout.getGlyph(j);
                     if (glyph == 0xFFFFFFL) break; // invalid char
                     effect.apply(glyph, j, delta);
                 }
@@ -757,6 +1019,7 @@ public class TypingLabel extends TextraLabel {
 
     @Override
     public boolean remove() {
+        disposeEffectMesh();
         return super.remove();
     }
 
@@ -905,12 +1168,26 @@ public class TypingLabel extends TextraLabel {
 //        baseY += workingLayout.lines.first().height * 0.25f;
 
         int o = 0, s = 0, r = 0, gi = 0;
-        boolean resetShader = font.getDistanceField() != Font.DistanceFieldType.STANDARD && batch.getShader() != font.shader;
+        boolean resetShader = (font.getDistanceField() != Font.DistanceFieldType.STANDARD || font.isShaderEffects())
+                && batch.getShader() != font.shader;
         if (resetShader)
             font.enableShader(batch);
         batch.getColor().set(getColor()).a *= parentAlpha;
         batch.setColor(batch.getColor());
 
+        final boolean gpuBake = gpuActive && needsGpuBuild(rot, originX, originY, batch.getColor().toIntBits());
+        if (gpuActive && !gpuBake) {
+            effectMesh.draw(batch, getX() - gpuX, getY() - gpuY, gpuTime);
+            if (resetShader)
+                batch.setShader(null);
+            return;
+        }
+        if (gpuBake) {
+            if (gpuCache == null) gpuCache = new VertexCache();
+            gpuCache.clear();
+            VertexCache.record(font, gpuCache);
+        }
+
         int globalIndex = -1;
 
         float inX = 0, inY = 0;
@@ -1000,13 +1277,14 @@ public class TypingLabel extends TextraLabel {
 
                 if (f.kerning != null) {
                     kern = kern << 16 | (int) ((glyph = glyphs.glyphs.get(i)) & 0xFFFF);
-                    float amt = f.kerning.get(kern, 0) * f.scaleX * ((glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f);
+                    float amt = f.getKerningTable().get(kern, 0) * f.scaleX * ((glyph & ALTERNATE) != 0L ? 1f : ((glyph + 0x300000L >>> 20 & 15) + 1) * 0.25f);
                     xChange += cs * amt;
                     yChange += sn * amt;
                 } else {
                     kern = -1;
                 }
                 ++globalIndex;
+                if (gpuBake) gpuCache.tag = globalIndex;
                 if(selectable && selectionStart <= globalIndex && selectionEnd >= globalIndex)
                     bgc = ColorUtils.offsetLightness((int)(glyph >>> 32), 0.5f);
                 else
@@ -1052,10 +1330,173 @@ public class TypingLabel extends TextraLabel {
         }
 //        invalidate();
 //        addMissingGlyphs();
+        if (gpuBake) {
+            VertexCache.record(font, null);
+            finishGpuBuild(batch, rot, originX, originY);
+        }
         if (resetShader)
             batch.setShader(null);
     }
 
+    /**
+     * Returns true if this is set to use the GPU effect path; see {@link #setGpuEffects(boolean)}.
+     *
+     * @return true if effects that support it may be animated by a vertex shader
+     */
+    public boolean isGpuEffects() {
+        return gpuEffects;
+    }
+
+    /**
+     * Turns the GPU effect path on or off; it is off by default. When it is on, and this label has finished typing
+     * out its text, the quads for every glyph are uploaded once to a static Mesh, and effects that can describe
+     * themselves with {@link Effect#describeGpu(int, int, float[])} ({@link com.github.tommyettinger.textra.effects.WaveEffect},
+     * {@link com.github.tommyettinger.textra.effects.ShakeEffect}, {@link com.github.tommyettinger.textra.effects.JumpEffect},
+     * and {@link com.github.tommyettinger.textra.effects.RainbowEffect}) are animated by a vertex shader from a time
+     * uniform. Each frame then only costs one draw call per texture, no matter how much text is animated. The quads
+     * are uploaded again if the text, size, rotation, origin, alignment, color, Font, or active effects change,
+     * including glyphs changed with {@link #setInWorkingLayout(int, long)} or followed by {@link Layout#invalidate()}
+     * (see {@link Layout#getModificationCount()}); moving the label only changes a uniform.
+     * <br>
+     * The CPU path is used instead (as it is when this is off) while text is still being typed, if any active effect
+     * can't be described for the GPU or has a finite duration, if {@link #trackingInput} or {@link #selectable} is
+     * true, if effects are being ignored, or if this label's Font (or any Font in its family) uses a distance field
+     * or {@link Font#isShaderEffects() shader effects}. Only one movement effect and one color effect can apply to
+     * each glyph on the GPU; if several overlap, the one that starts first is used. The GPU shake effect picks new
+     * offsets 60 times per second, rather than once per frame.
+     * <br>
+     * The Mesh is released when this is turned off or this label is {@link #remove() removed}, and is created again
+     * when needed.
+     *
+     * @param gpuEffects true to animate supported effects in a vertex shader; false to always animate on the CPU
+     * @return this, for chaining
+     */
+    public TypingLabel setGpuEffects(boolean gpuEffects) {
+        this.gpuEffects = gpuEffects;
+        gpuUnsupported = false;
+        gpuDirty = true;
+        if (!gpuEffects) disposeEffectMesh();
+        return this;
+    }
+
+    private void disposeEffectMesh() {
+        if (effectMesh != null) effectMesh.dispose();
+        effectMesh = null;
+        gpuActive = false;
+        gpuDirty = true;
+    }
+
+    /**
+     * Returns true if everything shown by this label can be drawn and animated by {@link EffectMesh} right now.
+     */
+    private boolean canUseGpuEffects(int glyphCount) {
+        if (!ended || ignoringEffects || trackingInput || selectable || glyphCount == 0 || Gdx.gl20 == null)
+            return false;
+        if (font.getDistanceField() != Font.DistanceFieldType.STANDARD || font.isShaderEffects()) return false;
+        if (font.family != null) {
+            for (Font f : font.family.connected) {
+                if (f != null && (f.getDistanceField() != Font.DistanceFieldType.STANDARD || f.isShaderEffects()))
+                    return false;
+            }
+        }
+        for (int i = 0; i < activeEffects.size; i++) {
+            Effect effect = activeEffects.get(i);
+            if (effect.duration != Float.POSITIVE_INFINITY) return false;
+            int index = Math.min(Math.max(effect.indexStart, 0), glyphCount - 1);
+            if (effect.describeGpu(index - effect.indexStart, index, gpuParams) == Effect.GPU_NONE) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the quads in {@link #effectMesh} can't be reused, because something other than the position of
+     * this label has changed since they were uploaded.
+     */
+    private boolean needsGpuBuild(float rot, float originX, float originY, int colorBits) {
+        if (gpuDirty || effectMesh == null) return true;
+        int effectsKey = activeEffects.size;
+        for (int i = 0; i < activeEffects.size; i++) {
+            effectsKey = effectsKey * 31 + System.identityHashCode(activeEffects.get(i));
+        }
+        if (gpuRotation != rot || gpuOriginX != originX || gpuOriginY != originY || gpuWidth != getWidth()
+                || gpuHeight != getHeight() || gpuColor != colorBits || gpuAlign != align || gpuFont != font
+                || gpuMetrics != font.getMetricsVersion() || gpuModifications != workingLayout.getModificationCount()
+                || gpuGlyphs != workingLayout.countGlyphs()
+                || gpuEffectsKey != effectsKey)
+            return true;
+        if (font.integerPosition) {
+            final float dx = getX() - gpuX, dy = getY() - gpuY;
+            return dx != (int) dx || dy != (int) dy;
+        }
+        return false;
+    }
+
+    /**
+     * Uploads the quads just recorded in {@link #gpuCache}, along with what each glyph's effects need, and draws them.
+     * If they can't be uploaded, this draws them with the Batch and stays on the CPU path.
+     */
+    private void finishGpuBuild(Batch batch, float rot, float originX, float originY) {
+        final int glyphCount = workingLayout.countGlyphs();
+        gpuMotion.setSize(glyphCount << 2);
+        Arrays.fill(gpuMotion.items, 0, glyphCount << 2, 0f);
+        gpuHue.setSize(glyphCount << 2);
+        Arrays.fill(gpuHue.items, 0, glyphCount << 2, 0f);
+        gpuBody.setSize(glyphCount);
+        for (int j = 0; j < glyphCount; j++) {
+            gpuBody.items[j] = Font.glyphColor(batch.getColor(), workingLayout.getGlyph(j));
+        }
+        // Effects are applied on the CPU from last to first, so going the same way lets earlier effects win.
+        int effectsKey = activeEffects.size;
+        for (int i = activeEffects.size - 1; i >= 0; i--) {
+            Effect effect = activeEffects.get(i);
+            int end = effect.indexEnd >= 0 ? effect.indexEnd : glyphCharIndex;
+            for (int j = Math.max(0, effect.indexStart); j <= end && j < glyphCount; j++) {
+                int id = effect.describeGpu(j - effect.indexStart, j, gpuParams);
+                float[] target = id == Effect.GPU_RAINBOW ? gpuHue.items : gpuMotion.items;
+                if (id == Effect.GPU_RAINBOW) {
+                    System.arraycopy(gpuParams, 0, target, j << 2, 4);
+                } else if (id != Effect.GPU_NONE) {
+                    target[j << 2] = id;
+                    System.arraycopy(gpuParams, 0, target, (j << 2) + 1, 3);
+                }
+            }
+        }
+        for (int i = 0; i < activeEffects.size; i++) {
+            effectsKey = effectsKey * 31 + System.identityHashCode(activeEffects.get(i));
+        }
+        if (effectMesh == null) effectMesh = new EffectMesh();
+        if (!effectMesh.build(gpuCache, gpuMotion.items, gpuHue.items, gpuBody.items, batch.getColor().toFloatBits())) {
+            // Nothing was recorded (such as with a Font that overrides drawVertices()), or too much was.
+            gpuUnsupported = true;
+            disposeEffectMesh();
+            gpuCache.draw(batch);
+            return;
+        }
+        gpuX = getX();
+        gpuY = getY();
+        gpuRotation = rot;
+        gpuOriginX = originX;
+        gpuOriginY = originY;
+        gpuWidth = getWidth();
+        gpuHeight = getHeight();
+        gpuColor = batch.getColor().toIntBits();
+        gpuAlign = align;
+        gpuFont = font;
+        gpuMetrics = font.getMetricsVersion();
+        gpuGlyphs = glyphCount;
+        gpuModifications = workingLayout.getModificationCount();
+        gpuEffectsKey = effectsKey;
+        gpuTime = 0f;
+        gpuDirty = false;
+        effectMesh.draw(batch, 0f, 0f, 0f);
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        gpuDirty = true;
+    }
+
     @Override
     public String toString() {
         return substring(0, Integer.MAX_VALUE);
@@ -1102,25 +1543,11 @@ public class TypingLabel extends TextraLabel {
     }
 
     public long getInLayout(Layout layout, int index) {
-        for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = layout.getLine(i).glyphs;
-            if (index < glyphs.size)
-                return glyphs.get(index);
-            else
-                index -= glyphs.size;
-        }
-        return 0xFFFFFFL;
+        return layout.getGlyph(index);
     }
 
     public long getInWorkingLayout(int index) {
-        for (int i = 0, n = workingLayout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = workingLayout.getLine(i).glyphs;
-            if (index < glyphs.size)
-                return glyphs.get(index);
-            else
-                index -= glyphs.size;
-        }
-        return 0xFFFFFFL;
+        return workingLayout.getGlyph(index);
     }
 
     /**
@@ -1215,14 +1642,7 @@ public class TypingLabel extends TextraLabel {
     }
 
     public Line getLineInLayout(Layout layout, int index) {
-        for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = layout.getLine(i).glyphs;
-            if (index < glyphs.size)
-                return layout.getLine(i);
-            else
-                index -= glyphs.size;
-        }
-        return null;
+        return layout.getLineOfGlyph(index);
     }
     /**
      * Gets the height of the Line containing the glyph at the given index, in the working layout. If the index is out
@@ -1231,14 +1651,9 @@ public class TypingLabel extends TextraLabel {
      * @return the height of the Line containing the specified glyph
      */
     public float getLineHeight(int index) {
-        for (int i = 0, n = workingLayout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = workingLayout.getLine(i).glyphs;
-            if (index < glyphs.size)
-                return workingLayout.getLine(i).height;
-            else
-                index -= glyphs.size;
-        }
-        return font.cellHeight;
+        Line line = workingLayout.getLineOfGlyph(index);
+        if (line == null) return font.cellHeight;
+        return line.height;
     }
 
     public long getFromIntermediate(int index) {
@@ -1247,17 +1662,11 @@ public class TypingLabel extends TextraLabel {
     }
 
     public void setInLayout(Layout layout, int index, long newGlyph) {
-        for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = layout.getLine(i).glyphs;
-            if (index < glyphs.size) {
-                glyphs.set(index, newGlyph);
-                return;
-            } else
-                index -= glyphs.size;
-        }
+        layout.setGlyph(index, newGlyph);
     }
 
     public void insertInLayout(Layout layout, int index, long newGlyph) {
+        layout.invalidate();
         for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
             LongArray glyphs = layout.getLine(i).glyphs;
             if (index <= glyphs.size) {
@@ -1269,6 +1678,7 @@ public class TypingLabel extends TextraLabel {
     }
 
     public void insertInLayout(Layout layout, int index, CharSequence text) {
+        layout.invalidate();
         long current = (Integer.reverseBytes(NumberUtils.floatToIntBits(layout.baseColor)) & -2L) << 32;
         for (int i = 0, n = layout.lines(); i < n && index >= 0; i++) {
             LongArray glyphs = layout.getLine(i).glyphs;
@@ -1292,14 +1702,7 @@ public class TypingLabel extends TextraLabel {
     }
 
     public void setInWorkingLayout(int index, long newGlyph) {
-        for (int i = 0, n = workingLayout.lines(); i < n && index >= 0; i++) {
-            LongArray glyphs = workingLayout.getLine(i).glyphs;
-            if (i < workingLayout.lines() && index < glyphs.size) {
-                glyphs.set(index, newGlyph);
-                return;
-            } else
-                index -= glyphs.size;
-        }
+        workingLayout.setGlyph(index, newGlyph);
     }
 
     /**
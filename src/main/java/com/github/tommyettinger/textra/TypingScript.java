@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.IntFloatMap;
+import com.badlogic.gdx.utils.IntMap;
+import com.github.tommyettinger.textra.utils.LZBCompression;
+import com.github.tommyettinger.textra.utils.LZBDecompression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The result of parsing a {@link TypingLabel}'s text, saved so that it can be played again without parsing it again.
+ * A TypingScript holds the text with all replacements done and all tokens removed, a table of where each token goes
+ * (sorted in the order the label needs them), the name and already-split parameters of each effect, and the glyphs
+ * that marking up the text produced. {@link TypingLabel#restart(TypingScript)} loads all of that into a label without
+ * any regular expressions or other work on Strings; only the Effects themselves are produced again, because each one
+ * belongs to one label and changes as it runs.
+ * <br>
+ * A TypingScript never changes after it is compiled, so it can be shared by any number of labels, and is a good fit for
+ * storing one per line of dialog in a map keyed by that line. The default token and any <code>{IF}</code> tokens are
+ * resolved when the script is compiled, so compile the script again if those should be different. Variables are also
+ * resolved then, but a label that loads the script replaces any values that differ from its own variables, usually
+ * without parsing anything. If the label a script is loaded into uses a different Font or a different width than the one it
+ * was compiled with, or the Font has changed since, the text is marked up again (still without parsing any tokens).
+ * <br>
+ * Scripts can also be saved ahead of time with {@link #toBytes(boolean, TypingScript...)} and loaded with
+ * {@link #fromBytes(byte[], Font)}, which is much faster than parsing them; the ScriptCompiler tool in this repo's
+ * {@code tools} folder does this for a whole folder of dialog files.
+ */
+public final class TypingScript {
+    /**
+     * The first four bytes of any data written by {@link #toBytes(boolean, TypingScript...)}; this is "TTS" followed
+     * by the format version, 3.
+     */
+    public static final int MAGIC = 0x54545303;
+
+    final String fontName;
+    final String originalText;
+    final String text;
+    final Snapshot layout, workingLayout;
+
+    final String[] tokens;
+    final TokenCategory[] categories;
+    final int[] indices, endIndices;
+    final float[] floatValues;
+    final String[] stringValues;
+    /**
+     * The parameters for each effect start token, or null for tokens that don't start an effect.
+     */
+    final String[][] params;
+    /**
+     * Where each variable's value was placed, so a label can replace values that differ from its own variables.
+     */
+    final VariableSpan[] spans;
+
+    private TypingScript(TypingLabel label) {
+        fontName = label.font.name;
+        originalText = label.getOriginalText().toString();
+        text = Parser.handleBracketMinusMarkup(label.getIntermediateText().toString());
+        layout = new Snapshot(text, label.layout);
+        workingLayout = new Snapshot(text, label.workingLayout);
+
+        final int n = label.tokenEntries.size;
+        tokens = new String[n];
+        categories = new TokenCategory[n];
+        indices = new int[n];
+        endIndices = new int[n];
+        floatValues = new float[n];
+        stringValues = new String[n];
+        params = new String[n][];
+        for (int i = 0; i < n; i++) {
+            TokenEntry entry = label.tokenEntries.get(i);
+            tokens[i] = entry.token;
+            categories[i] = entry.category;
+            indices[i] = entry.index;
+            endIndices[i] = entry.endIndex;
+            floatValues[i] = entry.floatValue;
+            stringValues[i] = entry.stringValue;
+            params[i] = entry.params;
+        }
+        spans = new VariableSpan[label.variableSpans.size];
+        for (int i = 0; i < spans.length; i++) {
+            spans[i] = new VariableSpan(label.variableSpans.get(i));
+        }
+    }
+
+    /**
+     * Reads one script written by {@link #write(DataOutputStream, long)}. The saved glyphs can only be used with
+     * {@code font} if it has the same name as the Font the script was compiled with, and {@code fontMetrics} (the
+     * {@link #metricsFingerprint(Font)} of font) matches the one saved with the script.
+     */
+    private TypingScript(DataInputStream in, Font font, long fontMetrics) throws IOException {
+        fontName = readString(in);
+        final long savedMetrics = in.readLong();
+        originalText = readString(in);
+        text = readString(in);
+        Font match = font != null && font.name != null && font.name.equals(fontName) && savedMetrics == fontMetrics
+                ? font : null;
+        layout = Snapshot.read(in, text, match);
+        workingLayout = Snapshot.read(in, text, match);
+
+        final int n = in.readInt();
+        tokens = new String[n];
+        categories = new TokenCategory[n];
+        indices = new int[n];
+        endIndices = new int[n];
+        floatValues = new float[n];
+        stringValues = new String[n];
+        params = new String[n][];
+        final TokenCategory[] allCategories = TokenCategory.values();
+        for (int i = 0; i < n; i++) {
+            tokens[i] = readString(in);
+            categories[i] = allCategories[in.readUnsignedByte()];
+            indices[i] = in.readInt();
+            endIndices[i] = in.readInt();
+            floatValues[i] = in.readFloat();
+            stringValues[i] = readString(in);
+            int count = in.readInt();
+            if (count >= 0) {
+                String[] ps = params[i] = new String[count];
+                for (int p = 0; p < count; p++) {
+                    ps[p] = readString(in);
+                }
+            }
+        }
+        spans = new VariableSpan[in.readInt()];
+        for (int i = 0; i < spans.length; i++) {
+            VariableSpan span = spans[i] = new VariableSpan(readString(in), readString(in));
+            span.rawIndex = in.readInt();
+            span.glyphIndex = in.readInt();
+            span.textIndex = in.readInt();
+        }
+    }
+
+    /**
+     * Parses {@code text} the same way {@code label} would, and saves the result as a TypingScript. This restarts
+     * {@code label} with text, so it is left ready to show it, using label's variables, default token, listener, Font,
+     * and width. The label can then be reused to compile other scripts, or to show one of them.
+     *
+     * @param label a TypingLabel that will be restarted with text
+     * @param text the text to compile, typically with markup and tokens
+     * @return a new TypingScript that can be given to {@link TypingLabel#restart(TypingScript)}
+     */
+    public static TypingScript compile(TypingLabel label, CharSequence text) {
+        Parser.keepEffectParams = true;
+        try {
+            label.restart(text);
+        } finally {
+            Parser.keepEffectParams = false;
+        }
+        return new TypingScript(label);
+    }
+
+    /**
+     * Writes any number of scripts to a compact binary format, which {@link #fromBytes(byte[], Font)} can read back.
+     * The format holds the packed glyphs and line sizes each script's layouts had, its token table, and the name and
+     * a fingerprint of the metrics of the Font it was compiled with. If {@code compress} is true, everything after the header is compressed with
+     * {@link LZBCompression}, which usually makes the data several times smaller, but takes a little longer to load.
+     *
+     * @param compress if true, the data will be compressed with LZB
+     * @param scripts the TypingScripts to write, typically all compiled with the same Font
+     * @return a byte array holding all of scripts
+     */
+    public static byte[] toBytes(boolean compress, TypingScript... scripts) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(scripts.length);
+            Font font = null;
+            long metrics = 0L;
+            for (TypingScript script : scripts) {
+                if (script.layout.font != font) metrics = metricsFingerprint(font = script.layout.font);
+                script.write(out, metrics);
+            }
+            out.flush();
+            byte[] data = body.toByteArray();
+            if (compress) {
+                char[] chars = new char[data.length];
+                for (int i = 0; i < data.length; i++) {
+                    chars[i] = (char) (data[i] & 255);
+                }
+                data = LZBCompression.compressToBytes(String.valueOf(chars));
+            }
+            ByteArrayOutputStream all = new ByteArrayOutputStream(data.length + 5);
+            out = new DataOutputStream(all);
+            out.writeInt(MAGIC);
+            out.writeByte(compress ? 1 : 0);
+            out.write(data);
+            out.flush();
+            return all.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throws this.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads every script in {@code bytes}, which must have been written by {@link #toBytes(boolean, TypingScript...)}.
+     * If {@code font} has the same {@link Font#name} as the Font the scripts were compiled with, and the same scale,
+     * cell size, glyph metrics, and kerning, their saved glyphs are used as-is when a label using font loads them;
+     * otherwise, they will be marked up again when loaded. A Font that was scaled differently after loading, or that
+     * had images added that the compiling Font didn't have, doesn't match.
+     *
+     * @param bytes data written by {@link #toBytes(boolean, TypingScript...)}
+     * @param font the Font that labels showing these scripts will use
+     * @return an array of the TypingScripts in bytes, in the order they were written
+     * @throws IllegalArgumentException if bytes wasn't written by toBytes() or is damaged
+     */
+    public static TypingScript[] fromBytes(byte[] bytes, Font font) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (bytes.length < 5 || in.readInt() != MAGIC)
+                throw new IllegalArgumentException("The data is not in the TypingScript format.");
+            if (in.readUnsignedByte() != 0) {
+                String chars = LZBDecompression.decompressFromBytes(bytes, 5, bytes.length - 5);
+                byte[] data = new byte[chars.length()];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = (byte) chars.charAt(i);
+                }
+                in = new DataInputStream(new ByteArrayInputStream(data));
+            }
+            TypingScript[] scripts = new TypingScript[in.readInt()];
+            final long metrics = font == null ? 0L : metricsFingerprint(font);
+            for (int i = 0; i < scripts.length; i++) {
+                scripts[i] = new TypingScript(in, font, metrics);
+            }
+            return scripts;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Could not read TypingScript data.", e);
+        }
+    }
+
+    /**
+     * Writes this script's data, without any header; this is read by the private constructor. {@code fontMetrics}
+     * should be the {@link #metricsFingerprint(Font)} of the Font this was compiled with.
+     */
+    private void write(DataOutputStream out, long fontMetrics) throws IOException {
+        writeString(out, fontName);
+        out.writeLong(fontMetrics);
+        writeString(out, originalText);
+        writeString(out, text);
+        layout.write(out);
+        workingLayout.write(out);
+        out.writeInt(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            writeString(out, tokens[i]);
+            out.writeByte(categories[i].ordinal());
+            out.writeInt(indices[i]);
+            out.writeInt(endIndices[i]);
+            out.writeFloat(floatValues[i]);
+            writeString(out, stringValues[i]);
+            String[] ps = params[i];
+            if (ps == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(ps.length);
+                for (String p : ps) {
+                    writeString(out, p);
+                }
+            }
+        }
+        out.writeInt(spans.length);
+        for (VariableSpan span : spans) {
+            writeString(out, span.param);
+            writeString(out, span.value);
+            out.writeInt(span.rawIndex);
+            out.writeInt(span.glyphIndex);
+            out.writeInt(span.textIndex);
+        }
+    }
+
+    /**
+     * Combines everything about {@code font} that decides where saved lines break and how wide and tall they are:
+     * its scale, cell size, and descent, plus the size, offsets, and advance of every glyph and every kerning pair.
+     * Glyphs and kerning pairs are combined in a way that doesn't depend on their order in the maps, so two Fonts
+     * loaded from the same files get the same result.
+     */
+    static long metricsFingerprint(Font font) {
+        long h = mix(mix(mix(mix(mix(0x1234567L, font.scaleX), font.scaleY), font.cellWidth), font.cellHeight),
+                font.descent);
+        long glyphs = 0L;
+        for (IntMap.Entry<Font.GlyphRegion> e : font.mapping) {
+            final Font.GlyphRegion g = e.value;
+            long m = mix(mix(mix(mix(mix(e.key, g.xAdvance), g.offsetX), g.offsetY), g.getRegionWidth()),
+                    g.getRegionHeight());
+            glyphs += m ^ m >>> 29;
+        }
+        long kerning = 0L;
+        if (font.kerning != null) {
+            for (IntFloatMap.Entry e : font.kerning) {
+                long m = mix(e.key, e.value);
+                kerning += m ^ m >>> 29;
+            }
+        }
+        h = mix(h ^ glyphs, font.mapping.size);
+        return mix(h ^ kerning, font.kerning == null ? -1 : font.kerning.size);
+    }
+
+    private static long mix(long h, float f) {
+        h = (h ^ Float.floatToIntBits(f)) * 0x9E3779B97F4A7C15L;
+        return h ^ h >>> 31;
+    }
+
+    /**
+     * Writes a String, which may be null, as its length followed by its chars.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int len = in.readInt();
+        if (len < 0) return null;
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = in.readChar();
+        }
+        return String.valueOf(chars);
+    }
+
+    /**
+     * Gets the name of the Font this was compiled with, as in {@link Font#name}.
+     * @return the name of the Font this was compiled with
+     */
+    public String getFontName() {
+        return fontName;
+    }
+
+    /**
+     * Gets the text this was compiled from, with all tokens unchanged.
+     * @return the original text
+     */
+    public String getOriginalText() {
+        return originalText;
+    }
+
+    /**
+     * Gets the text after all replacements and with all tokens removed, as it is given to {@link Font#markup}.
+     * @return the processed text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets how many tokens (including effect starts and ends) this holds.
+     * @return the number of tokens
+     */
+    public int getTokenCount() {
+        return tokens.length;
+    }
+
+    /**
+     * Replaces the token entries and variable spans in {@code label} with new ones matching this script, and produces
+     * a new Effect for each effect that is still registered in {@link TypingConfig#EFFECT_START_TOKENS}.
+     */
+    void addTokenEntries(TypingLabel label) {
+        label.tokenEntries.clear();
+        label.tokenEntries.ensureCapacity(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            TokenEntry entry = new TokenEntry(tokens[i], categories[i], indices[i], endIndices[i], floatValues[i], stringValues[i]);
+            if (params[i] != null) {
+                Effect.EffectBuilder eb = TypingConfig.EFFECT_START_TOKENS.get(tokens[i]);
+                if (eb != null) {
+                    entry.effect = eb.produce(label, params[i]);
+                    entry.params = params[i];
+                }
+            }
+            label.tokenEntries.add(entry);
+        }
+        label.variableSpans.clear();
+        for (VariableSpan span : spans) {
+            label.variableSpans.add(new VariableSpan(span));
+        }
+    }
+
+    /**
+     * The glyphs one Layout held right after the script was compiled, with the Font and Layout settings they need.
+     */
+    static final class Snapshot {
+        private static final MarkupCache.Key PROBE = new MarkupCache.Key();
+
+        final Font font;
+        final MarkupCache.Key key;
+        final MarkupCache.Entry entry;
+
+        Snapshot(String text, Layout layout) {
+            font = layout.font;
+            key = new MarkupCache.Key().set(text, layout, font, font.getMarkupStamp());
+            entry = new MarkupCache.Entry(layout);
+        }
+
+        private Snapshot(Font font, MarkupCache.Key key, MarkupCache.Entry entry) {
+            this.font = font;
+            this.key = key;
+            this.entry = entry;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(key.targetWidthBits);
+            out.writeInt(key.baseColorBits);
+            out.writeInt(key.maxLines);
+            writeString(out, key.ellipsis);
+            out.writeBoolean(key.squareBrackets);
+            out.writeBoolean(entry.atLimit);
+            final FlatLayout flat = entry.flat;
+            out.writeInt(flat.lineCount);
+            for (int i = 0; i < flat.lineCount; i++) {
+                out.writeInt(flat.ends[i] - flat.starts[i]);
+                out.writeFloat(flat.widths[i]);
+                out.writeFloat(flat.heights[i]);
+            }
+            for (int i = 0; i < flat.lineCount; i++) {
+                for (int g = flat.starts[i], e = flat.ends[i]; g < e; g++) {
+                    out.writeLong(flat.glyphs[g]);
+                }
+            }
+        }
+
+        /**
+         * Reads a Snapshot written by {@link #write(DataOutputStream)}. If font is null, the Snapshot will never be
+         * restored, but it is still read fully so the data after it can be read.
+         */
+        static Snapshot read(DataInputStream in, String text, Font font) throws IOException {
+            MarkupCache.Key key = new MarkupCache.Key();
+            key.text = text;
+            key.targetWidthBits = in.readInt();
+            key.baseColorBits = in.readInt();
+            key.maxLines = in.readInt();
+            key.ellipsis = readString(in);
+            key.squareBrackets = in.readBoolean();
+            boolean atLimit = in.readBoolean();
+            final int lineCount = in.readInt();
+            int[] lengths = new int[lineCount];
+            int total = 0;
+            FlatLayout flat = new FlatLayout(16, lineCount);
+            for (int i = 0; i < lineCount; i++) {
+                lengths[i] = in.readInt();
+                flat.addLine(total, total += lengths[i], in.readFloat(), in.readFloat());
+            }
+            long[] glyphs = flat.ensureGlyphCapacity(total);
+            for (int g = 0; g < total; g++) {
+                glyphs[g] = in.readLong();
+            }
+            flat.size = total;
+            if (font != null) {
+                key.stamp = font.getMarkupStamp();
+                key.colorLookup = font.colorLookup;
+                key.nameLookup = font.nameLookup;
+            }
+            return new Snapshot(font, key.rehash(), new MarkupCache.Entry(flat, atLimit));
+        }
+
+        /**
+         * If {@code target} uses the same Font and settings this was saved with, and the Font hasn't changed since,
+         * replaces the glyphs in target with the ones saved here and returns true. Otherwise, returns false and doesn't
+         * change target.
+         */
+        boolean restore(Layout target) {
+            if (target.font != font) return false;
+            boolean same = PROBE.set(key.text, target, font, font.getMarkupStamp()).equals(key);
+            PROBE.text = null;
+            PROBE.ellipsis = null;
+            if (!same) return false;
+            target.clear();
+            entry.flat.unpack(target);
+            target.atLimit = entry.atLimit;
+            target.invalidate();
+            return true;
+        }
+    }
+}
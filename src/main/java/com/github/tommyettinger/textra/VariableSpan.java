@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021-2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+/**
+ * Remembers where the value of one variable was placed in a {@link TypingLabel}'s text, so that it can be replaced
+ * when the variable changes without parsing the whole text again. Variables used by an <code>{IF}</code> token, or
+ * whose values contain markup, are remembered too, but can't be replaced in place; {@link #rawIndex} is -1 for those.
+ */
+class VariableSpan {
+    /**
+     * The name of the variable, in upper case.
+     */
+    String name;
+    /**
+     * The variable name as it was written in the token, which is what a {@link TypingListener} is given.
+     */
+    String param;
+    /**
+     * The value of the variable when it was placed or last replaced.
+     */
+    String value;
+    /**
+     * Where the value starts, counting the way {@link TokenEntry#index} does, or -1 if it can't be replaced in place.
+     */
+    int rawIndex = -1;
+    /**
+     * Where the value starts, counting only glyphs, as in {@link Layout#getGlyph(int)}.
+     */
+    int glyphIndex = -1;
+    /**
+     * Where the value starts in the label's intermediate text.
+     */
+    int textIndex = -1;
+
+    VariableSpan(String param, String value) {
+        this.param = param;
+        this.name = param.toUpperCase();
+        this.value = value;
+    }
+
+    VariableSpan(VariableSpan other) {
+        this.param = other.param;
+        this.name = other.name;
+        this.value = other.value;
+        this.rawIndex = other.rawIndex;
+        this.glyphIndex = other.glyphIndex;
+        this.textIndex = other.textIndex;
+    }
+
+    /**
+     * Returns true if {@code value} can be placed as glyphs directly, because it has no markup, no tokens, and no line
+     * breaks.
+     */
+    static boolean isPlain(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            switch (value.charAt(i)) {
+                case '[':
+                case ']':
+                case '{':
+                case '}':
+                case '\n':
+                case '\r':
+                    return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Holds the quads a {@link TextraLabel} drew once, so they can be drawn again without going through
+ * {@link Font#drawGlyph(Batch, long, float, float, float, float, float, int)} for every glyph. While a Font's
+ * {@link Font#recording} is set to a VertexCache, {@link Font#drawVertices(Batch, Texture, float[])} appends each quad
+ * here instead of drawing it. Consecutive quads that use the same Texture and distance field shader state are kept as
+ * one run, and each run is drawn with one call to {@link Batch#draw(Texture, float[], int, int)}, after pausing or
+ * resuming the shader as the glyphs in it did. This is internal to TextraLabel's retained mode.
+ */
+class VertexCache {
+    /**
+     * Every recorded quad, 20 floats per quad, in the same layout {@link Font#drawVertices(Batch, Texture, float[])}
+     * receives.
+     */
+    float[] vertices = new float[20 * 64];
+    /**
+     * How many floats in {@link #vertices} are used.
+     */
+    int size;
+    /**
+     * The Texture for each run of quads.
+     */
+    final Array<Texture> textures = new Array<>(true, 4, Texture.class);
+    /**
+     * The index in {@link #vertices} just after each run of quads ends.
+     */
+    final IntArray runEnds = new IntArray(4);
+    /**
+     * The tag given to each quad that {@link #add(Texture, float[])} records from now on; TypingLabel sets this to
+     * the index of the glyph it is about to draw.
+     */
+    int tag;
+    /**
+     * The {@link #tag} each recorded quad had, one item per quad.
+     */
+    final IntArray tags = new IntArray(64);
+    /**
+     * The Font whose distance field shader each run of quads needs, or null if a run doesn't change the shader.
+     */
+    final Array<Font> runFonts = new Array<>(true, 4, Font.class);
+    /**
+     * What each run of quads needs done to the shader before it is drawn, as a {@link Font#shaderState(Font, Texture)}.
+     */
+    final IntArray runStates = new IntArray(4);
+
+    private Font font, lastFont;
+    private Texture lastTexture;
+    private int state;
+
+    void clear() {
+        size = 0;
+        textures.clear();
+        runEnds.clear();
+        tags.clear();
+        runFonts.clear();
+        runStates.clear();
+        tag = 0;
+        font = lastFont = null;
+        lastTexture = null;
+        state = Font.SHADER_LEAVE;
+    }
+
+    /**
+     * Called by Font for each glyph it draws while recording, with the Font that glyph belongs to and the Texture it
+     * comes from; every quad added after this (such as for underline) shares that glyph's shader state.
+     */
+    void shade(Font font, Texture texture) {
+        if (font == lastFont && texture == lastTexture) return;
+        lastFont = font;
+        lastTexture = texture;
+        state = Font.shaderState(font, texture);
+        this.font = state == Font.SHADER_LEAVE ? null : font;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Appends the 20 floats of one quad, starting a new run if {@code texture} or the shader state isn't what the last
+     * run used.
+     */
+    void add(Texture texture, float[] quad) {
+        if (size + 20 > vertices.length) {
+            float[] v = new float[vertices.length << 1];
+            System.arraycopy(vertices, 0, v, 0, size);
+            vertices = v;
+        }
+        System.arraycopy(quad, 0, vertices, size, 20);
+        size += 20;
+        tags.add(tag);
+        if (textures.size == 0 || textures.peek() != texture || runStates.peek() != state || runFonts.peek() != font) {
+            textures.add(texture);
+            runEnds.add(size);
+            runFonts.add(font);
+            runStates.add(state);
+        } else {
+            runEnds.items[runEnds.size - 1] = size;
+        }
+    }
+
+    /**
+     * Moves every recorded quad by {@code dx, dy}.
+     */
+    void translate(float dx, float dy) {
+        final float[] v = vertices;
+        for (int i = 0; i < size; i += 5) {
+            v[i] += dx;
+            v[i + 1] += dy;
+        }
+    }
+
+    /**
+     * Draws every recorded quad with one {@link Batch#draw(Texture, float[], int, int)} call per run, pausing or
+     * resuming distance field shaders between runs the same way the glyphs did when they were recorded.
+     */
+    void draw(Batch batch) {
+        int start = 0;
+        Font shading = null;
+        int shaded = Font.SHADER_LEAVE;
+        for (int r = 0; r < textures.size; r++) {
+            final Font f = runFonts.items[r];
+            final int s = runStates.items[r];
+            if (s == Font.SHADER_RESUME && (shaded != Font.SHADER_RESUME || shading != f))
+                f.resumeDistanceFieldShader(batch);
+            else if (s == Font.SHADER_PAUSE)
+                f.pauseDistanceFieldShader(batch);
+            if (s != Font.SHADER_LEAVE) {
+                shading = f;
+                shaded = s;
+            }
+            final int end = runEnds.items[r];
+            batch.draw(textures.items[r], vertices, start, end - start);
+            start = end;
+        }
+        Font.forgetLatestTexture();
+    }
+
+    /**
+     * Sets the {@link Font#recording} of {@code font} and every Font in its {@link Font#family} to {@code cache};
+     * pass null for cache to stop recording.
+     */
+    static void record(Font font, VertexCache cache) {
+        font.recording = cache;
+        if (font.family != null) {
+            for (Font f : font.family.connected) {
+                if (f != null) f.recording = cache;
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.github.tommyettinger.textra.effects;
 
 import com.github.tommyettinger.textra.Effect;
+import com.github.tommyettinger.textra.EffectParams;
 import com.github.tommyettinger.textra.TypingLabel;
 import com.github.tommyettinger.textra.utils.ColorUtils;
 
@@ -33,28 +34,32 @@ public class GradientEffect extends Effect {
     private float frequency = 1; // How frequently the color pattern should move through the text.
 
     public GradientEffect(TypingLabel label, String[] params) {
+        this(label, new EffectParams().set(params));
+    }
+
+    public GradientEffect(TypingLabel label, EffectParams params) {
         super(label);
 
         // Color 1
-        if (params.length > 0) {
-            int c = paramAsColor(params[0]);
+        if (params.size() > 0) {
+            int c = params.getColor(label, 0);
             if (c != 256) this.color1 = c;
         }
 
         // Color 2
-        if (params.length > 1) {
-            int c = paramAsColor(params[1]);
+        if (params.size() > 1) {
+            int c = params.getColor(label, 1);
             if (c != 256) this.color2 = c;
         }
 
         // Distance
-        if (params.length > 2) {
-            this.distance = paramAsFloat(params[2], 1);
+        if (params.size() > 2) {
+            this.distance = params.getFloat(2, 1);
         }
 
         // Frequency
-        if (params.length > 3) {
-            this.frequency = paramAsFloat(params[3], 1);
+        if (params.size() > 3) {
+            this.frequency = params.getFloat(3, 1);
         }
     }
 
@@ -18,6 +18,7 @@ package com.github.tommyettinger.textra.effects;
 
 import com.badlogic.gdx.math.Interpolation;
 import com.github.tommyettinger.textra.Effect;
+import com.github.tommyettinger.textra.EffectParams;
 import com.github.tommyettinger.textra.TypingLabel;
 
 /**
@@ -33,29 +34,43 @@ public class JumpEffect extends Effect {
     private float intensity = 1; // How fast the glyphs should move
 
     public JumpEffect(TypingLabel label, String[] params) {
+        this(label, new EffectParams().set(params));
+    }
+
+    public JumpEffect(TypingLabel label, EffectParams params) {
         super(label);
 
         // Distance
-        if (params.length > 0) {
-            this.distance = paramAsFloat(params[0], 1);
+        if (params.size() > 0) {
+            this.distance = params.getFloat(0, 1);
         }
 
         // Frequency
-        if (params.length > 1) {
-            this.frequency = paramAsFloat(params[1], 1);
+        if (params.size() > 1) {
+            this.frequency = params.getFloat(1, 1);
         }
 
         // Intensity
-        if (params.length > 2) {
-            this.intensity = paramAsFloat(params[2], 1);
+        if (params.size() > 2) {
+            this.intensity = params.getFloat(2, 1);
         }
 
         // Duration
-        if (params.length > 3) {
-            this.duration = paramAsFloat(params[3], Float.POSITIVE_INFINITY);
+        if (params.size() > 3) {
+            this.duration = params.getFloat(3, Float.POSITIVE_INFINITY);
         }
     }
 
+    @Override
+    protected int describeGpu(int localIndex, int globalIndex, float[] out) {
+        float progressModifier = (1f / intensity) * DEFAULT_INTENSITY;
+        float normalFrequency = (1f / frequency) * DEFAULT_FREQUENCY;
+        out[0] = label.getLineHeight(globalIndex) * distance * DEFAULT_DISTANCE;
+        out[1] = 1f / progressModifier;
+        out[2] = totalTime / progressModifier - localIndex / normalFrequency;
+        return GPU_JUMP;
+    }
+
     @Override
     protected void onApply(long glyph, int localIndex, int globalIndex, float delta) {
         // Calculate progress
@@ -17,6 +17,7 @@
 package com.github.tommyettinger.textra.effects;
 
 import com.github.tommyettinger.textra.Effect;
+import com.github.tommyettinger.textra.EffectParams;
 import com.github.tommyettinger.textra.TypingLabel;
 import com.github.tommyettinger.textra.utils.ColorUtils;
 
@@ -33,29 +34,44 @@ public class RainbowEffect extends Effect {
     private float brightness = 0.5f; // Color brightness
 
     public RainbowEffect(TypingLabel label, String[] params) {
+        this(label, new EffectParams().set(params));
+    }
+
+    public RainbowEffect(TypingLabel label, EffectParams params) {
         super(label);
 
         // Distance
-        if (params.length > 0) {
-            this.distance = paramAsFloat(params[0], 1);
+        if (params.size() > 0) {
+            this.distance = params.getFloat(0, 1);
         }
 
         // Frequency
-        if (params.length > 1) {
-            this.frequency = paramAsFloat(params[1], 1);
+        if (params.size() > 1) {
+            this.frequency = params.getFloat(1, 1);
         }
 
         // Saturation
-        if (params.length > 2) {
-            this.saturation = paramAsFloat(params[2], 1);
+        if (params.size() > 2) {
+            this.saturation = params.getFloat(2, 1);
         }
 
         // Brightness
-        if (params.length > 3) {
-            this.brightness = paramAsFloat(params[3], 0.5f);
+        if (params.size() > 3) {
+            this.brightness = params.getFloat(3, 0.5f);
         }
     }
 
+    @Override
+    protected int describeGpu(int localIndex, int globalIndex, float[] out) {
+        float distanceMod = (1f / distance) * (1f - DEFAULT_DISTANCE);
+        float frequencyMod = (1f / frequency) * DEFAULT_FREQUENCY;
+        out[0] = 1f / frequencyMod;
+        out[1] = totalTime / frequencyMod + distanceMod * localIndex;
+        out[2] = saturation;
+        out[3] = brightness;
+        return GPU_RAINBOW;
+    }
+
     @Override
     protected void onApply(long glyph, int localIndex, int globalIndex, float delta) {
         // Calculate progress
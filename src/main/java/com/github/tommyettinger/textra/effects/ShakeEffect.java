@@ -20,6 +20,7 @@ import com.badlogic.gdx.math.Interpolation;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.FloatArray;
 import com.github.tommyettinger.textra.Effect;
+import com.github.tommyettinger.textra.EffectParams;
 import com.github.tommyettinger.textra.TypingLabel;
 
 /**
@@ -35,24 +36,36 @@ public class ShakeEffect extends Effect {
     private float intensity = 1; // How fast the glyphs should move
 
     public ShakeEffect(TypingLabel label, String[] params) {
+        this(label, new EffectParams().set(params));
+    }
+
+    public ShakeEffect(TypingLabel label, EffectParams params) {
         super(label);
 
         // Distance
-        if (params.length > 0) {
-            this.distance = paramAsFloat(params[0], 1);
+        if (params.size() > 0) {
+            this.distance = params.getFloat(0, 1);
         }
 
         // Intensity
-        if (params.length > 1) {
-            this.intensity = paramAsFloat(params[1], 1);
+        if (params.size() > 1) {
+            this.intensity = params.getFloat(1, 1);
         }
 
         // Duration
-        if (params.length > 2) {
-            this.duration = paramAsFloat(params[2], Float.POSITIVE_INFINITY);
+        if (params.size() > 2) {
+            this.duration = params.getFloat(2, Float.POSITIVE_INFINITY);
         }
     }
 
+    @Override
+    protected int describeGpu(int localIndex, int globalIndex, float[] out) {
+        out[0] = label.getLineHeight(globalIndex) * distance * DEFAULT_DISTANCE;
+        out[1] = MathUtils.clamp(intensity * DEFAULT_INTENSITY, 0, 1);
+        out[2] = globalIndex;
+        return GPU_SHAKE;
+    }
+
     @Override
     protected void onApply(long glyph, int localIndex, int globalIndex, float delta) {
         // Make sure we can hold enough entries for the current index
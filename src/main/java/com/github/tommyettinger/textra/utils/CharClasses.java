@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra.utils;
+
+import regexodus.Category;
+
+import java.util.Arrays;
+
+/**
+ * Lookup tables for the classes of char that {@link com.github.tommyettinger.textra.Font} checks for every glyph it
+ * lays out: whether a char is a place a line can be broken, whether it is a space (which also can be broken at, but is
+ * moved to the start of the next line when it is), and what its upper-case form is for small caps. Each check is one
+ * array lookup. These tables are shared by every Font.
+ * <br>
+ * By default, the break chars are tab, carriage return, space, the ASCII hyphen-minus, the soft hyphen, the Unicode
+ * spaces from U+2000 to U+200B (except the figure space, U+2007, which shouldn't be broken at), the hyphen and dashes
+ * from U+2010 to U+2014 (except the non-breaking hyphen, U+2011), and the hyphenation point U+2027. The space chars are
+ * tab, carriage return, space, and the same Unicode spaces. Scripts that don't put spaces between words, such as
+ * Chinese, Japanese, or Thai, can have their chars registered with {@link #addBreakChars(CharSequence)} or
+ * {@link #addBreakRange(char, char)} so lines can wrap between any two of them.
+ */
+public final class CharClasses {
+    private CharClasses() {
+    }
+
+    /**
+     * One bit per char; set if the char is a break char.
+     */
+    private static final long[] BREAK = new long[1024];
+    /**
+     * One bit per char; set if the char is a space char.
+     */
+    private static final long[] SPACE = new long[1024];
+    /**
+     * 256 pages of 256 chars each; adding the entry for a char to that char gets its upper-case form. Pages where no
+     * char changes case are all the same array, filled with 0.
+     */
+    private static final char[][] CASE_UP = new char[256][];
+    /**
+     * Incremented whenever a break char or space char is added or removed.
+     */
+    private static int version;
+
+    static {
+        resetBreakChars();
+        final char[] unchanged = new char[256];
+        for (int hi = 0; hi < 256; hi++) {
+            char[] page = null;
+            for (int lo = 0; lo < 256; lo++) {
+                char c = (char) (hi << 8 | lo);
+                char delta = (char) (Category.caseUp(c) - c);
+                if (delta != 0) {
+                    if (page == null) page = new char[256];
+                    page[lo] = delta;
+                }
+            }
+            CASE_UP[hi] = page == null ? unchanged : page;
+        }
+    }
+
+    /**
+     * Returns true if a line of text can be broken after {@code c}.
+     * @param c any char
+     * @return true if c is a break char
+     */
+    public static boolean isBreak(char c) {
+        return (BREAK[c >>> 6] & 1L << c) != 0L;
+    }
+
+    /**
+     * Returns true if {@code c} is a space char; all space chars are also break chars.
+     * @param c any char
+     * @return true if c is a space char
+     */
+    public static boolean isSpace(char c) {
+        return (SPACE[c >>> 6] & 1L << c) != 0L;
+    }
+
+    /**
+     * Gets the upper-case form of {@code c}, or c itself if it has no upper-case form. This is the same as
+     * {@link Category#caseUp(char)}, but is only one lookup into a precomputed table.
+     * @param c any char
+     * @return the upper-case form of c
+     */
+    public static char caseUp(char c) {
+        return (char) (c + CASE_UP[c >>> 8][c & 255]);
+    }
+
+    /**
+     * Gets a number that changes whenever the break chars or space chars change, so anything that caches where text
+     * was broken into lines can tell when it needs to break it again.
+     * @return a number that changes whenever the registered break chars or space chars change
+     */
+    public static int version() {
+        return version;
+    }
+
+    /**
+     * Registers {@code c} as a break char, so lines of text can be broken after it. This affects all Fonts.
+     * @param c the char to register
+     */
+    public static void addBreakChar(char c) {
+        version++;
+        BREAK[c >>> 6] |= 1L << c;
+    }
+
+    /**
+     * Registers every char in {@code chars} as a break char. This affects all Fonts.
+     * @param chars the chars to register; may be null
+     */
+    public static void addBreakChars(CharSequence chars) {
+        if (chars == null) return;
+        for (int i = 0, n = chars.length(); i < n; i++) {
+            addBreakChar(chars.charAt(i));
+        }
+    }
+
+    /**
+     * Registers every char from {@code start} to {@code end}, both inclusive, as a break char. This is handy for
+     * scripts that are written without spaces between words; for example, {@code addBreakRange('\u4E00', '\u9FFF')}
+     * allows breaking between any two CJK Unified Ideographs, and {@code addBreakRange('\u0E01', '\u0E5B')} allows
+     * breaking between any two Thai chars (which isn't how Thai is normally broken, but is better than not at all).
+     * This affects all Fonts.
+     * @param start the first char to register, inclusive
+     * @param end the last char to register, inclusive
+     */
+    public static void addBreakRange(char start, char end) {
+        version++;
+        for (int c = start; c <= end; c++) {
+            BREAK[c >>> 6] |= 1L << c;
+        }
+    }
+
+    /**
+     * Registers {@code c} as a space char, which also makes it a break char. This affects all Fonts.
+     * @param c the char to register
+     */
+    public static void addSpaceChar(char c) {
+        version++;
+        BREAK[c >>> 6] |= 1L << c;
+        SPACE[c >>> 6] |= 1L << c;
+    }
+
+    /**
+     * Makes {@code c} no longer a break char or a space char. This affects all Fonts.
+     * @param c the char to unregister
+     */
+    public static void removeBreakChar(char c) {
+        version++;
+        BREAK[c >>> 6] &= ~(1L << c);
+        SPACE[c >>> 6] &= ~(1L << c);
+    }
+
+    /**
+     * Removes any registered break chars and space chars and restores the default ones, as described in the class
+     * documentation. This affects all Fonts.
+     */
+    public static void resetBreakChars() {
+        Arrays.fill(BREAK, 0L);
+        Arrays.fill(SPACE, 0L);
+        addSpaceChar('\t');     // horizontal tab
+        addSpaceChar('\r');     // carriage return (used like a space)
+        addSpaceChar(' ');      // space
+        addBreakChar('-');      // ASCII hyphen-minus
+        addBreakChar('\u00AD'); // soft hyphen
+        addSpaceChar('\u2000'); // Unicode space
+        addSpaceChar('\u2001'); // Unicode space
+        addSpaceChar('\u2002'); // Unicode space
+        addSpaceChar('\u2003'); // Unicode space
+        addSpaceChar('\u2004'); // Unicode space
+        addSpaceChar('\u2005'); // Unicode space
+        addSpaceChar('\u2006'); // Unicode space
+        addSpaceChar('\u2008'); // Unicode space
+        addSpaceChar('\u2009'); // Unicode space
+        addSpaceChar('\u200A'); // Unicode space (hair-width)
+        addSpaceChar('\u200B'); // Unicode space (zero-width)
+        addBreakChar('\u2010'); // hyphen (not minus)
+        addBreakChar('\u2012'); // figure dash
+        addBreakChar('\u2013'); // en dash
+        addBreakChar('\u2014'); // em dash
+        addBreakChar('\u2027'); // hyphenation point
+    }
+}
@@ -55,6 +55,18 @@ public final class Palette {
     public static final ObjectIntMap<String> NAMED = new ObjectIntMap<>(84);
     public static final IntArray LIST = new IntArray(84);
 
+    private static int modificationCount;
+
+    /**
+     * Gets a number that changes every time {@link #addColor(String, int)} or {@link #appendToKnownColors()} changes
+     * the known colors, so caches of looked-up colors can tell when they are out of date. Changing {@link #NAMED} or
+     * libGDX's Colors directly doesn't change this.
+     * @return a counter that is incremented whenever this Palette's methods change the known colors
+     */
+    public static int getModificationCount() {
+        return modificationCount;
+    }
+
     /**
      * This color constant "transparent" has RGBA8888 code {@code 00000000}, R 0.0, G 0.0, B 0.0, A 0.0, hue 0.0, saturation 0.0, and lightness 0.0.
      * <pre>
@@ -1011,6 +1023,7 @@ public final class Palette {
             Color.rgba8888ToColor(editing, ent.value);
             Colors.put(ent.key, editing);
         }
+        modificationCount++;
     }
 
     /**
@@ -1026,6 +1039,7 @@ public final class Palette {
         LIST.add(rgba8888);
         NAMES.add(name);
         NAMES.sort();
+        modificationCount++;
         return true;
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.IntFloatMap;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.github.tommyettinger.textra.utils.LZBDecompression;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Compares looking up kerning pairs in an {@link IntFloatMap}, the way {@link Font#kerning} stores them, with looking
+ * them up in a {@link KerningTable}. This doesn't need a window or a GL context; it reads the kerning data straight
+ * from a few of the larger fonts in {@code knownFonts}, then looks up every adjacent pair of chars in some sample text
+ * many times, the same way measuring and drawing text does. Run it from the project root.
+ */
+public class KerningBenchmark {
+    private static final String[] FONTS = {
+            "Gentium-standard.dat",
+            "Libertinus-Serif-standard.dat",
+            "DejaVu-Sans-standard.dat",
+    };
+    private static final String TEXT =
+            "The quick brown fox jumps over the lazy dog. \"AVAST!\" yelled Tyrone, waving a flag at the yawning " +
+            "Vikings. LYNX, WAVY, TOFU, and Yes, we've got 'em all: ff, fi, fl, ffi, ffl... Ærøskøbing? Väljä! " +
+            "It's 1,234.56 (or perhaps 7,890.12) and we're off to P.T. Barnum's — quickly, quietly, quirkily.";
+    private static final int ROUNDS = 20000;
+
+    public static void main(String[] args) throws IOException {
+        final char[] text = TEXT.toCharArray();
+        for (String name : FONTS) {
+            IntFloatMap map = readKerning(name);
+            KerningTable table = new KerningTable(map);
+            int mismatches = 0;
+            for (int i = -1; i < text.length - 1; i++) {
+                int pair = i < 0 ? -1 << 16 | text[0] : text[i] << 16 | text[i + 1];
+                if (map.get(pair, 0f) != table.get(pair, 0f)) mismatches++;
+            }
+            // warm up both, then time each a few times and keep the best result.
+            float sink = 0f;
+            for (int w = 0; w < 5; w++) {
+                sink += runMap(map, text, ROUNDS / 10) + runTable(table, text, ROUNDS / 10);
+            }
+            long bestMap = Long.MAX_VALUE, bestTable = Long.MAX_VALUE;
+            for (int r = 0; r < 5; r++) {
+                long start = System.nanoTime();
+                sink += runMap(map, text, ROUNDS);
+                bestMap = Math.min(bestMap, System.nanoTime() - start);
+                start = System.nanoTime();
+                sink += runTable(table, text, ROUNDS);
+                bestTable = Math.min(bestTable, System.nanoTime() - start);
+            }
+            double lookups = (double) ROUNDS * text.length;
+            System.out.printf("%-32s %6d pairs, %5d mismatches: IntFloatMap %6.2f ns/lookup, KerningTable %6.2f ns/lookup (%.2fx)  [%s]%n",
+                    name, map.size, mismatches, bestMap / lookups, bestTable / lookups,
+                    (double) bestMap / bestTable, sink == 0f ? "0" : "ok");
+        }
+    }
+
+    private static float runMap(IntFloatMap map, char[] text, int rounds) {
+        float total = 0f;
+        for (int r = 0; r < rounds; r++) {
+            int kern = -1;
+            for (char c : text) {
+                kern = kern << 16 | c;
+                total += map.get(kern, 0f);
+            }
+        }
+        return total;
+    }
+
+    private static float runTable(KerningTable table, char[] text, int rounds) {
+        float total = 0f;
+        for (int r = 0; r < rounds; r++) {
+            int kern = -1;
+            for (char c : text) {
+                kern = kern << 16 | c;
+                total += table.get(kern, 0f);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Reads the kerning pairs from a compressed Structured JSON font the same way {@link Font} does.
+     */
+    private static IntFloatMap readKerning(String name) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get("knownFonts", name));
+        JsonValue fnt = new JsonReader().parse(LZBDecompression.decompressFromBytes(bytes));
+        JsonValue kern = fnt.get("kerning");
+        IntFloatMap kerning = new IntFloatMap(kern == null ? 0 : kern.size);
+        if (kern == null) return kerning;
+        for (JsonValue current = kern.child; current != null; current = current.next) {
+            int first = current.getInt("unicode1", 65535);
+            int second = current.getInt("unicode2", 65535);
+            float amount = current.getFloat("advance", 0f);
+            kerning.put(first << 16 | second, amount);
+            if (first == '[') {
+                kerning.put(2 << 16 | second, amount);
+            }
+            if (second == '[') {
+                kerning.put(first << 16 | 2, amount);
+            }
+        }
+        return kerning;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.utils.Array;
+import regexodus.Matcher;
+import regexodus.Pattern;
+import regexodus.REFlags;
+import regexodus.Replacer;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link TokenScanner} gives the same results as the regular expressions {@link Parser} used before it,
+ * on many random strings made mostly of brackets, braces, and token names. This compares preprocessing square-bracket
+ * markup, stripping markup, finding every token, and the find/skip/replace loop Parser uses to replace tokens, which
+ * is compared with the {@code replaceFirst()} loop it replaced. This doesn't need a window or a GL context. Pass a
+ * number of strings to check as the first argument (the default is 200000), and optionally a seed as the second.
+ * Any mismatch is printed along with the string that caused it, and the exit code is 1 if there were any.
+ */
+public class TokenScannerCheck {
+    // These are the patterns Parser used before TokenScanner, unchanged.
+    private static final Pattern PATTERN_MARKUP_STRIP = Pattern.compile("((?<!\\[)\\[[^\\[\\]]*(\\]|$))");
+    private static final Replacer RESET_TAG = new Replacer(Pattern.compile("((?<!\\[)\\[ (?:\\]|$))"), "{RESET}");
+    private static final Replacer UNDO_TAG =  new Replacer(Pattern.compile("((?<!\\[)\\[(?:\\]|$))"), "{UNDO}");
+    private static final Replacer COLOR_MARKUP_TO_TAG = new Replacer(Pattern.compile("(?<!\\[)\\[(?:(?:#({=m}[A-Fa-f0-9]{3,8}))|(?:\\|?)({=m}[\\pL\\pN][^\\[\\]]*))(\\]|$)"), "{COLOR=${\\m}}");
+    private static final Replacer MARKUP_TO_TAG = new Replacer(Pattern.compile("(?<!\\[)\\[([^\\[\\]\\+][^\\[\\]]*)(\\]|$)"), "{STYLE=$1}");
+    private static final Pattern PATTERN_COLOR_HEX_NO_HASH = Pattern.compile("[A-Fa-f0-9]{3,8}");
+
+    private static final String[] PIECES = {
+            "[", "]", "[", "]", "{", "}", "{", "}", " ", "[ ]", "[]", "[[", "#", "#fF0", "#12345678", "|", "+", "=",
+            ";", "a", "Z", "0", "é", "一", "\n", "red", "Gray", "WAIT", "wait", "WAVE", "ENDWAVE", "COLOR",
+            "VAR", "RESET", "IF", "EVENT", "SPEED", "=1", "=0.5;2", "{WAIT}", "{wave=1;2}", "{VAR=x}", "[red]",
+            "[*]", "[+icon]", "[|blue]", "[-x]", "{}", "{=}",
+    };
+    private static final String[] REPLACEMENTS = {
+            "", "x", "{", "}", "}{", "[", "]", "{WAIT", "=2}", "WAVE}", "{SPEED=2}", "[red]", "{RESET}", "ab{",
+    };
+    private static final int MAX_REPLACEMENTS = 50;
+
+    public static void main(String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : 123456789L;
+        final Random random = new Random(seed);
+        final TokenScanner scanner = new TokenScanner();
+        scanner.setTokenNames(TypingConfig.EFFECT_START_TOKENS, TypingConfig.EFFECT_END_TOKENS);
+        final Pattern tokenPattern = compileTokenPattern();
+        final StringBuilder sb = new StringBuilder(64);
+        int mismatches = 0;
+        for (int c = 0; c < count; c++) {
+            sb.setLength(0);
+            for (int p = random.nextInt(12); p >= 0; p--) {
+                sb.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            final String text = sb.toString();
+
+            String expected = MARKUP_TO_TAG.replace(COLOR_MARKUP_TO_TAG.replace(UNDO_TAG.replace(RESET_TAG.replace(text))));
+            String actual = scanner.preprocess(text);
+            if (!expected.equals(actual)) mismatches += report("preprocess", text, expected, actual);
+
+            expected = PATTERN_MARKUP_STRIP.matcher(text).replaceAll("");
+            char[] stripped = scanner.stripMarkup(text);
+            actual = new String(stripped, 0, scanner.strippedLength());
+            if (!expected.equals(actual)) mismatches += report("stripMarkup", text, expected, actual);
+
+            expected = regexTokens(tokenPattern, text);
+            actual = scannerTokens(scanner, text);
+            if (!expected.equals(actual)) mismatches += report("tokenize", text, expected, actual);
+
+            expected = regexReplace(tokenPattern, text);
+            actual = scannerReplace(scanner, text);
+            if (!expected.equals(actual)) mismatches += report("replace", text, expected, actual);
+
+            final String hex = text.length() > 8 ? text.substring(0, 8) : text;
+            if (PATTERN_COLOR_HEX_NO_HASH.matches(hex) != TokenScanner.isHexColor(hex))
+                mismatches += report("isHexColor", hex, String.valueOf(PATTERN_COLOR_HEX_NO_HASH.matches(hex)),
+                        String.valueOf(TokenScanner.isHexColor(hex)));
+        }
+        System.out.println("Checked " + count + " strings with seed " + seed + "; found " + mismatches + " mismatches.");
+        if (mismatches > 0) System.exit(1);
+    }
+
+    private static int report(String what, String text, String expected, String actual) {
+        System.out.println(what + " differs for \"" + escape(text) + "\":\n  regex:   \"" + escape(expected)
+                + "\"\n  scanner: \"" + escape(actual) + '"');
+        return 1;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\n", "\\n");
+    }
+
+    /**
+     * The same as the compileTokenPattern() method Parser had before TokenScanner.
+     */
+    private static Pattern compileTokenPattern() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\\{(");
+        Array<String> tokens = new Array<>();
+        TypingConfig.EFFECT_START_TOKENS.keys().toArray(tokens);
+        TypingConfig.EFFECT_END_TOKENS.keys().toArray(tokens);
+        for (InternalToken token : InternalToken.values()) {
+            tokens.add(token.name);
+        }
+        for (int i = 0; i < tokens.size; i++) {
+            sb.append(tokens.get(i));
+            if ((i + 1) < tokens.size) sb.append('|');
+        }
+        sb.append(")(?:\\=([^\\{\\}]+))?\\}");
+        return Pattern.compile(sb.toString(), REFlags.IGNORE_CASE);
+    }
+
+    private static String regexTokens(Pattern tokenPattern, String text) {
+        StringBuilder sb = new StringBuilder();
+        Matcher m = tokenPattern.matcher(text);
+        while (m.find()) {
+            sb.append(m.start()).append('-').append(m.end()).append(':').append(m.group(1).toUpperCase())
+                    .append('=').append(m.group(2)).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String scannerTokens(TokenScanner scanner, String text) {
+        StringBuilder sb = new StringBuilder();
+        final char[] chars = text.toCharArray();
+        final int n = scanner.tokenize(chars, chars.length);
+        for (int t = 0; t < n; t++) {
+            final int paramStart = scanner.paramStarts[t];
+            sb.append(scanner.tokenStarts[t]).append('-').append(scanner.tokenEnds[t]).append(':')
+                    .append(scanner.name(scanner.tokenNames[t])).append('=')
+                    .append(paramStart < 0 ? null : new String(chars, paramStart, scanner.paramEnds[t] - paramStart))
+                    .append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decides what to do with a token in both replace loops: returns null to skip it, or what to replace it with.
+     */
+    private static String decide(String name, String params, int replaced) {
+        if (replaced >= MAX_REPLACEMENTS) return null;
+        final int h = name.hashCode() * 31 + (params == null ? 0 : params.hashCode());
+        if ((h & 3) == 0) return null;
+        return REPLACEMENTS[(h >>> 2 & 0x7FFFFFFF) % REPLACEMENTS.length];
+    }
+
+    /**
+     * The loop Parser's parseReplacements() used before TokenScanner, with {@link #decide(String, String, int)}
+     * choosing replacements.
+     */
+    private static String regexReplace(Pattern tokenPattern, String original) {
+        CharSequence text = original;
+        Matcher m = tokenPattern.matcher(text);
+        int matcherIndexOffset = 0, replaced = 0;
+        while (true) {
+            m.setTarget(text);
+            m.setPosition(matcherIndexOffset);
+            if (!m.find()) break;
+            final String replacement = decide(m.group(1).toUpperCase(), m.group(2), replaced);
+            if (replacement == null) {
+                matcherIndexOffset++;
+                continue;
+            }
+            replaced++;
+            m.setPosition(m.start());
+            text = m.replaceFirst(replacement);
+        }
+        return text.toString();
+    }
+
+    /**
+     * The loop Parser's parseReplacements() uses now, with {@link #decide(String, String, int)} choosing replacements.
+     */
+    private static String scannerReplace(TokenScanner scanner, String original) {
+        scanner.load(original);
+        int cursor = 0, replaced = 0;
+        while (scanner.find()) {
+            final String replacement = decide(scanner.name(scanner.foundName()), scanner.foundParams(), replaced);
+            if (replacement == null) {
+                cursor = scanner.position() + 1;
+                scanner.skip();
+                continue;
+            }
+            replaced++;
+            scanner.replace(replacement, cursor);
+        }
+        return scanner.writeTo(new StringBuilder()).toString();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.tommyettinger.textra;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+
+/**
+ * Checks that an effect wrapped around a variable, as in {@code {RAINBOW}{VAR=score}{ENDRAINBOW}}, still covers
+ * exactly the variable's glyphs after {@link TypingLabel#setVariable(String, String)} replaces the value in place with
+ * a longer or shorter one, and that an effect after it moves along with it. This opens a window only because loading
+ * a Font needs a GL context; it prints what it found and closes itself.
+ */
+public class VariableSpliceCheck extends ApplicationAdapter {
+    private static final String[] VALUES = {"10", "1000", "7", "42", "9"};
+
+    @Override
+    public void create() {
+        Font font = KnownFonts.getOpenSans();
+        TypingLabel label = new TypingLabel("Score: {RAINBOW}{VAR=score}{ENDRAINBOW} {WAVE}points{ENDWAVE}", font);
+        label.setVariable("score", "9");
+        label.skipToTheEnd();
+        label.act(0.1f);
+        int failures = check(label, "9");
+        for (String value : VALUES) {
+            label.setVariable("score", value);
+            label.act(0.1f);
+            failures += check(label, value);
+        }
+        System.out.println(failures == 0 ? "All effects covered their glyphs." : failures + " checks failed.");
+        Gdx.app.exit();
+    }
+
+    private static int check(TypingLabel label, String value) {
+        VariableSpan span = null;
+        for (VariableSpan s : label.variableSpans) {
+            if ("SCORE".equals(s.name)) span = s;
+        }
+        if (span == null || !value.equals(span.value)) {
+            System.out.println("\"" + value + "\": the variable wasn't replaced in place.");
+            return 1;
+        }
+        int failures = 0;
+        final int start = span.glyphIndex, end = span.glyphIndex + value.length() - 1;
+        for (Effect effect : label.activeEffects) {
+            if ("RAINBOW".equals(effect.name) && (effect.indexStart != start || effect.indexEnd != end)) {
+                System.out.println("\"" + value + "\": RAINBOW covers " + effect.indexStart + " to " + effect.indexEnd
+                        + ", but the value is at " + start + " to " + end + ".");
+                failures++;
+            }
+            // " points" follows the value, so WAVE starts two glyphs after the value's last glyph.
+            if ("WAVE".equals(effect.name) && (effect.indexStart != end + 2 || effect.indexEnd != end + 7)) {
+                System.out.println("\"" + value + "\": WAVE covers " + effect.indexStart + " to " + effect.indexEnd
+                        + ", but \"points\" is at " + (end + 2) + " to " + (end + 7) + ".");
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    public static void main(String[] arg) {
+        Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+        config.setTitle("Variable Splice Check");
+        config.setWindowedMode(320, 120);
+        config.disableAudio(true);
+        new Lwjgl3Application(new VariableSpliceCheck(), config);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.utils.Array;
+import com.github.tommyettinger.textra.Font;
+import com.github.tommyettinger.textra.Parser;
+import com.github.tommyettinger.textra.TypingLabel;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Checks every markup file in a folder (and its subfolders) for mistakes with {@link Parser#validate(String, Font, Array)},
+ * and writes each file again to an output folder after normalizing every line with {@link Parser#normalize(String)}.
+ * Normalized lines can be shown with {@link TypingLabel#restartNormalized(CharSequence)}, which skips preprocessing.
+ * <br>
+ * Usage: {@code MarkupValidator <font> <input folder> <output folder> [options]}, where font is a Structured JSON
+ * font ({@code .json} or {@code .dat}) or an AngelCode BMFont {@code .fnt} file. Options:
+ * <ul>
+ *     <li>{@code --ext=.EXT} only reads files with that extension; the default is {@code .txt}.</li>
+ *     <li>{@code --check} only reports problems, without writing anything.</li>
+ * </ul>
+ * Each problem is printed as {@code file:line: message}. The exit code is 1 if any problems were found, so this can
+ * fail a build step. This runs headless; the font's texture is loaded with a GL that does nothing.
+ */
+public class MarkupValidator extends ApplicationAdapter {
+    private final String[] args;
+    private int exitCode = 0;
+
+    public MarkupValidator(String[] args) {
+        if (args == null || args.length < 3) {
+            System.out.println("Usage: MarkupValidator <font> <input folder> <output folder> [--ext=.EXT] [--check]");
+            System.exit(1);
+        }
+        this.args = args;
+    }
+
+    public static void main(String[] args) {
+        MarkupValidator validator = new MarkupValidator(args);
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = -1;
+        new HeadlessApplication(validator, configuration);
+    }
+
+    @Override
+    public void create() {
+        // Only the font's metrics are needed, so every GL call does nothing and returns 0 or false.
+        Gdx.gl = Gdx.gl20 = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class[]{GL20.class},
+                (proxy, method, arguments) -> {
+                    Class<?> type = method.getReturnType();
+                    if (type == boolean.class) return false;
+                    if (type == int.class) return 0;
+                    if (type == float.class) return 0f;
+                    if (type == long.class) return 0L;
+                    if (type == String.class) return "";
+                    return null;
+                });
+
+        String extension = ".txt";
+        boolean check = false;
+        for (int i = 3; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--ext=")) extension = arg.substring(6);
+            else if (arg.equals("--check")) check = true;
+            else {
+                System.out.println("Unknown option: " + arg);
+                exit(1);
+                return;
+            }
+        }
+
+        Font font = args[0].endsWith(".fnt") ? new Font(args[0]) : new Font(args[0], true);
+        FileHandle input = Gdx.files.local(args[1]), output = Gdx.files.local(args[2]);
+        if (!input.isDirectory()) {
+            System.out.println("Not a folder: " + args[1]);
+            exit(1);
+            return;
+        }
+        int[] totals = new int[3];
+        walk(input, input, output, extension, check, font, totals);
+        System.out.println("Checked " + totals[1] + " lines in " + totals[0] + " files; found " + totals[2] + " problems.");
+        exit(totals[2] == 0 ? 0 : 1);
+    }
+
+    /**
+     * Validates and normalizes each matching file in {@code folder}, recursing into subfolders.
+     * {@code totals} receives the counts of files, lines, and problems.
+     */
+    private void walk(FileHandle root, FileHandle folder, FileHandle output, String extension, boolean check,
+                      Font font, int[] totals) {
+        Array<String> problems = new Array<>(String.class);
+        for (FileHandle file : folder.list()) {
+            if (file.isDirectory()) {
+                walk(root, file, output, extension, check, font, totals);
+                continue;
+            }
+            if (!file.name().endsWith(extension)) continue;
+            String relative = file.path().substring(root.path().length() + 1);
+            String[] lines = file.readString("UTF-8").split("\r?\n", -1);
+            StringBuilder normalized = new StringBuilder(lines.length * 64);
+            for (int i = 0; i < lines.length; i++) {
+                problems.clear();
+                Parser.validate(lines[i], font, problems);
+                for (String problem : problems) {
+                    System.out.println(relative + ":" + (i + 1) + ": " + problem);
+                }
+                totals[2] += problems.size;
+                if (i > 0) normalized.append('\n');
+                normalized.append(Parser.normalize(lines[i]));
+            }
+            if (!check) output.child(relative).writeString(normalized.toString(), false, "UTF-8");
+            totals[0]++;
+            totals[1] += lines.length;
+        }
+    }
+
+    private void exit(int code) {
+        exitCode = code;
+        Gdx.app.exit();
+    }
+
+    @Override
+    public void dispose() {
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.github.tommyettinger.textra.Font;
+import com.github.tommyettinger.textra.TypingLabel;
+import com.github.tommyettinger.textra.TypingScript;
+
+/**
+ * Precompiles every line of every {@code .txt} file in a folder into {@link TypingScript}s, and writes one
+ * {@code .tts} file for each text file, holding its scripts in line order, with one script for every line (even blank
+ * ones). Load them at runtime with {@link TypingScript#fromBytes(byte[], Font)}, and show them with
+ * {@link TypingLabel#restart(TypingScript)}.
+ * <br>
+ * Usage: {@code ScriptCompiler <font> <input folder> <output folder> [options]}, where font is a Structured JSON
+ * font ({@code .json} or {@code .dat}) or an AngelCode BMFont {@code .fnt} file. Options:
+ * <ul>
+ *     <li>{@code --width=N} wraps text to N pixels wide, like a TypingLabel with wrap enabled and that width.</li>
+ *     <li>{@code --height=N} scales the font so each line is N pixels tall, like {@link Font#scaleHeightTo(float)}.</li>
+ *     <li>{@code --name=NAME} sets the {@link Font#name} stored in the scripts; it must match the Font used at runtime.</li>
+ *     <li>{@code --compress} compresses each output file with LZB.</li>
+ * </ul>
+ * This needs a GL context to load the font's texture, so it opens a hidden window, and exits when done.
+ */
+public class ScriptCompiler extends ApplicationAdapter {
+    private final String[] args;
+
+    public ScriptCompiler(String[] args) {
+        if (args == null || args.length < 3) {
+            System.out.println("Usage: ScriptCompiler <font> <input folder> <output folder> [--width=N] [--height=N] [--name=NAME] [--compress]");
+            System.exit(1);
+        }
+        this.args = args;
+    }
+
+    public static void main(String[] args) {
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.disableAudio(true);
+        configuration.setTitle("ScriptCompiler");
+        configuration.setWindowedMode(64, 64);
+        configuration.setInitialVisible(false);
+        new Lwjgl3Application(new ScriptCompiler(args), configuration);
+    }
+
+    @Override
+    public void create() {
+        float width = 0f, height = 0f;
+        String name = null;
+        boolean compress = false;
+        for (int i = 3; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--width=")) width = Float.parseFloat(arg.substring(8));
+            else if (arg.startsWith("--height=")) height = Float.parseFloat(arg.substring(9));
+            else if (arg.startsWith("--name=")) name = arg.substring(7);
+            else if (arg.equals("--compress")) compress = true;
+            else {
+                System.out.println("Unknown option: " + arg);
+                Gdx.app.exit();
+                return;
+            }
+        }
+
+        Font font = args[0].endsWith(".fnt") ? new Font(args[0]) : new Font(args[0], true);
+        if (height > 0f) font.scaleHeightTo(height);
+        if (name != null) font.name = name;
+
+        TypingLabel label = new TypingLabel("", font);
+        if (width > 0f) {
+            label.setWrap(true);
+            label.setWidth(width);
+        }
+
+        FileHandle input = Gdx.files.local(args[1]), output = Gdx.files.local(args[2]);
+        output.mkdirs();
+        int fileCount = 0, scriptCount = 0;
+        long bytes = 0L;
+        Array<TypingScript> scripts = new Array<>(TypingScript.class);
+        for (FileHandle file : input.list(".txt")) {
+            scripts.clear();
+            // blank lines get (empty) scripts too, so the index of each script is always its line number minus 1.
+            for (String line : file.readString("UTF-8").split("\r?\n", -1)) {
+                scripts.add(TypingScript.compile(label, line));
+            }
+            byte[] data = TypingScript.toBytes(compress, scripts.toArray());
+            output.child(file.nameWithoutExtension() + ".tts").writeBytes(data, false);
+            System.out.println(file.name() + ": " + scripts.size + " scripts, " + data.length + " bytes");
+            fileCount++;
+            scriptCount += scripts.size;
+            bytes += data.length;
+        }
+        System.out.println("Compiled " + scriptCount + " scripts from " + fileCount + " files into " + bytes + " bytes.");
+        font.dispose();
+        Gdx.app.exit();
+    }
+}